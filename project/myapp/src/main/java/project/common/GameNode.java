@@ -139,6 +139,8 @@ public class GameNode extends AbstractObservableField {
      */
     public void turn() {
         //System.err.println("otacam node");
+        TurnEvent event = new TurnEvent();
+        event.begin();
         int i = 0;
         for (Side side : this.side) {
             int changeDirection = side.ordinal();
@@ -149,6 +151,7 @@ public class GameNode extends AbstractObservableField {
         List<Side> order = Arrays.asList(Side.NORTH, Side.EAST, Side.SOUTH, Side.WEST);
         Arrays.sort(this.side, Comparator.comparingInt(order::indexOf));
         notifyObservers();
+        commitTurnEvent(event, false);
     }
 
     /**
@@ -160,6 +163,8 @@ public class GameNode extends AbstractObservableField {
      * notifies all observers about the state change.
      */
     public void turnReverse() {
+        TurnEvent event = new TurnEvent();
+        event.begin();
         int i = 0;
         for (Side side : this.side) {
             int currentIndex = side.ordinal();
@@ -170,6 +175,43 @@ public class GameNode extends AbstractObservableField {
         List<Side> order = Arrays.asList(Side.NORTH, Side.EAST, Side.SOUTH, Side.WEST);
         Arrays.sort(this.side, Comparator.comparingInt(order::indexOf));
         notifyObservers();
+        commitTurnEvent(event, true);
+    }
+
+    /**
+     * Rotates the node clockwise by the given number of steps without notifying the observers.
+     * Used to restore a saved orientation before the game is initialized.
+     *
+     * @param steps the number of clockwise quarter turns, negative for counterclockwise ones.
+     */
+    public void rotate(int steps) {
+        int quarters = Math.floorMod(steps, 4);
+        if (quarters != 0) {
+            for (int i = 0; i < this.side.length; i++) {
+                this.side[i] = Side.values()[(this.side[i].ordinal() + quarters) % Side.values().length];
+            }
+            List<Side> order = Arrays.asList(Side.NORTH, Side.EAST, Side.SOUTH, Side.WEST);
+            Arrays.sort(this.side, Comparator.comparingInt(order::indexOf));
+        }
+        numberOfTurns += steps;
+    }
+
+    /**
+     * Fills in and commits the flight recorder event of a finished turn.
+     * Nothing is done when the event is not enabled in the running recording.
+     *
+     * @param event the event started at the beginning of the turn.
+     * @param reverse true for a counterclockwise rotation.
+     */
+    private void commitTurnEvent(TurnEvent event, boolean reverse) {
+        if (event.shouldCommit()) {
+            event.row = position.getRow();
+            event.col = position.getCol();
+            event.nodeType = type.name();
+            event.reverse = reverse;
+            event.turns = numberOfTurns;
+            event.commit();
+        }
     }
     /**
      * Returns whether the node is powered or not.
@@ -25,4 +25,44 @@ public enum Side {
             case WEST  -> EAST;
         };
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the bit of this side in a connector mask (bit 0 for NORTH up to bit 3 for WEST).
+     *
+     * @return the bit of this side.
+     */
+    public int bit() {
+        return 1 << ordinal();
+    }
+
+    /**
+     * Converts a connector mask back to the sides it contains, ordered NORTH, EAST, SOUTH, WEST.
+     *
+     * @param mask the connector mask, see {@link #bit()}.
+     * @return a new array with the sides of the mask.
+     */
+    public static Side[] fromMask(int mask) {
+        Side[] all = values();
+        Side[] sides = new Side[Integer.bitCount(mask & 0xF)];
+        int i = 0;
+        for (Side side : all) {
+            if ((mask & side.bit()) != 0) {
+                sides[i++] = side;
+            }
+        }
+        return sides;
+    }
+
+    /**
+     * Rotates a connector mask clockwise, e.g. NORTH becomes EAST after one turn.
+     *
+     * @param mask the connector mask, see {@link #bit()}.
+     * @param turns the number of clockwise quarter turns, negative values rotate counterclockwise.
+     * @return the rotated mask.
+     */
+    public static int rotateMask(int mask, int turns) {
+        int k = Math.floorMod(turns, 4);
+        mask &= 0xF;
+        return ((mask << k) | (mask >> (4 - k))) & 0xF;
+    }
+}
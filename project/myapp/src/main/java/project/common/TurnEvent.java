@@ -0,0 +1,35 @@
+package project.common;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JDK Flight Recorder event emitted for every rotation of a {@link GameNode}.
+ * <p>
+ * The event spans the whole turn including the observer callbacks, so the power propagation
+ * and view updates caused by the rotation are nested inside it in a recording.
+ */
+@Name("project.Turn")
+@Label("Tile Turn")
+@Category({"Electrician", "Game"})
+@Description("Rotation of a single tile including the observer callbacks it triggers")
+public class TurnEvent extends jdk.jfr.Event {
+    @Label("Row")
+    public int row;
+
+    @Label("Column")
+    public int col;
+
+    @Label("Node Type")
+    public String nodeType;
+
+    @Label("Reverse")
+    @Description("True for a counterclockwise (undo) rotation")
+    public boolean reverse;
+
+    @Label("Turns")
+    @Description("Number of rotations of the tile after this turn")
+    public int turns;
+}
@@ -0,0 +1,582 @@
+package project.game;
+
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+
+import project.common.NodeType;
+import project.common.Side;
+
+/**
+ * The {@link BacktrackingSolver} class solves boards by a depth-first search that follows the power.
+ * <p>
+ * Tiles are decided in the order power reaches them. A decided tile points at its undecided neighbours, and
+ * the search branches on one such pointer at a time: either the neighbour faces it, and is decided now with
+ * one of the orientations that do, or the neighbour never faces it, and that side of the neighbour is
+ * forbidden from then on. The branches split the solutions, so every solution is found exactly once, and
+ * every decided tile is powered; the board is solved once all nodes are decided. The pointer with the fewest
+ * orientations facing it is taken first, and orientations are tried in the order of the clockwise turns they
+ * need from the current board, so solutions stay close to it.
+ * <p>
+ * After every step the search checks, optimistically, that every undecided node can still be reached from
+ * the decided ones through undecided tiles able to pass power on, and backtracks otherwise.
+ * <p>
+ * {@link #solveMinimal(BoardState, BooleanSupplier)} turns the search into a branch and bound over the number
+ * of clicks: a tile costs the clockwise turns from its current rotation to the nearest rotation with the
+ * chosen connectors, so a straight wire never costs more than one click. Branches that cannot beat the best
+ * solution found so far, even if every frontier tile took its cheapest orientation, are cut.
+ * {@link #analyze(BoardState, int, BooleanSupplier)} counts the solutions up to a limit and reports the
+ * effort of the search.
+ */
+public final class BacktrackingSolver implements LevelSolver {
+    /**
+     * {@code PASS[mask][forbidden][in]}: sides power can leave a tile with that mask through when it enters
+     * from {@code in}, using only orientations without the forbidden sides.
+     */
+    private static final byte[][][] PASS = new byte[16][16][4];
+    private static final Side[] SIDES = Side.values();
+
+    static {
+        for (int mask = 0; mask < 16; mask++) {
+            for (int forbidden = 0; forbidden < 16; forbidden++) {
+                for (int in = 0; in < 4; in++) {
+                    int out = 0;
+                    for (int r = 0; r < 4; r++) {
+                        int rotated = Side.rotateMask(mask, r);
+                        if ((rotated & 1 << in) != 0 && (rotated & forbidden) == 0) {
+                            out |= rotated;
+                        }
+                    }
+                    PASS[mask][forbidden][in] = (byte) (out & ~(1 << in));
+                }
+            }
+        }
+    }
+
+    private final long maxNodes;
+
+    /**
+     * The outcome of {@link #analyze(BoardState, int, BooleanSupplier)}.
+     *
+     * @param solutions the number of distinct solutions found.
+     * @param complete true when the search finished, so {@code solutions} is the exact count.
+     * @param nodes the number of search steps taken.
+     * @param nodesToFirst the number of search steps taken until the first solution, or -1 when none was found.
+     */
+    public record Analysis(int solutions, boolean complete, long nodes, long nodesToFirst) {
+    }
+
+    /**
+     * Creates a solver without a limit on the search.
+     */
+    public BacktrackingSolver() {
+        this(Long.MAX_VALUE);
+    }
+
+    /**
+     * Creates a solver that gives up after a number of search steps.
+     *
+     * @param maxNodes the maximum number of search steps.
+     */
+    public BacktrackingSolver(long maxNodes) {
+        if (maxNodes < 1) {
+            throw new IllegalArgumentException("maxNodes must be positive: " + maxNodes);
+        }
+        this.maxNodes = maxNodes;
+    }
+
+    @Override
+    public byte[] solve(BoardState board, BooleanSupplier cancelled) {
+        Search search = new Search(board, cancelled, false, 1);
+        search.run();
+        return search.firstRotations;
+    }
+
+    /**
+     * Finds a solution that needs the fewest clicks from the board. The whole search space is bounded, so a
+     * result is exact when the search finishes within the maximum number of search steps; otherwise no result
+     * is returned. The search takes much longer than {@link #solve(BoardState, BooleanSupplier)}.
+     *
+     * @param board the board to solve, it is not changed.
+     * @param cancelled checked regularly, the search stops as soon as it returns true.
+     * @return the rotation of every tile in a cheapest solution, or null when the board has no solution,
+     *         the search was cancelled or it exceeded the maximum number of search steps.
+     */
+    public byte[] solveMinimal(BoardState board, BooleanSupplier cancelled) {
+        Search search = new Search(board, cancelled, true, Integer.MAX_VALUE);
+        return search.run() ? search.bestRotations : null;
+    }
+
+    /**
+     * Counts the distinct solutions of a board, two solutions being distinct when some tile has different
+     * connectors in them, and measures the effort of the search.
+     *
+     * @param board the board to analyze, it is not changed.
+     * @param maxSolutions the search stops after this many solutions.
+     * @param cancelled checked regularly, the search stops as soon as it returns true.
+     * @return the analysis.
+     * @throws IllegalArgumentException if maxSolutions is less than 1.
+     */
+    public Analysis analyze(BoardState board, int maxSolutions, BooleanSupplier cancelled) {
+        if (maxSolutions < 1) {
+            throw new IllegalArgumentException("maxSolutions must be positive: " + maxSolutions);
+        }
+        Search search = new Search(board, cancelled, false, maxSolutions);
+        boolean complete = search.run() && search.solutions < maxSolutions;
+        return new Analysis(search.solutions, complete, search.nodes, search.nodesToFirst);
+    }
+
+    /**
+     * The state of one search.
+     */
+    private final class Search {
+        private static final byte NONE = 0;
+        private static final byte DECIDED = 1;
+        private static final byte SKIPPED = 2;
+
+        private final BoardState board;
+        private final LevelTemplate topology;
+        private final BooleanSupplier cancelled;
+        private final boolean minimize;
+        private final int maxSolutions;
+        private final int nodeCount;
+        private final int source;
+        private final byte[] decided;
+        private final byte[] forbidden;
+        private final int[] pointers;
+        private final int[] frontier;
+        private final int[] frontierPos;
+        private int frontierSize;
+        private int decidedCount;
+        private long cost;
+        private long best = Long.MAX_VALUE;
+        private long nodes;
+        private long nodesToFirst = -1;
+        private int solutions;
+        private byte[] firstRotations;
+        private byte[] bestRotations;
+
+        private final int[] frameTile;
+        private final int[] frameSide;
+        private final int[] frameOptions;
+        private final int[] frameNext;
+        private final int[] frameRemovedAt;
+        private final byte[] frameApplied;
+
+        private final int[] stamp;
+        private final byte[] entered;
+        private final int[] queue;
+        private int generation;
+
+        /**
+         * Prepares a search.
+         *
+         * @param board the board to solve.
+         * @param cancelled the cancellation check.
+         * @param minimize whether to search for the cheapest solution.
+         * @param maxSolutions the search stops after this many solutions, unless it minimizes.
+         */
+        Search(BoardState board, BooleanSupplier cancelled, boolean minimize, int maxSolutions) {
+            this.board = board;
+            this.topology = board.topology();
+            this.cancelled = cancelled;
+            this.minimize = minimize;
+            this.maxSolutions = maxSolutions;
+            this.nodeCount = topology.nodeCount();
+            this.source = topology.sourceIndex();
+            int size = board.size();
+            this.decided = new byte[size];
+            Arrays.fill(decided, (byte) -1);
+            this.forbidden = new byte[size];
+            this.pointers = new int[size];
+            this.frontier = new int[nodeCount + 1];
+            this.frontierPos = new int[size];
+            // along one branch every node is decided once and each of its sides forbidden at most once
+            int depth = nodeCount * 5 + 1;
+            this.frameTile = new int[depth];
+            this.frameSide = new int[depth];
+            this.frameOptions = new int[depth];
+            this.frameNext = new int[depth];
+            this.frameRemovedAt = new int[depth];
+            this.frameApplied = new byte[depth];
+            this.stamp = new int[size];
+            this.entered = new byte[size];
+            this.queue = new int[nodeCount * 4 + 4];
+        }
+
+        /**
+         * Runs the search.
+         *
+         * @return false when it was cancelled or exceeded the maximum number of search steps.
+         */
+        boolean run() {
+            if (nodeCount == 0) {
+                found();
+                return true;
+            }
+            if (source < 0) {
+                return true;
+            }
+            frontierPos[source] = 0;
+            frontier[frontierSize++] = source;
+            frameTile[0] = source;
+            frameSide[0] = -1;
+            frameOptions[0] = options(source, -1);
+            frameNext[0] = 0;
+            frameApplied[0] = NONE;
+            int depth = 1;
+            while (depth > 0) {
+                int d = depth - 1;
+                int tile = frameTile[d];
+                int side = frameSide[d];
+                if (frameApplied[d] == DECIDED) {
+                    undoDecide(tile, frameRemovedAt[d]);
+                } else if (frameApplied[d] == SKIPPED) {
+                    undoSkip(tile, side, frameRemovedAt[d]);
+                }
+                frameApplied[d] = NONE;
+                int options = frameOptions[d];
+                int count = options >>> 8;
+                // the orientations facing the pointer are followed by the branch where the tile never faces it
+                int branches = side < 0 ? count : count + 1;
+                if (frameNext[d] == branches) {
+                    depth--;
+                    continue;
+                }
+                int next = frameNext[d]++;
+                if (++nodes > maxNodes || ((nodes & 1023) == 0 && cancelled.getAsBoolean())) {
+                    return false;
+                }
+                if (next < count) {
+                    frameRemovedAt[d] = decide(tile, options >>> (2 * next) & 3);
+                    frameApplied[d] = DECIDED;
+                    if (decidedCount == nodeCount) {
+                        if (found()) {
+                            return true;
+                        }
+                        continue;
+                    }
+                } else {
+                    frameRemovedAt[d] = skip(tile, side);
+                    frameApplied[d] = SKIPPED;
+                }
+                if (minimize && cost + bound() >= best) {
+                    continue;
+                }
+                if (!reachable()) {
+                    continue;
+                }
+                int selected = select();
+                if (selected < 0) {
+                    continue;
+                }
+                frameTile[depth] = selected >>> 2;
+                frameSide[depth] = selected & 3;
+                frameOptions[depth] = options(selected >>> 2, selected & 3);
+                frameNext[depth] = 0;
+                frameApplied[depth] = NONE;
+                depth++;
+            }
+            return true;
+        }
+
+        /**
+         * Records a solution, all nodes are decided.
+         *
+         * @return true when the search is done.
+         */
+        private boolean found() {
+            solutions++;
+            if (firstRotations == null) {
+                firstRotations = solution();
+                nodesToFirst = nodes;
+            }
+            if (minimize && cost < best) {
+                best = cost;
+                bestRotations = solution();
+            }
+            return !minimize && solutions >= maxSolutions;
+        }
+
+        /**
+         * @return a lower bound of the clicks still needed: the cheapest allowed orientation of every frontier tile.
+         */
+        private long bound() {
+            long bound = 0;
+            for (int i = 0; i < frontierSize; i++) {
+                int tile = frontier[i];
+                int options = options(tile, -1);
+                if (options >>> 8 > 0) {
+                    bound += clicks(tile, options & 3);
+                }
+            }
+            return bound;
+        }
+
+        /**
+         * @param tile a tile.
+         * @param rotation a rotation of the tile.
+         * @return the clockwise turns from the current rotation of the tile to the given one.
+         */
+        private int clicks(int tile, int rotation) {
+            return (rotation - board.rotation(tile)) & 3;
+        }
+
+        /**
+         * @return the rotations of the solved board, undecided (empty) tiles keep their rotation.
+         */
+        private byte[] solution() {
+            byte[] rotations = new byte[decided.length];
+            for (int i = 0; i < rotations.length; i++) {
+                rotations[i] = decided[i] >= 0 ? decided[i] : (byte) board.rotation(i);
+            }
+            return rotations;
+        }
+
+        /**
+         * @param tile a decided tile.
+         * @return the connector mask of the tile in its decided orientation.
+         */
+        private int decidedMask(int tile) {
+            return Side.rotateMask(topology.mask(tile), decided[tile]);
+        }
+
+        /**
+         * @param tile an undecided tile.
+         * @param side a side of the tile.
+         * @return true when the side is not forbidden and the decided neighbour on that side points at the tile.
+         */
+        private boolean pointsAt(int tile, Side side) {
+            if ((forbidden[tile] & side.bit()) != 0) {
+                return false;
+            }
+            int neighbor = board.neighbor(tile, side);
+            return neighbor >= 0 && decided[neighbor] >= 0 && (decidedMask(neighbor) & side.opposite().bit()) != 0;
+        }
+
+        /**
+         * @param tile a tile.
+         * @param side the side of the tile facing its neighbour.
+         * @return true when the neighbour on that side is an undecided node that may face the tile.
+         */
+        private boolean pointable(int tile, Side side) {
+            int neighbor = board.neighbor(tile, side);
+            return neighbor >= 0 && decided[neighbor] < 0 && topology.type(neighbor) != NodeType.EMPTY
+                    && (forbidden[neighbor] & side.opposite().bit()) == 0;
+        }
+
+        /**
+         * Decides the orientation of a frontier tile and adds the tiles it points at to the frontier.
+         *
+         * @param tile the tile.
+         * @param rotation its rotation.
+         * @return the position the tile was removed from in the frontier.
+         */
+        private int decide(int tile, int rotation) {
+            int pos = removeFromFrontier(tile);
+            decided[tile] = (byte) rotation;
+            decidedCount++;
+            cost += clicks(tile, rotation);
+            int mask = decidedMask(tile);
+            for (Side side : SIDES) {
+                if ((mask & side.bit()) == 0 || !pointable(tile, side)) {
+                    continue;
+                }
+                int neighbor = board.neighbor(tile, side);
+                if (pointers[neighbor]++ == 0) {
+                    frontierPos[neighbor] = frontierSize;
+                    frontier[frontierSize++] = neighbor;
+                }
+            }
+            return pos;
+        }
+
+        /**
+         * Reverts {@link #decide(int, int)}.
+         *
+         * @param tile the tile.
+         * @param pos the position it was removed from in the frontier.
+         */
+        private void undoDecide(int tile, int pos) {
+            int mask = decidedMask(tile);
+            for (int s = SIDES.length - 1; s >= 0; s--) {
+                Side side = SIDES[s];
+                if ((mask & side.bit()) == 0 || !pointable(tile, side)) {
+                    continue;
+                }
+                if (--pointers[board.neighbor(tile, side)] == 0) {
+                    frontierSize--;
+                }
+            }
+            cost -= clicks(tile, decided[tile]);
+            decided[tile] = -1;
+            decidedCount--;
+            restoreToFrontier(tile, pos);
+        }
+
+        /**
+         * Forbids a frontier tile to face the neighbour on one side, which then no longer points at it.
+         *
+         * @param tile the tile.
+         * @param side the ordinal of the side.
+         * @return the position the tile was removed from in the frontier, or -1 when it is still pointed at.
+         */
+        private int skip(int tile, int side) {
+            forbidden[tile] |= (byte) (1 << side);
+            return --pointers[tile] == 0 ? removeFromFrontier(tile) : -1;
+        }
+
+        /**
+         * Reverts {@link #skip(int, int)}.
+         *
+         * @param tile the tile.
+         * @param side the ordinal of the side.
+         * @param pos the position the tile was removed from in the frontier, or -1.
+         */
+        private void undoSkip(int tile, int side, int pos) {
+            if (pos >= 0) {
+                restoreToFrontier(tile, pos);
+            }
+            pointers[tile]++;
+            forbidden[tile] &= (byte) ~(1 << side);
+        }
+
+        /**
+         * Removes a tile from the frontier, moving the last frontier tile to its place.
+         *
+         * @param tile the tile.
+         * @return its position in the frontier.
+         */
+        private int removeFromFrontier(int tile) {
+            int pos = frontierPos[tile];
+            int last = frontier[--frontierSize];
+            frontier[pos] = last;
+            frontierPos[last] = pos;
+            return pos;
+        }
+
+        /**
+         * Reverts {@link #removeFromFrontier(int)}.
+         *
+         * @param tile the tile.
+         * @param pos the position it was removed from.
+         */
+        private void restoreToFrontier(int tile, int pos) {
+            if (pos < frontierSize) {
+                int moved = frontier[pos];
+                frontier[frontierSize] = moved;
+                frontierPos[moved] = frontierSize;
+            }
+            frontier[pos] = tile;
+            frontierPos[tile] = pos;
+            frontierSize++;
+        }
+
+        /**
+         * Lists the orientations a tile can take: distinct connector masks without forbidden sides, ordered by
+         * the turns they need from the current board.
+         *
+         * @param tile the tile.
+         * @param side the ordinal of a side the masks must contain, or -1.
+         * @return up to four rotations in bits 0-7, two bits each, and their number in bits 8 and up.
+         */
+        private int options(int tile, int side) {
+            int base = topology.mask(tile);
+            int current = board.rotation(tile);
+            int seen = 0;
+            int options = 0;
+            int count = 0;
+            for (int k = 0; k < 4; k++) {
+                int rotation = (current + k) & 3;
+                int mask = Side.rotateMask(base, rotation);
+                if ((seen & 1 << mask) != 0) {
+                    continue;
+                }
+                seen |= 1 << mask;
+                if ((mask & forbidden[tile]) != 0 || (side >= 0 && (mask & 1 << side) == 0)) {
+                    continue;
+                }
+                options |= rotation << (2 * count);
+                count++;
+            }
+            return options | count << 8;
+        }
+
+        /**
+         * Picks the pointer into the frontier with the fewest orientations facing it.
+         *
+         * @return the pointed tile and the ordinal of the side it is pointed at from, as {@code tile << 2 | side},
+         *         or -1 when the frontier is empty.
+         */
+        private int select() {
+            int best = -1;
+            int bestCount = Integer.MAX_VALUE;
+            for (int i = 0; i < frontierSize && bestCount > 0; i++) {
+                int tile = frontier[i];
+                for (Side side : SIDES) {
+                    if (!pointsAt(tile, side)) {
+                        continue;
+                    }
+                    int count = options(tile, side.ordinal()) >>> 8;
+                    if (count < bestCount) {
+                        best = tile << 2 | side.ordinal();
+                        bestCount = count;
+                    }
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Checks optimistically that every undecided node can still be powered: power enters the frontier
+         * through the pointers and spreads through undecided tiles that have an allowed orientation connecting
+         * the side it enters with the side it leaves.
+         *
+         * @return false when some undecided node can never be powered.
+         */
+        private boolean reachable() {
+            generation++;
+            int head = 0;
+            int tail = 0;
+            int reached = 0;
+            for (int i = 0; i < frontierSize; i++) {
+                int tile = frontier[i];
+                for (Side side : SIDES) {
+                    if (!pointsAt(tile, side)) {
+                        continue;
+                    }
+                    if (stamp[tile] != generation) {
+                        stamp[tile] = generation;
+                        entered[tile] = 0;
+                        reached++;
+                    }
+                    if ((entered[tile] & side.bit()) == 0) {
+                        entered[tile] |= (byte) side.bit();
+                        queue[tail++] = tile << 2 | side.ordinal();
+                    }
+                }
+            }
+            while (head < tail) {
+                int item = queue[head++];
+                int tile = item >>> 2;
+                int out = PASS[topology.mask(tile)][forbidden[tile]][item & 3];
+                for (Side side : SIDES) {
+                    if ((out & side.bit()) == 0 || !pointable(tile, side)) {
+                        continue;
+                    }
+                    int neighbor = board.neighbor(tile, side);
+                    int in = side.opposite().bit();
+                    if (stamp[neighbor] != generation) {
+                        stamp[neighbor] = generation;
+                        entered[neighbor] = 0;
+                        reached++;
+                    }
+                    if ((entered[neighbor] & in) == 0) {
+                        entered[neighbor] |= (byte) in;
+                        queue[tail++] = neighbor << 2 | side.opposite().ordinal();
+                    }
+                }
+            }
+            return reached == nodeCount - decidedCount;
+        }
+    }
+}
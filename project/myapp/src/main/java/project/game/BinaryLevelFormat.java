@@ -0,0 +1,181 @@
+package project.game;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The {@link BinaryLevelFormat} class reads and writes levels in a compact binary form.
+ * <p>
+ * Layout (big endian):
+ * <pre>
+ * 0   magic "ELV1"
+ * 4   rows          int
+ * 8   columns       int
+ * 12  source row    int (0 when the level has no source)
+ * 16  source column int (0 when the level has no source)
+ * 20  tiles         rows * columns bytes, row by row,
+ *                   node type in the high nibble, connector mask in the low nibble
+ * </pre>
+ * The tile bytes are exactly the cells of a {@link LevelTemplate}, so a level is read with one bulk copy.
+ * The conversion to and from the text format of {@link GameLoader} is lossless. Running the class converts
+ * a level file: {@code BinaryLevelFormat <input> <output>} writes binary output for a text input and text
+ * output for a binary input.
+ */
+public final class BinaryLevelFormat {
+    /** Size of the header preceding the tiles. */
+    public static final int HEADER_SIZE = 20;
+
+    private static final byte[] MAGIC = {'E', 'L', 'V', '1'};
+
+    /**
+     * Private constructor, the class only has static methods.
+     */
+    private BinaryLevelFormat() {
+    }
+
+    /**
+     * Checks whether the buffer starts with a binary level at its current position.
+     *
+     * @param buffer the buffer to inspect, its position is not changed.
+     * @return true if the magic bytes of the format are present.
+     */
+    public static boolean isBinary(ByteBuffer buffer) {
+        int pos = buffer.position();
+        if (buffer.limit() - pos < MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (buffer.get(pos + i) != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of bytes a level occupies in the binary form.
+     *
+     * @param template the level.
+     * @return the encoded size in bytes.
+     */
+    public static int encodedSize(LevelTemplate template) {
+        return HEADER_SIZE + template.size();
+    }
+
+    /**
+     * Reads a level starting at the current position of the buffer. The position is not changed.
+     *
+     * @param buffer the buffer holding the level.
+     * @return the decoded level.
+     * @throws IllegalArgumentException if the buffer does not hold a valid binary level.
+     */
+    public static LevelTemplate read(ByteBuffer buffer) {
+        if (!isBinary(buffer)) {
+            throw new IllegalArgumentException("not a binary level");
+        }
+        int pos = buffer.position();
+        int rows = buffer.getInt(pos + 4);
+        int cols = buffer.getInt(pos + 8);
+        long size = (long) rows * cols;
+        if (rows < 1 || cols < 1 || size > buffer.limit() - pos - HEADER_SIZE) {
+            throw new IllegalArgumentException("truncated binary level " + rows + "x" + cols);
+        }
+        byte[] cells = new byte[(int) size];
+        buffer.get(pos + HEADER_SIZE, cells);
+        return new LevelTemplate(rows, cols, cells);
+    }
+
+    /**
+     * Writes a level at the current position of the buffer and advances the position.
+     *
+     * @param template the level.
+     * @param buffer the destination with at least {@link #encodedSize(LevelTemplate)} bytes remaining.
+     */
+    public static void write(LevelTemplate template, ByteBuffer buffer) {
+        int source = template.sourceIndex();
+        buffer.put(MAGIC);
+        buffer.putInt(template.rows());
+        buffer.putInt(template.cols());
+        buffer.putInt(source < 0 ? 0 : template.row(source));
+        buffer.putInt(source < 0 ? 0 : template.col(source));
+        buffer.put(template.cellArray());
+    }
+
+    /**
+     * Encodes a level into a new buffer ready to be read or written to a channel.
+     *
+     * @param template the level.
+     * @return the encoded level, flipped.
+     */
+    public static ByteBuffer encode(LevelTemplate template) {
+        ByteBuffer buffer = ByteBuffer.allocate(encodedSize(template));
+        write(template, buffer);
+        return buffer.flip();
+    }
+
+    /**
+     * Writes a level to a file in the binary form.
+     *
+     * @param template the level.
+     * @param file the destination file, replaced if it exists.
+     * @throws IOException If writing fails.
+     */
+    public static void write(LevelTemplate template, Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = encode(template);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Loads a level file in either format.
+     *
+     * @param file the level file.
+     * @return the level.
+     * @throws IOException If the file cannot be read or is malformed.
+     */
+    public static LevelTemplate load(Path file) throws IOException {
+        GameLoader loader = new GameLoader(file.toString());
+        if (!loader.errors.isEmpty()) {
+            throw new IOException(loader.errors.get(0));
+        }
+        return loader.toTemplate();
+    }
+
+    /**
+     * Converts a level between the text and the binary format.
+     *
+     * @param args the input and the output file.
+     * @throws IOException If a file cannot be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage: BinaryLevelFormat <input> <output>");
+            System.exit(2);
+        }
+        Path input = Paths.get(args[0]);
+        Path output = Paths.get(args[1]);
+        boolean binaryInput;
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            binaryInput = isBinary(channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), MAGIC.length)));
+        }
+        LevelTemplate template = load(input);
+        if (binaryInput) {
+            try (Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+                template.writeText(writer);
+            }
+        } else {
+            write(template, output);
+        }
+    }
+}
@@ -0,0 +1,406 @@
+package project.game;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+import project.common.NodeType;
+import project.common.Side;
+import project.common.ToolEnvironment;
+import project.common.ToolField;
+
+/**
+ * The {@link BoardState} class is a compact, copy-on-write copy of a board for solvers, hints, previews
+ * and background work.
+ * <p>
+ * The immutable topology (node types and authored connectors) is shared through a {@link LevelTemplate}.
+ * The only mutable data is the rotation of every tile (0-3 clockwise quarter turns from the authored
+ * orientation), kept in pages of {@value #PAGE_SIZE} tiles. {@link #fork()} and {@link #snapshot()} copy
+ * only the page table; a page is copied the first time either side writes to it, so a fork costs
+ * microseconds even for a million tiles and then allocates memory proportional to the tiles it changes.
+ * The power state is computed lazily from the rotations.
+ * <p>
+ * {@link #hash()} is a 64-bit Zobrist hash of the board: the XOR of one key per non-empty tile, chosen by the
+ * tile index, its type and its current connector mask. It is computed once and then updated by two XORs in
+ * {@link #setRotation(int, int)}, so the identity of a state costs O(1). Rotations that give a tile the same
+ * connectors, like a straight wire turned twice, hash the same. The keys come from a fixed mixing function
+ * instead of a random table, so hashes are equal across runs and can be stored.
+ * <p>
+ * A state is not thread-safe, but forks are independent and may be handed to other threads.
+ */
+public final class BoardState {
+    static final int PAGE_BITS = 12;
+    static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    private static final byte[] ZERO_PAGE = new byte[PAGE_SIZE];
+
+    private final LevelTemplate topology;
+    private final byte[][] pages;
+    private final boolean[] owned;
+    private final boolean readOnly;
+    private long[] powered;
+    private boolean hashed;
+    private long hash;
+
+    /**
+     * Creates a state with every tile in its authored orientation.
+     *
+     * @param topology the level.
+     */
+    public BoardState(LevelTemplate topology) {
+        this.topology = topology;
+        int pageCount = (topology.size() + PAGE_SIZE - 1) >>> PAGE_BITS;
+        this.pages = new byte[pageCount][];
+        Arrays.fill(pages, ZERO_PAGE);
+        this.owned = new boolean[pageCount];
+        this.readOnly = false;
+    }
+
+    /**
+     * Creates a copy sharing all pages with the parent. Neither side owns a page afterwards,
+     * so the next write on either side copies the page first.
+     *
+     * @param parent the state to copy.
+     * @param readOnly whether the copy rejects writes.
+     */
+    private BoardState(BoardState parent, boolean readOnly) {
+        this.topology = parent.topology;
+        this.pages = parent.pages.clone();
+        this.owned = new boolean[pages.length];
+        this.readOnly = readOnly;
+        this.powered = parent.powered;
+        this.hashed = parent.hashed;
+        this.hash = parent.hash;
+        Arrays.fill(parent.owned, false);
+    }
+
+    /**
+     * Creates a state from any board. The current orientation of every field is taken as its authored one,
+     * so all rotations of the new state are 0.
+     *
+     * @param environment the board to copy.
+     * @return the new state.
+     */
+    public static BoardState of(ToolEnvironment environment) {
+        int rows = environment.rows();
+        int cols = environment.cols();
+        byte[] cells = new byte[rows * cols];
+        for (int r = 1; r <= rows; r++) {
+            for (int c = 1; c <= cols; c++) {
+                ToolField field = environment.fieldAt(r, c);
+                NodeType type = field.isPower() ? NodeType.SOURCE
+                        : field.isBulb() ? NodeType.BULB
+                        : field.isLink() ? NodeType.WIRE
+                        : NodeType.EMPTY;
+                int mask = (field.north() ? Side.NORTH.bit() : 0) | (field.east() ? Side.EAST.bit() : 0)
+                        | (field.south() ? Side.SOUTH.bit() : 0) | (field.west() ? Side.WEST.bit() : 0);
+                cells[(r - 1) * cols + (c - 1)] = type == NodeType.EMPTY ? 0 : LevelTemplate.encode(type, mask);
+            }
+        }
+        return new BoardState(new LevelTemplate(rows, cols, cells));
+    }
+
+    /**
+     * Returns a mutable copy of this state. Pages are shared until either side writes them.
+     *
+     * @return the fork.
+     */
+    public BoardState fork() {
+        return new BoardState(this, false);
+    }
+
+    /**
+     * Returns an immutable copy of this state. Pages are shared until this state writes them.
+     *
+     * @return the snapshot, or this state when it is already read-only.
+     */
+    public BoardState snapshot() {
+        return readOnly ? this : new BoardState(this, true);
+    }
+
+    /**
+     * @return true when the state rejects writes.
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * @return the shared topology of the level.
+     */
+    public LevelTemplate topology() {
+        return topology;
+    }
+
+    /**
+     * @return the number of rows.
+     */
+    public int rows() {
+        return topology.rows();
+    }
+
+    /**
+     * @return the number of columns.
+     */
+    public int cols() {
+        return topology.cols();
+    }
+
+    /**
+     * @return the number of tiles.
+     */
+    public int size() {
+        return topology.size();
+    }
+
+    /**
+     * @param index the tile index.
+     * @return the node type of the tile.
+     */
+    public NodeType type(int index) {
+        return topology.type(index);
+    }
+
+    /**
+     * @param index the tile index.
+     * @return the number of clockwise quarter turns of the tile from its authored orientation (0-3).
+     */
+    public int rotation(int index) {
+        return pages[index >>> PAGE_BITS][index & PAGE_MASK];
+    }
+
+    /**
+     * @param index the tile index.
+     * @return the connector mask of the tile in its current orientation.
+     */
+    public int mask(int index) {
+        return Side.rotateMask(topology.mask(index), rotation(index));
+    }
+
+    /**
+     * Checks whether two states of the same level have every tile rotated the same way.
+     * Pages still shared between the states are not compared.
+     *
+     * @param other the state to compare with.
+     * @return true when all rotations are equal.
+     */
+    public boolean rotationsEqual(BoardState other) {
+        if (other.size() != size()) {
+            return false;
+        }
+        for (int p = 0; p < pages.length; p++) {
+            if (pages[p] != other.pages[p] && !Arrays.equals(pages[p], other.pages[p])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the Zobrist hash of the board. The first call visits every tile, later calls are O(1).
+     *
+     * @return the hash, equal for two states of the same level whose tiles have the same connectors.
+     */
+    public long hash() {
+        if (!hashed) {
+            long h = 0;
+            for (int i = 0; i < size(); i++) {
+                h ^= key(i, mask(i));
+            }
+            hash = h;
+            hashed = true;
+        }
+        return hash;
+    }
+
+    /**
+     * Sets the rotation of a tile.
+     *
+     * @param index the tile index.
+     * @param rotation the number of clockwise quarter turns from the authored orientation, taken modulo 4.
+     * @throws IllegalStateException if the state is read-only.
+     */
+    public void setRotation(int index, int rotation) {
+        if (readOnly) {
+            throw new IllegalStateException("board snapshot is read-only");
+        }
+        int value = Math.floorMod(rotation, 4);
+        int page = index >>> PAGE_BITS;
+        if (pages[page][index & PAGE_MASK] == value) {
+            return;
+        }
+        if (!owned[page]) {
+            pages[page] = pages[page].clone();
+            owned[page] = true;
+        }
+        if (hashed) {
+            hash ^= key(index, mask(index)) ^ key(index, Side.rotateMask(topology.mask(index), value));
+        }
+        pages[page][index & PAGE_MASK] = (byte) value;
+        powered = null;
+    }
+
+    /**
+     * Rotates a tile clockwise by one step.
+     *
+     * @param index the tile index.
+     */
+    public void turn(int index) {
+        setRotation(index, rotation(index) + 1);
+    }
+
+    /**
+     * Rotates a tile counterclockwise by one step.
+     *
+     * @param index the tile index.
+     */
+    public void turnReverse(int index) {
+        setRotation(index, rotation(index) + 3);
+    }
+
+    /**
+     * Returns the Zobrist key of a tile with the given connectors, a well mixed function of the tile index,
+     * its type and the mask. Empty tiles never change, they get no key.
+     *
+     * @param index the tile index.
+     * @param mask the connector mask of the tile.
+     * @return the key.
+     */
+    private long key(int index, int mask) {
+        NodeType type = topology.type(index);
+        if (type == NodeType.EMPTY) {
+            return 0;
+        }
+        long z = ((long) index << 8 | type.ordinal() << 4 | mask) * 0x9E3779B97F4A7C15L + 0x632BE59BD9B4E019L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * @param index the tile index.
+     * @return true when the tile is connected to the power source.
+     */
+    public boolean isPowered(int index) {
+        long[] bits = poweredBits();
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * @return the number of powered tiles.
+     */
+    public int poweredCount() {
+        int count = 0;
+        for (long word : poweredBits()) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * @return true when every non-empty tile is powered.
+     */
+    public boolean isWin() {
+        return poweredCount() == topology.nodeCount();
+    }
+
+    /**
+     * @return true when at least one bulb is powered.
+     */
+    public boolean someBulbsAreOn() {
+        long[] bits = poweredBits();
+        for (int w = 0; w < bits.length; w++) {
+            long word = bits[w];
+            while (word != 0) {
+                int index = (w << 6) + Long.numberOfTrailingZeros(word);
+                if (topology.type(index) == NodeType.BULB) {
+                    return true;
+                }
+                word &= word - 1;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the index of the neighbouring tile in the given direction.
+     *
+     * @param index the tile index.
+     * @param side the direction.
+     * @return the index of the neighbour, or -1 at the edge of the board.
+     */
+    public int neighbor(int index, Side side) {
+        int cols = topology.cols();
+        int col = index % cols;
+        return switch (side) {
+            case NORTH -> index >= cols ? index - cols : -1;
+            case SOUTH -> index + cols < topology.size() ? index + cols : -1;
+            case EAST -> col + 1 < cols ? index + 1 : -1;
+            case WEST -> col > 0 ? index - 1 : -1;
+        };
+    }
+
+    /**
+     * Writes the board in its current orientation in the text format read by {@link GameLoader}.
+     *
+     * @param writer the destination.
+     * @throws IOException If writing fails.
+     */
+    public void writeText(Writer writer) throws IOException {
+        writer.write(rows() + " " + cols() + "\n");
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < size(); i++) {
+            NodeType type = type(i);
+            if (type == NodeType.EMPTY) {
+                continue;
+            }
+            line.setLength(0);
+            line.append(type.swichSideToString()).append(' ').append(topology.row(i)).append(' ').append(topology.col(i));
+            for (Side side : Side.fromMask(mask(i))) {
+                line.append(' ').append(side.name());
+            }
+            writer.write(line.append('\n').toString());
+        }
+    }
+
+    /**
+     * Returns the powered tiles as a bit set, computing it when the rotations changed.
+     * Power spreads from the source through pairs of facing connectors, exactly as in {@link Game#init()}.
+     *
+     * @return the bit set of powered tiles.
+     */
+    private long[] poweredBits() {
+        if (powered != null) {
+            return powered;
+        }
+        long[] bits = new long[(topology.size() + 63) >>> 6];
+        int source = topology.sourceIndex();
+        if (source >= 0) {
+            int[] queue = new int[topology.nodeCount()];
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = source;
+            bits[source >>> 6] |= 1L << source;
+            Side[] sides = Side.values();
+            while (head < tail) {
+                int index = queue[head++];
+                int mask = mask(index);
+                for (Side side : sides) {
+                    if ((mask & side.bit()) == 0) {
+                        continue;
+                    }
+                    int neighbor = neighbor(index, side);
+                    if (neighbor < 0 || (bits[neighbor >>> 6] & (1L << neighbor)) != 0
+                            || topology.type(neighbor) == NodeType.EMPTY
+                            || (mask(neighbor) & side.opposite().bit()) == 0) {
+                        continue;
+                    }
+                    bits[neighbor >>> 6] |= 1L << neighbor;
+                    queue[tail++] = neighbor;
+                }
+            }
+        }
+        powered = bits;
+        return bits;
+    }
+}
@@ -0,0 +1,61 @@
+package project.game;
+
+/**
+ * The {@link Checkpointer} class decides when the board of a saved level is checkpointed.
+ * <p>
+ * It counts the turns journaled to the step log and, every {@code electrician.checkpoint.moves} turns
+ * (default {@value #DEFAULT_MOVES}) or at the first turn after {@code electrician.checkpoint.seconds} seconds
+ * (default {@value #DEFAULT_SECONDS}), takes a snapshot of the board and hands it to
+ * {@link SavedGame#saveCheckpoint(String, BoardState, long)}. The snapshot costs microseconds; encoding, writing
+ * and the compaction of the step log happen on the {@link SaveWriter} thread.
+ */
+public final class Checkpointer {
+    /** Default number of turns between two checkpoints. */
+    public static final int DEFAULT_MOVES = 50;
+    /** Default number of seconds after which the next turn is checkpointed. */
+    public static final int DEFAULT_SECONDS = 30;
+
+    private final String levelPath;
+    private final int moves;
+    private final long intervalNanos;
+    private long step;
+    private long checkpointStep;
+    private long checkpointTime;
+
+    /**
+     * Creates a checkpointer for a saved level.
+     *
+     * @param levelPath the path of the level file of the game.
+     * @param step the logical position of the last step in the step log, 0 for a freshly saved level.
+     */
+    public Checkpointer(String levelPath, long step) {
+        this.levelPath = levelPath;
+        this.moves = Math.max(1, Integer.getInteger("electrician.checkpoint.moves", DEFAULT_MOVES));
+        this.intervalNanos = Math.max(1, Integer.getInteger("electrician.checkpoint.seconds", DEFAULT_SECONDS)) * 1_000_000_000L;
+        this.step = step;
+        this.checkpointStep = step;
+        this.checkpointTime = System.nanoTime();
+    }
+
+    /**
+     * Called after a turn was appended to the step log. Writes a checkpoint when one is due.
+     *
+     * @param game the game after the turn.
+     */
+    public void stepSaved(Game game) {
+        step++;
+        long now = System.nanoTime();
+        if (step - checkpointStep >= moves || now - checkpointTime >= intervalNanos) {
+            SavedGame.saveCheckpoint(levelPath, game.snapshot(), step);
+            checkpointStep = step;
+            checkpointTime = now;
+        }
+    }
+
+    /**
+     * @return the logical position of the last journaled step.
+     */
+    public long getStep() {
+        return step;
+    }
+}
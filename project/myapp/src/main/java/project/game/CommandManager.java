@@ -1,19 +1,57 @@
 package project.game;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.Stack;
 
+import project.common.GameNode;
+import project.common.Position;
+
 /**
  * Manages the execution, undo, and redo of commands.
  *
  * This class maintains two stacks: one for undo operations and another for redo operations.
  * It allows commands to be executed, undone, and redone in a controlled manner.
+ * <p>
+ * When the manager belongs to a game, rotations are not kept as {@link TurnCommand} objects: each is stored as
+ * one int, {@code tileIndex << 1 | reverse}, in an {@link IntHistory}. Only {@code electrician.history.window}
+ * entries (default {@value #DEFAULT_WINDOW}) per stack stay in memory, older ones are spilled to disk. Other
+ * command types are kept as objects; their place in the history is marked by -1.
+ * <p>
+ * Steps loaded from a step log are not put on the redo stack. They stay on disk behind a {@link StepLogCursor}
+ * and a command is created only when {@link #redo()} reaches its step, after the commands on the redo stack.
  */
 public class CommandManager {
-    private final Stack<Command> undoStack = new Stack<>();
-    private final Stack<Command> redoStack = new Stack<>();
+    /** Default number of history entries per stack kept in memory. */
+    public static final int DEFAULT_WINDOW = 1 << 16;
+
+    private static final int OBJECT = -1;
+
+    private final Game game;
+    private final IntHistory undoStack;
+    private final IntHistory redoStack;
+    private final Stack<Command> undoCommands = new Stack<>();
+    private final Stack<Command> redoCommands = new Stack<>();
+    private StepLogCursor redoLog;
+
+    /**
+     * Creates a manager that keeps every command as an object.
+     */
+    public CommandManager() {
+        this(null);
+    }
+
+    /**
+     * Creates a manager for a game. Rotations of its nodes are kept in the compact int history.
+     *
+     * @param game the game the commands are applied to, or null to keep every command as an object.
+     */
+    public CommandManager(Game game) {
+        this.game = game;
+        int window = Math.max(2, Integer.getInteger("electrician.history.window", DEFAULT_WINDOW));
+        this.undoStack = new IntHistory(window);
+        this.redoStack = new IntHistory(window);
+    }
 
     /**
      * Executes a command and adds it to the undo stack.
@@ -23,8 +61,24 @@ public class CommandManager {
      */
     public void executeCommand(Command cmd) {
         cmd.execute();
-        undoStack.push(cmd);
-        redoStack.clear();
+        pushUndo(cmd);
+        clearRedo();
+    }
+
+    /**
+     * Turns a node clockwise and adds the turn to the undo stack, without creating a command object.
+     * Clears the redo stack like {@link #executeCommand(Command)}.
+     *
+     * @param node the node to turn.
+     */
+    public void executeTurn(GameNode node) {
+        if (game == null) {
+            executeCommand(new TurnCommand(node));
+            return;
+        }
+        TurnCommand.turn(node);
+        undoStack.push(index(node) << 1);
+        clearRedo();
     }
 
      /**
@@ -32,54 +86,119 @@ public class CommandManager {
      * The undone command is pushed onto the redo stack.
      */
     public void undo() {
-        if (!undoStack.isEmpty()) {
-            Command cmd = undoStack.pop();
+        if (undoStack.isEmpty()) {
+            return;
+        }
+        int entry = undoStack.pop();
+        if (entry == OBJECT) {
+            Command cmd = undoCommands.pop();
             cmd.undo();
-            redoStack.push(cmd);
+            redoCommands.push(cmd);
+        } else {
+            apply(entry ^ 1);
         }
+        redoStack.push(entry);
     }
+
     /**
-     * Redoes the last undone command, if any.
+     * Redoes the last undone command, if any, otherwise the next step of the loaded step log.
      * The redone command is pushed onto the undo stack.
      */
     public void redo() {
         if (!redoStack.isEmpty()) {
-            Command cmd = redoStack.pop();
-            cmd.execute();
-            undoStack.push(cmd);
+            int entry = redoStack.pop();
+            if (entry == OBJECT) {
+                Command cmd = redoCommands.pop();
+                cmd.execute();
+                undoCommands.push(cmd);
+            } else {
+                apply(entry);
+            }
+            undoStack.push(entry);
+        } else if (redoLog != null) {
+            Command cmd = redoLog.next();
+            if (redoLog.remaining() == 0) {
+                redoLog = null;
+            }
+            if (cmd != null) {
+                cmd.execute();
+                pushUndo(cmd);
+            }
         }
     }
 
+    /**
+     * Adds an executed command to the undo stack, as an int when it is a rotation of a node of the game.
+     *
+     * @param cmd the executed command.
+     */
+    private void pushUndo(Command cmd) {
+        if (game != null && cmd instanceof TurnCommand turn) {
+            undoStack.push(index(turn.getNode()) << 1);
+        } else {
+            undoStack.push(OBJECT);
+            undoCommands.push(cmd);
+        }
+    }
+
+    /**
+     * Empties the redo stack and drops the loaded step log.
+     */
+    private void clearRedo() {
+        redoStack.clear();
+        redoCommands.clear();
+        redoLog = null;
+    }
+
+    /**
+     * Turns the node of an int-encoded rotation.
+     *
+     * @param entry the rotation, {@code tileIndex << 1 | reverse}.
+     */
+    private void apply(int entry) {
+        int index = entry >>> 1;
+        GameNode node = game.node(new Position(index / game.cols() + 1, index % game.cols() + 1));
+        if ((entry & 1) == 0) {
+            TurnCommand.turn(node);
+        } else {
+            TurnCommand.turnReverse(node);
+        }
+    }
 
     /**
-     * Loads commands from a file and adds them to the redo stack.
+     * @param node a node of the game.
+     * @return the tile index of the node.
+     */
+    private int index(GameNode node) {
+        Position p = node.getPosition();
+        return (p.getRow() - 1) * game.cols() + (p.getCol() - 1);
+    }
+
+    /**
+     * Loads commands from a file for redo.
      * The file format should be such that each line represents a command to be executed.
      *
      * @param filename the name of the file to load commands from.
      * @param game the game instance where the commands will be applied.
      */
     public void loadCommandsFromFile(String filename, Game game) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(filename))) {
-            String line;
-            Stack<Command> reversedStack = new Stack<>();
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(" ");
-                if (parts.length >= 4) {
-                    int row = Integer.parseInt(parts[1]);
-                    int col = Integer.parseInt(parts[2]);
-
-                     // Command to turn (or revert the state of) the node
-                    TurnCommand cmd = new TurnCommand(game.getGame()[row][col]);
-
-                    // Add to redoStack (or executeCommand for undoStack)
-                    reversedStack.push(cmd);
-                }
-            }
-            while (!reversedStack.isEmpty()) {
-                redoStack.push(reversedStack.pop());
-            }
-        } catch (IOException | IllegalArgumentException e) {
+        loadCommandsFromFile(filename, game, 0);
+    }
+
+    /**
+     * Loads the commands after a given step of a step log for redo. The file is only scanned here; each
+     * command is read from it when {@link #redo()} reaches it.
+     * A compacted log starts with a {@code # base N} line: its first step is then step N + 1.
+     *
+     * @param filename the name of the file to load commands from.
+     * @param game the game instance where the commands will be applied.
+     * @param fromStep the logical position of the last step already applied to the game.
+     */
+    public void loadCommandsFromFile(String filename, Game game, long fromStep) {
+        try {
+            redoLog = StepLogCursor.open(Paths.get(filename), game, fromStep);
+        } catch (IOException e) {
             e.printStackTrace();
         }
     }
-}
\ No newline at end of file
+}
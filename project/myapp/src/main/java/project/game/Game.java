@@ -18,6 +18,12 @@ public class Game implements ToolEnvironment, Observer{
     private boolean isSource = false;
     private boolean win = false;
     private List<GameWinListener> winListeners = new ArrayList<>();
+    private List<GameTurnListener> turnListeners = new ArrayList<>();
+    private int visitedNodes = 0;
+    private long lastPropagationNanos = 0;
+    private long lastWinCheckNanos = 0;
+    private LevelTemplate template;
+    private BoardState state;
 
     /**
      * Private constructor to initialize a new game with the given number of rows and columns.
@@ -37,6 +43,37 @@ public class Game implements ToolEnvironment, Observer{
         }
     }
 
+    /**
+     * Private constructor that stamps the nodes of a new game directly from a level template.
+     *
+     * @param template the parsed level.
+     */
+    private Game(LevelTemplate template) {
+        this.rows = template.rows();
+        this.cols = template.cols();
+        this.template = template;
+        grid = new GameNode[rows + 1][cols + 1];
+
+        for (int r = 0; r <= rows; r++) {
+            for (int c = 0; c <= cols; c++) {
+                if (r == 0 || c == 0) {
+                    grid[r][c] = new GameNode(r, c, NodeType.EMPTY);
+                    continue;
+                }
+                int index = template.index(r, c);
+                NodeType type = template.type(index);
+                if (type == NodeType.EMPTY) {
+                    grid[r][c] = new GameNode(r, c, NodeType.EMPTY);
+                } else {
+                    grid[r][c] = new GameNode(r, c, type, Side.fromMask(template.mask(index)));
+                    grid[r][c].addObserver(this);
+                }
+            }
+        }
+        isSource = template.sourceIndex() >= 0;
+        state = new BoardState(template);
+    }
+
     /**
      * Checks if the position is valid within the game grid.
      *
@@ -63,6 +100,45 @@ public class Game implements ToolEnvironment, Observer{
         }
     }
 
+    /**
+     * Creates a new game from a parsed level. This is the cheap way to start a level again,
+     * as the nodes are created from the primitive tiles of the template without reading the level file.
+     *
+     * @param template the parsed level.
+     * @return a new game instance with all nodes of the level in their authored orientation.
+     */
+    public static Game create(LevelTemplate template) {
+        return new Game(template);
+    }
+
+    /**
+     * Creates a new game from a board state, with every node already rotated as in the state.
+     * The nodes are rotated silently, so the game is initialized once afterwards with {@link #init()}.
+     *
+     * @param board the level and the rotations of its tiles.
+     * @return a new game instance showing the board.
+     */
+    public static Game create(BoardState board) {
+        Game game = new Game(board.topology());
+        for (int i = 0; i < board.size(); i++) {
+            int rotation = board.rotation(i);
+            if (rotation != 0) {
+                game.grid[board.topology().row(i)][board.topology().col(i)].rotate(rotation);
+            }
+        }
+        game.state = board.fork();
+        return game;
+    }
+
+    /**
+     * Returns the level this game was created from.
+     *
+     * @return the template of the level, or null when the game was assembled node by node.
+     */
+    public LevelTemplate getTemplate() {
+        return this.template;
+    }
+
     /**
      * Returns the number of rows in the game grid.
      *
@@ -108,6 +184,7 @@ public class Game implements ToolEnvironment, Observer{
      */
     public GameNode createBulbNode(Position p, Side sides) {
         if (chceckPosition(p)) {
+            topologyChanged();
             grid[p.getRow()][p.getCol()] = new GameNode(p.getRow(), p.getCol(), NodeType.BULB, sides);
             grid[p.getRow()][p.getCol()].addObserver(this);
             return grid[p.getRow()][p.getCol()];
@@ -128,6 +205,7 @@ public class Game implements ToolEnvironment, Observer{
     public GameNode createPowerNode(Position p, Side... sides) {
         if (chceckPosition(p) && !isSource && sides.length >= 1) {
             isSource = true;
+            topologyChanged();
             grid[p.getRow()][p.getCol()] = new GameNode(p.getRow(), p.getCol(), NodeType.SOURCE, sides);
             grid[p.getRow()][p.getCol()].addObserver(this);
             return grid[p.getRow()][p.getCol()];
@@ -146,6 +224,7 @@ public class Game implements ToolEnvironment, Observer{
      */
     public GameNode createLinkNode(Position p, Side... sides) {
         if (chceckPosition(p) && sides.length >= 2) {
+            topologyChanged();
             grid[p.getRow()][p.getCol()] = new GameNode(p.getRow(), p.getCol(), NodeType.WIRE, sides);
             grid[p.getRow()][p.getCol()].addObserver(this);
             return grid[p.getRow()][p.getCol()];
@@ -155,6 +234,83 @@ public class Game implements ToolEnvironment, Observer{
         }
     }
 
+    /**
+     * Forgets the level template and the board state after a node was created or replaced.
+     * The state is rebuilt from the nodes the next time a snapshot is requested.
+     */
+    private void topologyChanged() {
+        template = null;
+        state = null;
+    }
+
+    /**
+     * Returns an immutable copy of the current board for solvers, previews and background work.
+     * <p>
+     * The copy shares the level topology and all rotation pages with the game; a page is copied only when
+     * the game changes it later, so taking a snapshot costs microseconds even on very large boards.
+     *
+     * @return the read-only snapshot of the board.
+     */
+    public BoardState snapshot() {
+        return currentState().snapshot();
+    }
+
+    /**
+     * Returns a private, mutable copy of the current board that can be changed without affecting the game.
+     * Like {@link #snapshot()}, the fork shares the topology and copies rotation pages only on write.
+     *
+     * @return the fork of the board.
+     */
+    public BoardState fork() {
+        return currentState().fork();
+    }
+
+    /**
+     * Returns the Zobrist hash of the current board, an O(1) identity of the board state for transposition
+     * tables, duplicate detection and save integrity. The hash is updated by XOR on every turn of a node,
+     * see {@link BoardState#hash()}.
+     *
+     * @return the hash of the board.
+     */
+    public long stateHash() {
+        return currentState().hash();
+    }
+
+    /**
+     * Returns the board state kept in sync with the nodes, building it when the game was assembled node by node.
+     *
+     * @return the live board state of the game.
+     */
+    private BoardState currentState() {
+        if (state != null) {
+            return state;
+        }
+        byte[] cells = new byte[rows * cols];
+        int[] rotations = new int[rows * cols];
+        for (int r = 1; r <= rows; r++) {
+            for (int c = 1; c <= cols; c++) {
+                GameNode node = grid[r][c];
+                if (node.getType() == NodeType.EMPTY) {
+                    continue;
+                }
+                int index = (r - 1) * cols + (c - 1);
+                int mask = 0;
+                for (Side side : node.getSides()) {
+                    mask |= side.bit();
+                }
+                rotations[index] = Math.floorMod(node.getTurns(), 4);
+                cells[index] = LevelTemplate.encode(node.getType(), Side.rotateMask(mask, -rotations[index]));
+            }
+        }
+        state = new BoardState(new LevelTemplate(rows, cols, cells));
+        for (int i = 0; i < rotations.length; i++) {
+            if (rotations[i] != 0) {
+                state.setRotation(i, rotations[i]);
+            }
+        }
+        return state;
+    }
+
     /**
      * Retrieves the game node at the specified position.
      *
@@ -175,6 +331,11 @@ public class Game implements ToolEnvironment, Observer{
      */
     public void init() {
        // System.out.println("init game robkam");
+        long start = GameMetrics.start();
+        PropagationEvent event = new PropagationEvent();
+        event.begin();
+        visitedNodes = 0;
+        int changedNodes = 0;
         boolean [] [] originalPower = new boolean[rows + 1][cols + 1];
         for (int r = 1; r <= rows; r++) {
             for (int c = 1; c <= cols; c++) {
@@ -195,15 +356,28 @@ public class Game implements ToolEnvironment, Observer{
                 }
             }
         }
+        // observers may start a nested init(), so the count is taken before notifying them
+        int visited = visitedNodes;
 
         for (int r = 1; r <= rows; r++) {
             for (int c = 1; c <= cols; c++) {
                 GameNode node = grid[r][c];
                 if (originalPower[r][c] != node.isPowered()) {
+                    changedNodes++;
                     grid[r][c].notifyObservers();
                 } 
             }
         }
+        GameMetrics.count(GameMetrics.Counter.PROPAGATIONS);
+        GameMetrics.count(GameMetrics.Counter.NODES_VISITED, visited);
+        GameMetrics.stop(GameMetrics.Timer.PROPAGATION, start);
+        if (event.shouldCommit()) {
+            event.rows = rows;
+            event.cols = cols;
+            event.nodesVisited = visited;
+            event.nodesChanged = changedNodes;
+            event.commit();
+        }
     }
 
     /**
@@ -212,6 +386,7 @@ public class Game implements ToolEnvironment, Observer{
      * @param node the node to start powering from.
      */
     private void poweredNodes(GameNode node) {
+        visitedNodes++;
         for (Side side : node.getSides()) {
             Position neighborPos = getNeighborPosition(node.getPosition(), side);
 
@@ -301,13 +476,27 @@ public class Game implements ToolEnvironment, Observer{
      */
     @Override
     public void update(Observable o) {
+        GameMetrics.count(GameMetrics.Counter.NOTIFICATIONS);
         GameNode node = (GameNode) o;
+        Position p = node.getPosition();
+        int index = (p.getRow() - 1) * cols + (p.getCol() - 1);
+        int rotation = Math.floorMod(node.getTurns(), 4);
+        if (state != null && state.rotation(index) != rotation) {
+            // nodes also notify the game when only their power changed
+            state.setRotation(index, rotation);
+            for (GameTurnListener listener : turnListeners) {
+                listener.onTurn(index, node);
+            }
+        }
         if(node.getType() == NodeType.WIRE || node.getType() == NodeType.BULB || node.getType() == NodeType.SOURCE){
             if (node.getSides().length != 4) {
-                
+                long propagationStart = System.nanoTime();
                 init();
+                long winCheckStart = System.nanoTime();
                 boolean oldWin = this.win;
                 this.win = isWin();
+                lastPropagationNanos = winCheckStart - propagationStart;
+                lastWinCheckNanos = System.nanoTime() - winCheckStart;
                 
                 if (oldWin != this.win) {
                     notifyWinListeners();
@@ -316,6 +505,24 @@ public class Game implements ToolEnvironment, Observer{
         }
     }
 
+    /**
+     * Returns how long the power propagation caused by the last handled turn took.
+     *
+     * @return the duration in nanoseconds.
+     */
+    public long getLastPropagationNanos() {
+        return this.lastPropagationNanos;
+    }
+
+    /**
+     * Returns how long the win check after the last handled turn took.
+     *
+     * @return the duration in nanoseconds.
+     */
+    public long getLastWinCheckNanos() {
+        return this.lastWinCheckNanos;
+    }
+
     /**
      * Returns the current win state of the game.
      * 
@@ -370,6 +577,26 @@ public class Game implements ToolEnvironment, Observer{
         winListeners.remove(listener);
     }
     
+    /**
+     * Adds a listener to be notified after every turn of a node. Turns are detected through the board state,
+     * which is built here when the game was assembled node by node; nodes created afterwards are not tracked.
+     *
+     * @param listener The {@link GameTurnListener} to be added to the listener list.
+     */
+    public void addGameTurnListener(GameTurnListener listener) {
+        currentState();
+        turnListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener that was previously added to be notified about turns.
+     *
+     * @param listener The {@link GameTurnListener} to be removed from the listener list.
+     */
+    public void removeGameTurnListener(GameTurnListener listener) {
+        turnListeners.remove(listener);
+    }
+
     /**
      * Notifies all registered {@link GameWinListener} instances about the current game win state.
      * 
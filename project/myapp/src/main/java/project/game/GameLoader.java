@@ -1,6 +1,11 @@
 package project.game;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import project.common.*;
@@ -10,76 +15,406 @@ import project.common.*;
  * <p>
  * It reads the game grid dimensions and node definitions from a specified file,
  * then processes each node type (Link, Bulb, Power) and its respective position and sides.
+ * <p>
+ * The file is memory-mapped and scanned byte by byte in a single pass; every node definition is stored
+ * directly in primitive arrays (type, row, column and a connector mask, see {@link Side#bit()}), so no
+ * strings or boxed values are created per line. Malformed lines are skipped and reported with their line
+ * number in {@link #errors}. Files in the {@link BinaryLevelFormat} are recognised by their magic bytes and
+ * decoded instead of scanned.
  */
 public class GameLoader {
+    private static final Side[] SIDES = Side.values();
+    private static final NodeType[] NODE_TYPES = NodeType.values();
+
     public int x;
     public int y;
-    public Object[][] def;
     public List<Position> filledPositions = new ArrayList<>();
+    public List<String> errors = new ArrayList<>();
+
+    /** Node definitions that break the rules of {@link Game} but can still be loaded, see {@link #problems()}. */
+    private final List<String> ignored = new ArrayList<>();
+
+    private final String fileName;
+    private int count = 0;
+    private byte[] types = new byte[16];
+    private int[] rows = new int[16];
+    private int[] cols = new int[16];
+    private byte[] masks = new byte[16];
+
     /**
      * Constructs a {@link GameLoader} to load the game configuration from the specified file.
-     * 
+     *
      * @param fileString The path to the file containing the game configuration.
-     * @throws IOException If there is an error reading the file.
      */
     public GameLoader(String fileString){
-        File file = new File(fileString);
-        List<Object[]> dataList = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line = reader.readLine();
-            if (line != null) {
-                String[] parts = line.split(" ");
-                if (parts.length >= 2) {
-                    x = Integer.parseInt(parts[0]);
-                    y = Integer.parseInt(parts[1]);
-                }
+        long start = GameMetrics.start();
+        LoadEvent event = new LoadEvent();
+        event.begin();
+        this.fileName = fileString;
+        long size = 0;
+        try (FileChannel channel = FileChannel.open(Paths.get(fileString), StandardOpenOption.READ)) {
+            size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(fileString + " is too large to be mapped");
             }
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.trim().split("\\s+");
-                List<Object> entry = new ArrayList<>();
-                entry.add(parts[0]); // typ ("L", "B", "P")
-
-                for (int i = 1; i < parts.length; i++) {
-                    try {
-                        entry.add(Integer.parseInt(parts[i]));
-                    } catch (NumberFormatException e) {
-                        entry.add(parts[i].toUpperCase()); // smer ako String
-                    }
-                }
-
-                dataList.add(entry.toArray());
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (BinaryLevelFormat.isBinary(buffer)) {
+                load(BinaryLevelFormat.read(buffer));
+            } else {
+                ensureCapacity((int) (size / 12) + 1);
+                parse(buffer);
             }
-
-            def = new Object[dataList.size()][];
-            def = dataList.toArray(def);
         } catch (IOException e) {
             e.printStackTrace();
+        } catch (IllegalArgumentException e) {
+            error(1, e.getMessage());
+        }
+        GameMetrics.count(GameMetrics.Counter.LOADS);
+        GameMetrics.stop(GameMetrics.Timer.LOAD, start);
+        if (event.shouldCommit()) {
+            event.path = fileString;
+            event.rows = x;
+            event.cols = y;
+            event.nodes = count;
+            event.bytes = size;
+            event.commit();
+        }
+    }
+
+    /**
+     * Takes the node definitions from a decoded level, row by row.
+     *
+     * @param template The decoded level.
+     */
+    private void load(LevelTemplate template) {
+        x = template.rows();
+        y = template.cols();
+        ensureCapacity(template.nodeCount());
+        for (int i = 0; i < template.size(); i++) {
+            if (template.type(i) != NodeType.EMPTY) {
+                add(template.type(i), template.row(i), template.col(i), template.mask(i));
+            }
+        }
+    }
+
+    /**
+     * Scans the whole level in one pass. The first line holds the size of the board,
+     * every other non-empty line one node definition.
+     *
+     * @param buffer The content of the level file.
+     */
+    private void parse(ByteBuffer buffer) {
+        int pos = 0;
+        int end = buffer.limit();
+        int line = 1;
+        boolean header = true;
+        while (pos < end) {
+            int eol = pos;
+            while (eol < end && buffer.get(eol) != '\n') {
+                eol++;
+            }
+            if (header) {
+                parseHeader(buffer, pos, eol, line);
+                header = false;
+            } else {
+                parseNode(buffer, pos, eol, line);
+            }
+            pos = eol + 1;
+            line++;
+        }
+    }
+
+    /**
+     * Parses the first line with the number of rows and columns.
+     *
+     * @param buffer The content of the level file.
+     * @param pos The first byte of the line.
+     * @param eol The end of the line (exclusive).
+     * @param line The line number for error messages.
+     */
+    private void parseHeader(ByteBuffer buffer, int pos, int eol, int line) {
+        pos = skipBlanks(buffer, pos, eol);
+        int rowsEnd = tokenEnd(buffer, pos, eol);
+        int colsStart = skipBlanks(buffer, rowsEnd, eol);
+        int colsEnd = tokenEnd(buffer, colsStart, eol);
+        long parsedRows = parseInt(buffer, pos, rowsEnd);
+        long parsedCols = parseInt(buffer, colsStart, colsEnd);
+        if (parsedRows == Long.MIN_VALUE || parsedCols == Long.MIN_VALUE) {
+            error(line, "expected \"<rows> <columns>\"");
+            return;
+        }
+        x = (int) parsedRows;
+        y = (int) parsedCols;
+    }
+
+    /**
+     * Parses one node definition ({@code <type> <row> <column> <side>*}) and appends it to the arrays.
+     *
+     * @param buffer The content of the level file.
+     * @param pos The first byte of the line.
+     * @param eol The end of the line (exclusive).
+     * @param line The line number for error messages.
+     */
+    private void parseNode(ByteBuffer buffer, int pos, int eol, int line) {
+        pos = skipBlanks(buffer, pos, eol);
+        if (pos == eol) {
+            return;
+        }
+        int typeEnd = tokenEnd(buffer, pos, eol);
+        NodeType type = typeEnd - pos == 1 ? nodeType(buffer.get(pos)) : null;
+        if (type == null) {
+            error(line, "unknown node type, expected L, B or P");
+            return;
+        }
+        int rowStart = skipBlanks(buffer, typeEnd, eol);
+        int rowEnd = tokenEnd(buffer, rowStart, eol);
+        int colStart = skipBlanks(buffer, rowEnd, eol);
+        int colEnd = tokenEnd(buffer, colStart, eol);
+        long row = parseInt(buffer, rowStart, rowEnd);
+        long col = parseInt(buffer, colStart, colEnd);
+        if (row == Long.MIN_VALUE || col == Long.MIN_VALUE) {
+            error(line, "expected \"<type> <row> <column> <side>*\"");
+            return;
+        }
+        int mask = 0;
+        pos = skipBlanks(buffer, colEnd, eol);
+        while (pos < eol) {
+            int wordEnd = tokenEnd(buffer, pos, eol);
+            Side side = side(buffer, pos, wordEnd);
+            if (side == null) {
+                error(line, "unknown side, expected NORTH, EAST, SOUTH or WEST");
+                return;
+            }
+            // a bulb has a single connector, further sides are ignored as by Game.createBulbNode
+            if (type != NodeType.BULB || mask == 0) {
+                mask |= side.bit();
+            } else if (mask != side.bit()) {
+                ignored.add(fileName + ":" + line + ": a bulb has a single side, " + side + " is ignored");
+            }
+            pos = skipBlanks(buffer, wordEnd, eol);
+        }
+        if (type == NodeType.BULB && mask == 0) {
+            error(line, "a bulb needs a side");
+            return;
+        }
+        add(type, (int) row, (int) col, mask);
+    }
+
+    /**
+     * Appends a node definition to the primitive arrays.
+     *
+     * @param type The type of the node.
+     * @param row The row of the node.
+     * @param col The column of the node.
+     * @param mask The connector mask of the node.
+     */
+    private void add(NodeType type, int row, int col, int mask) {
+        ensureCapacity(count + 1);
+        types[count] = (byte) type.ordinal();
+        rows[count] = row;
+        cols[count] = col;
+        masks[count] = (byte) mask;
+        count++;
+    }
+
+    /**
+     * Grows the primitive arrays so that they can hold the given number of node definitions.
+     *
+     * @param capacity The required capacity.
+     */
+    private void ensureCapacity(int capacity) {
+        if (capacity > types.length) {
+            int newCapacity = Math.max(capacity, types.length * 2);
+            types = Arrays.copyOf(types, newCapacity);
+            rows = Arrays.copyOf(rows, newCapacity);
+            cols = Arrays.copyOf(cols, newCapacity);
+            masks = Arrays.copyOf(masks, newCapacity);
+        }
+    }
+
+    /**
+     * Records a malformed line.
+     *
+     * @param line The line number.
+     * @param message The description of the problem.
+     */
+    private void error(int line, String message) {
+        String error = fileName + ":" + line + ": " + message;
+        errors.add(error);
+        System.err.println(error);
+    }
+
+    /**
+     * Returns the index of the first byte that is not a blank (space, tab or carriage return).
+     */
+    private static int skipBlanks(ByteBuffer buffer, int pos, int end) {
+        while (pos < end && isBlank(buffer.get(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    /**
+     * Returns the index of the first blank byte after a token.
+     */
+    private static int tokenEnd(ByteBuffer buffer, int pos, int end) {
+        while (pos < end && !isBlank(buffer.get(pos))) {
+            pos++;
         }
+        return pos;
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
     }
+
+    /**
+     * Parses a decimal number.
+     *
+     * @return the number, or {@link Long#MIN_VALUE} when the token is not a number.
+     */
+    private static long parseInt(ByteBuffer buffer, int start, int end) {
+        boolean negative = start < end && buffer.get(start) == '-';
+        int pos = negative ? start + 1 : start;
+        if (pos == end || end - pos > 9) {
+            return Long.MIN_VALUE;
+        }
+        long value = 0;
+        for (; pos < end; pos++) {
+            int digit = buffer.get(pos) - '0';
+            if (digit < 0 || digit > 9) {
+                return Long.MIN_VALUE;
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Maps the letter of a node type to the type.
+     *
+     * @return the type, or null for an unknown letter.
+     */
+    private static NodeType nodeType(byte letter) {
+        return switch (letter) {
+            case 'L' -> NodeType.WIRE;
+            case 'B' -> NodeType.BULB;
+            case 'P' -> NodeType.SOURCE;
+            default -> null;
+        };
+    }
+
+    /**
+     * Matches a side name case-insensitively.
+     *
+     * @return the side, or null when the token is not a side name.
+     */
+    private static Side side(ByteBuffer buffer, int start, int end) {
+        for (Side side : SIDES) {
+            String name = side.name();
+            if (end - start != name.length()) {
+                continue;
+            }
+            int i = 0;
+            while (i < name.length() && Character.toUpperCase(buffer.get(start + i)) == name.charAt(i)) {
+                i++;
+            }
+            if (i == name.length()) {
+                return side;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks the loaded level against the rules of {@link Game} without creating it: the size of the board,
+     * nodes outside the board, wires with less than two sides, bulbs with more than one side, power sources
+     * without a side and the number of power sources, which must be exactly one. Malformed lines reported in
+     * {@link #errors} are included.
+     *
+     * @return the descriptions of the problems, empty when the level is valid.
+     */
+    public List<String> problems() {
+        List<String> problems = new ArrayList<>(errors);
+        problems.addAll(ignored);
+        if (x < 1 || y < 1 || (long) x * y > Integer.MAX_VALUE) {
+            problems.add(fileName + ": invalid level size " + x + "x" + y);
+        }
+        int sources = 0;
+        for (int i = 0; i < count; i++) {
+            NodeType type = NODE_TYPES[types[i]];
+            String node = fileName + ": " + type + " at " + rows[i] + " " + cols[i];
+            if (rows[i] < 1 || rows[i] > x || cols[i] < 1 || cols[i] > y) {
+                problems.add(node + " is outside the board");
+            }
+            if (type == NodeType.WIRE && Integer.bitCount(masks[i]) < 2) {
+                problems.add(node + " needs at least two sides");
+            } else if (type == NodeType.SOURCE) {
+                sources++;
+                if (masks[i] == 0) {
+                    problems.add(node + " needs a side");
+                }
+            }
+        }
+        if (sources != 1) {
+            problems.add(fileName + ": expected exactly one power source, found " + sources);
+        }
+        return problems;
+    }
+
+    /**
+     * Converts the loaded level into an immutable {@link LevelTemplate}.
+     * <p>
+     * The same rules as in {@link Game} apply: nodes outside the board, wires with less than two sides and
+     * every power source after the first one are left out, a later definition of a tile replaces an earlier one.
+     *
+     * @return the template of the level.
+     * @throws IllegalArgumentException if the level has no valid size.
+     */
+    public LevelTemplate toTemplate() {
+        if (x < 1 || y < 1 || (long) x * y > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(fileName + ": invalid level size " + x + "x" + y);
+        }
+        byte[] cells = new byte[x * y];
+        boolean source = false;
+        for (int i = 0; i < count; i++) {
+            if (rows[i] < 1 || rows[i] > x || cols[i] < 1 || cols[i] > y) {
+                continue;
+            }
+            NodeType type = NODE_TYPES[types[i]];
+            if (type == NodeType.WIRE && Integer.bitCount(masks[i]) < 2) {
+                continue;
+            }
+            if (type == NodeType.SOURCE) {
+                if (source || masks[i] == 0) {
+                    continue;
+                }
+                source = true;
+            }
+            cells[(rows[i] - 1) * y + (cols[i] - 1)] = LevelTemplate.encode(type, masks[i]);
+        }
+        return new LevelTemplate(x, y, cells);
+    }
+
       /**
      * Sets up the game by creating nodes on the game grid based on the loaded configuration.
      * <p>
      * This method iterates through the node definitions and creates the appropriate nodes
      * (link, bulb, or power) at their specified positions, attaching the corresponding sides.
-     * 
+     *
      * @param game The {@link Game} instance where the nodes will be created.
      */
     public void SetUpGame(Game game){
-        for (Object[] n : def) {
-            String type = (String) n[0];
-            int row = (Integer) n[1];
-            int col = (Integer) n[2];
-            Position p = new Position(row, col);
+        for (int i = 0; i < count; i++) {
+            Position p = new Position(rows[i], cols[i]);
             filledPositions.add(p);
-            Side sides[] = new Side[n.length - 3];
-            for (int i = 3; i < n.length; i++) {
-                sides[i - 3] = Side.valueOf((String) n[i]);
-            }
-            switch (type) {
-                case "L" -> game.createLinkNode(p, sides);
-                case "B" -> game.createBulbNode(p, sides[0]);
-                case "P" -> game.createPowerNode(p, sides);
+            Side[] sides = Side.fromMask(masks[i]);
+            switch (NODE_TYPES[types[i]]) {
+                case WIRE -> game.createLinkNode(p, sides);
+                case BULB -> game.createBulbNode(p, sides[0]);
+                case SOURCE -> game.createPowerNode(p, sides);
+                default -> { }
             }
         }
     }
-}
\ No newline at end of file
+}
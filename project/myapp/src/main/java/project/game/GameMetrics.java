@@ -0,0 +1,249 @@
+package project.game;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The {@link GameMetrics} class is a lightweight registry of engine counters and latency histograms.
+ * <p>
+ * Metrics are switched on with {@code -Delectrician.metrics=true}; the registry is then published as the
+ * JMX MBean {@value #OBJECT_NAME} and can be inspected with JConsole or VisualVM. When the property is not
+ * set, {@link #ENABLED} is a constant {@code false} and all static recording methods compile down to
+ * nothing, so the instrumented code pays no cost.
+ * <p>
+ * Typical use:
+ * <pre>
+ * long start = GameMetrics.start();
+ * ...
+ * GameMetrics.stop(GameMetrics.Timer.SAVE, start);
+ * </pre>
+ */
+public final class GameMetrics implements GameMetricsMBean {
+    /** System property that switches the metrics on. */
+    public static final String PROPERTY = "electrician.metrics";
+    /** Name under which the registry is registered in the platform MBean server. */
+    public static final String OBJECT_NAME = "project.game:type=GameMetrics";
+    /** Whether metrics are recorded, fixed at class initialization. */
+    public static final boolean ENABLED = Boolean.getBoolean(PROPERTY);
+
+    private static final GameMetrics INSTANCE = new GameMetrics();
+
+    /**
+     * Monotonic event counters.
+     */
+    public enum Counter {
+        ROTATIONS, PROPAGATIONS, NODES_VISITED, NOTIFICATIONS, LOADS, SAVES
+    }
+
+    /**
+     * Measured operations, each backed by a {@link LatencyHistogram}.
+     */
+    public enum Timer {
+        TURN, PROPAGATION, LOAD, SAVE
+    }
+
+    private final LongAdder[] counters = new LongAdder[Counter.values().length];
+    private final LatencyHistogram[] timers = new LatencyHistogram[Timer.values().length];
+
+    static {
+        if (ENABLED) {
+            register();
+        }
+    }
+
+    /**
+     * Private constructor, the registry is a singleton available through {@link #get()}.
+     */
+    private GameMetrics() {
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+        for (int i = 0; i < timers.length; i++) {
+            timers[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Returns the shared registry.
+     *
+     * @return the registry instance.
+     */
+    public static GameMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     * Increments a counter by one.
+     *
+     * @param counter the counter to increment.
+     */
+    public static void count(Counter counter) {
+        if (ENABLED) {
+            INSTANCE.counters[counter.ordinal()].increment();
+        }
+    }
+
+    /**
+     * Adds a value to a counter.
+     *
+     * @param counter the counter to increase.
+     * @param amount the value to add.
+     */
+    public static void count(Counter counter, long amount) {
+        if (ENABLED) {
+            INSTANCE.counters[counter.ordinal()].add(amount);
+        }
+    }
+
+    /**
+     * Starts a measurement.
+     *
+     * @return the start timestamp to pass to {@link #stop(Timer, long)}, or 0 when metrics are disabled.
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0L;
+    }
+
+    /**
+     * Finishes a measurement started by {@link #start()} and records it.
+     *
+     * @param timer the measured operation.
+     * @param start the timestamp returned by {@link #start()}.
+     */
+    public static void stop(Timer timer, long start) {
+        if (ENABLED) {
+            INSTANCE.timers[timer.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Returns the current value of a counter.
+     *
+     * @param counter the counter.
+     * @return the counter value.
+     */
+    public long value(Counter counter) {
+        return counters[counter.ordinal()].sum();
+    }
+
+    /**
+     * Returns the histogram of a measured operation.
+     *
+     * @param timer the measured operation.
+     * @return the histogram.
+     */
+    public LatencyHistogram histogram(Timer timer) {
+        return timers[timer.ordinal()];
+    }
+
+    @Override
+    public long getRotations() {
+        return value(Counter.ROTATIONS);
+    }
+
+    @Override
+    public long getPropagations() {
+        return value(Counter.PROPAGATIONS);
+    }
+
+    @Override
+    public long getNodesVisited() {
+        return value(Counter.NODES_VISITED);
+    }
+
+    @Override
+    public long getNotifications() {
+        return value(Counter.NOTIFICATIONS);
+    }
+
+    @Override
+    public long getLoads() {
+        return value(Counter.LOADS);
+    }
+
+    @Override
+    public long getSaves() {
+        return value(Counter.SAVES);
+    }
+
+    @Override
+    public double getTurnMeanMicros() {
+        return histogram(Timer.TURN).mean() / 1000.0;
+    }
+
+    @Override
+    public long getTurnP99Micros() {
+        return histogram(Timer.TURN).percentile(99) / 1000;
+    }
+
+    @Override
+    public double getPropagationMeanMicros() {
+        return histogram(Timer.PROPAGATION).mean() / 1000.0;
+    }
+
+    @Override
+    public long getPropagationP99Micros() {
+        return histogram(Timer.PROPAGATION).percentile(99) / 1000;
+    }
+
+    @Override
+    public double getLoadMeanMicros() {
+        return histogram(Timer.LOAD).mean() / 1000.0;
+    }
+
+    @Override
+    public long getLoadP99Micros() {
+        return histogram(Timer.LOAD).percentile(99) / 1000;
+    }
+
+    @Override
+    public double getSaveMeanMicros() {
+        return histogram(Timer.SAVE).mean() / 1000.0;
+    }
+
+    @Override
+    public long getSaveP99Micros() {
+        return histogram(Timer.SAVE).percentile(99) / 1000;
+    }
+
+    @Override
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        for (Counter counter : Counter.values()) {
+            report.append(counter.name().toLowerCase()).append(' ').append(value(counter)).append('\n');
+        }
+        for (Timer timer : Timer.values()) {
+            report.append(timer.name().toLowerCase()).append(' ').append(histogram(timer)).append('\n');
+        }
+        return report.toString();
+    }
+
+    @Override
+    public void reset() {
+        for (LongAdder counter : counters) {
+            counter.reset();
+        }
+        for (LatencyHistogram timer : timers) {
+            timer.reset();
+        }
+    }
+
+    /**
+     * Registers the registry in the platform MBean server.
+     */
+    private static void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(INSTANCE, name);
+            }
+        } catch (JMException e) {
+            System.err.println("Metrics could not be registered: " + e.getMessage());
+        }
+    }
+}
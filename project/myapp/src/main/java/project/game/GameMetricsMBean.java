@@ -0,0 +1,88 @@
+package project.game;
+
+/**
+ * JMX management interface of {@link GameMetrics}.
+ * <p>
+ * Counters are totals since start (or since the last {@link #reset()}), latencies are in microseconds.
+ */
+public interface GameMetricsMBean {
+    /**
+     * @return the number of tile rotations executed through commands.
+     */
+    long getRotations();
+
+    /**
+     * @return the number of power propagations ({@link Game#init()} calls).
+     */
+    long getPropagations();
+
+    /**
+     * @return the number of nodes visited by the power propagation.
+     */
+    long getNodesVisited();
+
+    /**
+     * @return the number of observer callbacks handled by the game.
+     */
+    long getNotifications();
+
+    /**
+     * @return the number of level files loaded.
+     */
+    long getLoads();
+
+    /**
+     * @return the number of save operations (board dumps and step journal writes).
+     */
+    long getSaves();
+
+    /**
+     * @return the mean end-to-end latency of a turn.
+     */
+    double getTurnMeanMicros();
+
+    /**
+     * @return the 99th percentile of the end-to-end latency of a turn.
+     */
+    long getTurnP99Micros();
+
+    /**
+     * @return the mean latency of a power propagation.
+     */
+    double getPropagationMeanMicros();
+
+    /**
+     * @return the 99th percentile of the latency of a power propagation.
+     */
+    long getPropagationP99Micros();
+
+    /**
+     * @return the mean latency of loading a level file.
+     */
+    double getLoadMeanMicros();
+
+    /**
+     * @return the 99th percentile of the latency of loading a level file.
+     */
+    long getLoadP99Micros();
+
+    /**
+     * @return the mean latency of a save operation.
+     */
+    double getSaveMeanMicros();
+
+    /**
+     * @return the 99th percentile of the latency of a save operation.
+     */
+    long getSaveP99Micros();
+
+    /**
+     * @return a multi-line, human readable report of all counters and latency histograms.
+     */
+    String getReport();
+
+    /**
+     * Clears all counters and histograms.
+     */
+    void reset();
+}
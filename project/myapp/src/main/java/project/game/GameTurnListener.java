@@ -0,0 +1,19 @@
+package project.game;
+
+import project.common.GameNode;
+
+/**
+ * The {@link GameTurnListener} interface defines a listener for turns of the nodes of a game.
+ * <p>
+ * Implementations of this interface are notified after every clockwise or counterclockwise turn,
+ * before the power of the board is updated.
+ */
+public interface GameTurnListener {
+    /**
+     * This method is called when a node of the game was turned.
+     *
+     * @param index The 0-based tile index of the node, {@code (row - 1) * cols + (col - 1)}.
+     * @param node The turned node, its {@link GameNode#getTurns()} is the new rotation.
+     */
+    void onTurn(int index, GameNode node);
+}
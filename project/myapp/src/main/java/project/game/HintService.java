@@ -0,0 +1,426 @@
+package project.game;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import project.common.GameNode;
+import project.common.NodeType;
+import project.common.Side;
+
+/**
+ * The {@link HintService} class keeps a solution of the current board of a game and answers hint queries
+ * from it instantly.
+ * <p>
+ * A solution fixes the connectors of every tile, not the turns left, so it stays a solution whatever the player
+ * does; the turns left of a tile are computed from its current connectors on demand. After a turn that moves
+ * a tile away from its connectors in the solution, the solution is repaired on the background thread
+ * "hint-solver" so that it follows the player: the turned tile keeps its new connectors, the tiles within a
+ * small distance of it are solved again, and the rest of the previous solution stays pinned. The region grows
+ * up to {@link #MAX_REPAIR_RADIUS} tiles when it has no solution; if none is found even then, the previous
+ * solution is kept, and the hint is to turn the tile back. The {@link LevelSolver} is only used for the first
+ * solution. Every turn cancels the running repair and starts the next one, which also keeps the tiles of the
+ * cancelled repair; a tile turned back onto its connectors in the solution is dropped from it. The previous
+ * solution is served until the new one is published.
+ * <p>
+ * Turns must happen and hints must be queried on one thread, the JavaFX Application Thread in the game.
+ * Update listeners are called on the solver thread.
+ */
+public final class HintService implements GameTurnListener {
+    /** Largest distance from the turned tile, in steps between neighbouring tiles, that a repair solves again. */
+    private static final int MAX_REPAIR_RADIUS = 3;
+    /** Number of orientations a repair tries per radius before it gives up on that radius. */
+    private static final long MAX_REPAIR_STEPS = 200_000L;
+
+    private final Game game;
+    private final LevelSolver solver;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "hint-solver");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private final List<Runnable> updateListeners = new CopyOnWriteArrayList<>();
+    private volatile Solution solution;
+    private Future<?> pending;
+    /** The tiles whose new connectors the pending repair keeps, in the order they were turned. */
+    private int[] pendingTiles = new int[0];
+
+    /**
+     * A suggested move.
+     *
+     * @param row the row of the tile to turn.
+     * @param col the column of the tile to turn.
+     * @param turns the number of clockwise turns the tile needs.
+     */
+    public record Hint(int row, int col, int turns) {
+    }
+
+    /**
+     * A solved board.
+     *
+     * @param board the rotations of the solution.
+     * @param order the nodes in the order power reaches them in the solution.
+     */
+    private record Solution(BoardState board, int[] order) {
+    }
+
+    /**
+     * Creates the service and starts solving the current board of a game.
+     *
+     * @param game the game.
+     * @param solver the solver of the first solution.
+     */
+    public HintService(Game game, LevelSolver solver) {
+        this.game = game;
+        this.solver = solver;
+        game.addGameTurnListener(this);
+        restart(game.snapshot(), new int[0]);
+    }
+
+    /**
+     * Adds a listener called on the solver thread whenever a new solution is published.
+     *
+     * @param listener the listener.
+     */
+    public void addUpdateListener(Runnable listener) {
+        updateListeners.add(listener);
+    }
+
+    /**
+     * Removes an update listener.
+     *
+     * @param listener the listener.
+     */
+    public void removeUpdateListener(Runnable listener) {
+        updateListeners.remove(listener);
+    }
+
+    /**
+     * @return true when a solution of the board is known.
+     */
+    public boolean hasSolution() {
+        return solution != null;
+    }
+
+    /**
+     * Returns the next move towards the known solution: the first tile along the power flow of the solution
+     * whose connectors differ from it.
+     *
+     * @return the hint, or null when no solution is known yet or the board is solved.
+     */
+    public Hint hint() {
+        Solution current = solution;
+        if (current == null) {
+            return null;
+        }
+        LevelTemplate topology = current.board().topology();
+        for (int index : current.order()) {
+            int turns = turnsLeft(current, index);
+            if (turns > 0) {
+                return new Hint(topology.row(index), topology.col(index), turns);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns how many clockwise turns a tile needs to reach its connectors in the known solution.
+     *
+     * @param row the row of the tile.
+     * @param col the column of the tile.
+     * @return the number of turns (0-3), or -1 when no solution is known yet.
+     */
+    public int turnsLeft(int row, int col) {
+        Solution current = solution;
+        if (current == null) {
+            return -1;
+        }
+        return turnsLeft(current, current.board().topology().index(row, col));
+    }
+
+    /**
+     * Stops listening to the game and stops the solver thread.
+     */
+    public void shutdown() {
+        game.removeGameTurnListener(this);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Repairs the solution after a turn, unless the turned tile is back on its connectors in the solution.
+     * A repair still pending for other tiles is not lost: the next repair keeps their new connectors too.
+     *
+     * @param index the tile index of the turned node.
+     * @param node the turned node.
+     */
+    @Override
+    public void onTurn(int index, GameNode node) {
+        if (pending != null && pending.isDone()) {
+            // the pending repair is published, or gave up and kept the solution
+            pendingTiles = new int[0];
+        }
+        int[] tiles = Arrays.stream(pendingTiles).filter(tile -> tile != index).toArray();
+        Solution current = solution;
+        if (current != null && mask(node) == current.board().mask(index)) {
+            if (tiles.length < pendingTiles.length) {
+                // the pending repair would move the solution away from the tile, it goes on without it
+                restart(game.snapshot(), tiles);
+            }
+            return;
+        }
+        tiles = Arrays.copyOf(tiles, tiles.length + 1);
+        tiles[tiles.length - 1] = index;
+        restart(game.snapshot(), tiles);
+    }
+
+    /**
+     * Cancels the running search and starts the next one.
+     *
+     * @param board the current board.
+     * @param turned the tiles whose connectors on the board the solution must keep, empty for a new solution.
+     */
+    private void restart(BoardState board, int[] turned) {
+        if (pending != null) {
+            pending.cancel(true);
+        }
+        if (executor.isShutdown()) {
+            return;
+        }
+        Solution previous = solution;
+        pendingTiles = turned;
+        if (previous != null && turned.length == 0) {
+            pending = null;
+            return;
+        }
+        pending = executor.submit(() -> {
+            Solution next = previous;
+            if (previous != null) {
+                next = repair(previous, board, turned);
+            } else {
+                byte[] rotations = solver.solve(board, Thread.currentThread()::isInterrupted);
+                if (rotations == null || Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                BoardState solved = new BoardState(board.topology());
+                for (int i = 0; i < rotations.length; i++) {
+                    solved.setRotation(i, rotations[i]);
+                }
+                next = solution(solved);
+            }
+            if (next != null && next != previous && !Thread.currentThread().isInterrupted()) {
+                solution = next;
+                for (Runnable listener : updateListeners) {
+                    listener.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * Repairs the previous solution around turned tiles. The turned tiles keep their connectors from the board,
+     * and the nodes within a distance of them are solved again, with every other tile pinned to the previous
+     * solution; the distance grows until a solution is found.
+     *
+     * @param previous the previous solution.
+     * @param board the current board.
+     * @param turned the turned tiles.
+     * @return the repaired solution, or the previous one when no region up to {@link #MAX_REPAIR_RADIUS}
+     *         can be solved around the new connectors, or when interrupted.
+     */
+    private static Solution repair(Solution previous, BoardState board, int[] turned) {
+        LevelTemplate topology = board.topology();
+        for (int radius = 1; radius <= MAX_REPAIR_RADIUS; radius++) {
+            int[] region = region(board, turned, radius);
+            BoardState repaired = previous.board().fork();
+            for (int index : turned) {
+                repaired.setRotation(index, board.rotation(index));
+            }
+            boolean[] free = new boolean[board.size()];
+            for (int index : region) {
+                free[index] = true;
+            }
+            long[] steps = {MAX_REPAIR_STEPS};
+            if (solveRegion(repaired, board, region, 0, free, steps)) {
+                return solution(repaired);
+            }
+            if (steps[0] < 0 || Thread.currentThread().isInterrupted()
+                    || region.length + turned.length >= topology.nodeCount()) {
+                break;
+            }
+        }
+        return previous;
+    }
+
+    /**
+     * Returns the nodes near some tiles, nearest first.
+     *
+     * @param board the board.
+     * @param centers the tiles, they are not part of the region.
+     * @param radius the largest number of steps between neighbouring tiles from the nearest center.
+     * @return the tile indexes of the nodes in the region.
+     */
+    private static int[] region(BoardState board, int[] centers, int radius) {
+        int[] distance = new int[board.size()];
+        Arrays.fill(distance, -1);
+        int[] queue = new int[board.size()];
+        int head = 0;
+        int tail = 0;
+        for (int center : centers) {
+            queue[tail++] = center;
+            distance[center] = 0;
+        }
+        while (head < tail) {
+            int index = queue[head++];
+            if (distance[index] == radius) {
+                continue;
+            }
+            for (Side side : Side.values()) {
+                int neighbor = board.neighbor(index, side);
+                if (neighbor >= 0 && distance[neighbor] < 0) {
+                    distance[neighbor] = distance[index] + 1;
+                    queue[tail++] = neighbor;
+                }
+            }
+        }
+        int count = 0;
+        for (int i = centers.length; i < tail; i++) {
+            if (board.type(queue[i]) != NodeType.EMPTY) {
+                queue[count++] = queue[i];
+            }
+        }
+        return Arrays.copyOf(queue, count);
+    }
+
+    /**
+     * Chooses orientations for the region tiles from the given position on, depth first. An orientation is
+     * tried only when its connectors meet those of the neighbouring nodes already fixed, in the order of the
+     * clockwise turns it needs from the current board.
+     *
+     * @param repaired the board being repaired, the fixed tiles are set.
+     * @param board the current board.
+     * @param region the region tiles.
+     * @param position the first region tile without an orientation.
+     * @param free true for the region tiles without an orientation yet, updated during the search.
+     * @param steps the orientations left to try, negative once exhausted.
+     * @return true when the repaired board is solved.
+     */
+    private static boolean solveRegion(BoardState repaired, BoardState board, int[] region, int position,
+                                       boolean[] free, long[] steps) {
+        if (position == region.length) {
+            return repaired.isWin();
+        }
+        int index = region[position];
+        free[index] = false;
+        int tried = 0;
+        for (int turns = 0; turns < 4; turns++) {
+            if (--steps[0] < 0 || Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            repaired.setRotation(index, (board.rotation(index) + turns) & 3);
+            int mask = repaired.mask(index);
+            // orientations with the same connectors are the same choice
+            if ((tried & 1 << mask) != 0 || !meetsNeighbors(repaired, index, mask, free)) {
+                continue;
+            }
+            tried |= 1 << mask;
+            if (solveRegion(repaired, board, region, position + 1, free, steps)) {
+                return true;
+            }
+        }
+        free[index] = true;
+        return false;
+    }
+
+    /**
+     * @param repaired the board being repaired.
+     * @param index a tile index.
+     * @param mask the connectors of the tile.
+     * @param free true for the tiles without an orientation yet.
+     * @return true when every fixed neighbouring node has a connector facing the tile exactly when the tile
+     *         has one facing it.
+     */
+    private static boolean meetsNeighbors(BoardState repaired, int index, int mask, boolean[] free) {
+        for (Side side : Side.values()) {
+            int neighbor = repaired.neighbor(index, side);
+            if (neighbor < 0 || free[neighbor] || repaired.type(neighbor) == NodeType.EMPTY) {
+                continue;
+            }
+            boolean out = (mask & side.bit()) != 0;
+            boolean in = (repaired.mask(neighbor) & side.opposite().bit()) != 0;
+            if (out != in) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Orders the nodes of a solved board by a breadth-first walk from the source along its connections.
+     *
+     * @param solved the solved board.
+     * @return the solution, or null when the board is not solved.
+     */
+    private static Solution solution(BoardState solved) {
+        if (!solved.isWin()) {
+            return null;
+        }
+        LevelTemplate topology = solved.topology();
+        int[] order = new int[topology.nodeCount()];
+        if (order.length == 0) {
+            return new Solution(solved.snapshot(), order);
+        }
+        boolean[] seen = new boolean[solved.size()];
+        int head = 0;
+        int tail = 0;
+        order[tail++] = topology.sourceIndex();
+        seen[topology.sourceIndex()] = true;
+        while (head < tail) {
+            int index = order[head++];
+            for (Side side : Side.fromMask(solved.mask(index))) {
+                int neighbor = solved.neighbor(index, side);
+                if (neighbor >= 0 && !seen[neighbor] && solved.type(neighbor) != NodeType.EMPTY
+                        && (solved.mask(neighbor) & side.opposite().bit()) != 0) {
+                    seen[neighbor] = true;
+                    order[tail++] = neighbor;
+                }
+            }
+        }
+        return new Solution(solved.snapshot(), order);
+    }
+
+    /**
+     * @param current the solution.
+     * @param index the tile index.
+     * @return the number of clockwise turns the tile needs to reach its connectors in the solution.
+     */
+    private int turnsLeft(Solution current, int index) {
+        GameNode node = game.getGame()[current.board().topology().row(index)][current.board().topology().col(index)];
+        if (node.getType() == NodeType.EMPTY) {
+            return 0;
+        }
+        int mask = mask(node);
+        int target = current.board().mask(index);
+        for (int turns = 0; turns < 4; turns++) {
+            if (Side.rotateMask(mask, turns) == target) {
+                return turns;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param node a node.
+     * @return the connector mask of the node in its current orientation.
+     */
+    private static int mask(GameNode node) {
+        int mask = 0;
+        for (Side side : node.getSides()) {
+            mask |= side.bit();
+        }
+        return mask;
+    }
+}
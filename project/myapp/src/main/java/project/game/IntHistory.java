@@ -0,0 +1,165 @@
+package project.game;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The {@link IntHistory} class is a stack of int-encoded moves used by the {@link CommandManager}.
+ * <p>
+ * At most {@code window} entries are kept in a growable array. When the array is full, its older half is
+ * appended to a temporary spill file and read back block by block once the stack shrinks to it again, so a
+ * stack of any depth costs at most {@code window} ints of heap. The spill file is created on first use and
+ * deleted by {@link #clear()} or when the JVM exits.
+ */
+final class IntHistory {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int window;
+    private int[] entries = new int[INITIAL_CAPACITY];
+    private int size;
+    private Path spillFile;
+    private FileChannel spill;
+    private long spilled;
+
+    /**
+     * Creates an empty stack.
+     *
+     * @param window the maximum number of entries kept in memory, at least 2.
+     */
+    IntHistory(int window) {
+        if (window < 2) {
+            throw new IllegalArgumentException("window must be at least 2: " + window);
+        }
+        this.window = window;
+    }
+
+    /**
+     * @return true when the stack holds no entry, neither in memory nor spilled.
+     */
+    boolean isEmpty() {
+        return size == 0 && spilled == 0;
+    }
+
+    /**
+     * @return the number of entries, including the spilled ones.
+     */
+    long size() {
+        return spilled + size;
+    }
+
+    /**
+     * @return the number of entries written to the spill file.
+     */
+    long spilled() {
+        return spilled;
+    }
+
+    /**
+     * Pushes an entry.
+     *
+     * @param entry the entry.
+     */
+    void push(int entry) {
+        if (size == window) {
+            spillOlderHalf();
+        }
+        if (size == entries.length) {
+            entries = Arrays.copyOf(entries, Math.min(window, size * 2));
+        }
+        entries[size++] = entry;
+    }
+
+    /**
+     * Removes the top entry.
+     *
+     * @return the entry.
+     * @throws IllegalStateException If the stack is empty.
+     */
+    int pop() {
+        if (size == 0) {
+            if (spilled == 0) {
+                throw new IllegalStateException("history is empty");
+            }
+            reload();
+        }
+        return entries[--size];
+    }
+
+    /**
+     * Removes all entries and deletes the spill file.
+     */
+    void clear() {
+        size = 0;
+        spilled = 0;
+        if (entries.length > INITIAL_CAPACITY) {
+            entries = new int[INITIAL_CAPACITY];
+        }
+        if (spill != null) {
+            try {
+                spill.close();
+                Files.deleteIfExists(spillFile);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            spill = null;
+            spillFile = null;
+        }
+    }
+
+    /**
+     * Moves the older half of the in-memory entries to the end of the spill file.
+     */
+    private void spillOlderHalf() {
+        int count = size / 2;
+        ByteBuffer buffer = ByteBuffer.allocate(count * Integer.BYTES);
+        buffer.asIntBuffer().put(entries, 0, count);
+        try {
+            if (spill == null) {
+                spillFile = Files.createTempFile("electrician-history", ".bin");
+                spillFile.toFile().deleteOnExit();
+                spill = FileChannel.open(spillFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            }
+            long position = spilled * Integer.BYTES;
+            while (buffer.hasRemaining()) {
+                position += spill.write(buffer, position);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        System.arraycopy(entries, count, entries, 0, size - count);
+        size -= count;
+        spilled += count;
+    }
+
+    /**
+     * Reads the newest spilled block back into memory. Called only when no entry is left in memory.
+     */
+    private void reload() {
+        int count = (int) Math.min(spilled, window / 2);
+        ByteBuffer buffer = ByteBuffer.allocate(count * Integer.BYTES);
+        long position = (spilled - count) * Integer.BYTES;
+        try {
+            while (buffer.hasRemaining()) {
+                int read = spill.read(buffer, position + buffer.position());
+                if (read < 0) {
+                    throw new IOException("history spill file is truncated");
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.flip();
+        if (entries.length < count) {
+            entries = new int[Math.min(window, Math.max(count, INITIAL_CAPACITY))];
+        }
+        buffer.asIntBuffer().get(entries, 0, count);
+        size = count;
+        spilled -= count;
+    }
+}
@@ -0,0 +1,149 @@
+package project.game;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@link LatencyHistogram} class records latencies (in nanoseconds) into log-linear buckets.
+ * <p>
+ * Every power of two is split into {@value #SUB_BUCKETS} equally wide sub-buckets (the layout used by
+ * HdrHistogram). A bucket spans 1/32 of its base value, so any recorded value is kept with a relative error
+ * below 3.2 %. Recording is lock-free and allocation-free, which makes the histogram safe to use from the
+ * JavaFX thread and from background threads at the same time.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int LINEAR_LIMIT = SUB_BUCKETS * 2;
+    private static final int BUCKETS = LINEAR_LIMIT + (64 - SUB_BITS - 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a single value.
+     *
+     * @param nanos the measured latency in nanoseconds, negative values are recorded as zero.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        buckets.incrementAndGet(bucketIndex(value));
+        count.increment();
+        sum.add(value);
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // retry until the maximum is published
+        }
+    }
+
+    /**
+     * Returns the number of recorded values.
+     *
+     * @return the number of recorded values.
+     */
+    public long count() {
+        return count.sum();
+    }
+
+    /**
+     * Returns the arithmetic mean of all recorded values.
+     *
+     * @return the mean in nanoseconds, or 0 when nothing was recorded.
+     */
+    public double mean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) sum.sum() / n;
+    }
+
+    /**
+     * Returns the largest recorded value.
+     *
+     * @return the maximum in nanoseconds.
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * Returns the value below which the given percentage of recorded values falls.
+     *
+     * @param percentile the percentile in range 0-100 (e.g. 99.0).
+     * @return the upper bound of the bucket holding the percentile, or 0 when nothing was recorded.
+     */
+    public long percentile(double percentile) {
+        long total = count.sum();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(Math.min(100.0, Math.max(0.0, percentile)) / 100.0 * total);
+        rank = Math.max(1, rank);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Clears all recorded values.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    /**
+     * Returns a one-line summary of the histogram in microseconds.
+     *
+     * @return the summary, e.g. {@code n=120 mean=35.2us p50=31us p99=120us max=150us}.
+     */
+    @Override
+    public String toString() {
+        return String.format("n=%d mean=%.1fus p50=%dus p90=%dus p99=%dus max=%dus",
+                count(), mean() / 1000.0, percentile(50) / 1000, percentile(90) / 1000,
+                percentile(99) / 1000, max() / 1000);
+    }
+
+    /**
+     * Maps a value to the index of its bucket.
+     *
+     * @param value the non-negative value.
+     * @return the bucket index.
+     */
+    private static int bucketIndex(long value) {
+        if (value < LINEAR_LIMIT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        int top = (int) (value >>> shift);   // in range SUB_BUCKETS .. 2 * SUB_BUCKETS - 1
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + (top - SUB_BUCKETS);
+    }
+
+    /**
+     * Returns the largest value that falls into the given bucket.
+     *
+     * @param index the bucket index.
+     * @return the inclusive upper bound of the bucket.
+     */
+    private static long bucketUpperBound(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int shift = (index - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+        long top = (index - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+        if (shift >= 63 - SUB_BITS - 1) {
+            return Long.MAX_VALUE;
+        }
+        return ((top + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,319 @@
+package project.game;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The {@link LevelAnalyzer} class checks a directory of levels and writes one report about all of them.
+ * <p>
+ * Every level is loaded by the {@link GameLoader}, checked against the rules of {@link Game} (see
+ * {@link GameLoader#problems()}) and, when it is valid, analyzed by the {@link BacktrackingSolver}: whether
+ * it can be solved, how many distinct solutions it has, up to a limit, and how hard it is. The difficulty is
+ * estimated from the effort of the search on a scramble of the level with a fixed seed, as the number of
+ * search steps per node; a level the search goes straight through scores 1. Levels are analyzed in parallel
+ * on all cores and every search has a step limit, so a large corpus takes minutes.
+ * <p>
+ * Running the class analyzes the levels
+ * ({@code LevelAnalyzer <directory> <report.csv|report.json> [maxSolutions [maxSteps]]}); the report is
+ * written as JSON when its name ends with {@code .json}, as CSV otherwise.
+ */
+public final class LevelAnalyzer {
+    /** Default number of solutions after which counting stops. */
+    public static final int DEFAULT_MAX_SOLUTIONS = 100;
+    /** Default number of search steps after which the analysis of a level gives up. */
+    public static final long DEFAULT_MAX_STEPS = 20_000_000L;
+
+    private static final long SCRAMBLE_SEED = 0;
+    private static final String[] RATINGS = {"easy", "medium", "hard", "expert"};
+    private static final double[] RATING_LIMITS = {2, 8, 64, Double.POSITIVE_INFINITY};
+    private static final String[] COLUMNS = {"file", "rows", "cols", "nodes", "status", "solutions", "complete",
+            "steps", "stepsToFirst", "difficulty", "rating", "problems"};
+
+    private final int maxSolutions;
+    private final long maxSteps;
+
+    /**
+     * The outcome of the analysis of one level.
+     *
+     * @param file the level file.
+     * @param rows the number of rows, 0 when unknown.
+     * @param cols the number of columns, 0 when unknown.
+     * @param nodes the number of non-empty tiles.
+     * @param status "invalid", "unsolvable", "solvable" or "unknown" when the search hit its step limit.
+     * @param solutions the number of distinct solutions found.
+     * @param complete true when all solutions were counted.
+     * @param steps the search steps taken.
+     * @param stepsToFirst the search steps taken until the first solution, -1 when none was found.
+     * @param difficulty the search steps until the first solution per node, 0 when not solved.
+     * @param problems the structural problems of the level.
+     */
+    public record Report(Path file, int rows, int cols, int nodes, String status, int solutions, boolean complete,
+                         long steps, long stepsToFirst, double difficulty, List<String> problems) {
+        /**
+         * @return a rating of the difficulty: "easy", "medium", "hard" or "expert", empty when not solved.
+         */
+        public String rating() {
+            return stepsToFirst < 0 ? "" : LevelAnalyzer.rating(difficulty);
+        }
+    }
+
+    /**
+     * Creates an analyzer.
+     *
+     * @param maxSolutions the number of solutions after which counting stops.
+     * @param maxSteps the number of search steps after which the analysis of a level gives up.
+     * @throws IllegalArgumentException if a limit is less than 1.
+     */
+    public LevelAnalyzer(int maxSolutions, long maxSteps) {
+        if (maxSolutions < 1 || maxSteps < 1) {
+            throw new IllegalArgumentException("limits must be positive");
+        }
+        this.maxSolutions = maxSolutions;
+        this.maxSteps = maxSteps;
+    }
+
+    /**
+     * Rates a difficulty computed by {@link #analyze(Path)}.
+     *
+     * @param difficulty the search steps until the first solution per node.
+     * @return "easy", "medium", "hard" or "expert".
+     */
+    public static String rating(double difficulty) {
+        int i = 0;
+        while (difficulty >= RATING_LIMITS[i]) {
+            i++;
+        }
+        return RATINGS[i];
+    }
+
+    /**
+     * Returns the difficulties that get a rating.
+     *
+     * @param rating "easy", "medium", "hard" or "expert".
+     * @return the lowest difficulty with that rating and the lowest one above it.
+     * @throws IllegalArgumentException if the rating is unknown.
+     */
+    public static double[] band(String rating) {
+        for (int i = 0; i < RATINGS.length; i++) {
+            if (RATINGS[i].equals(rating)) {
+                return new double[] {i == 0 ? 0 : RATING_LIMITS[i - 1], RATING_LIMITS[i]};
+            }
+        }
+        throw new IllegalArgumentException("unknown rating: " + rating);
+    }
+
+    /**
+     * Estimates the difficulty of a valid level like {@link #analyze(Path)} does, without counting its solutions.
+     *
+     * @param level the level.
+     * @param cancelled checked during the search; the estimate fails when it returns true.
+     * @return the difficulty, or -1 when the search found no solution within the step limit.
+     */
+    public double difficulty(LevelTemplate level, BooleanSupplier cancelled) {
+        BacktrackingSolver.Analysis analysis = new BacktrackingSolver(maxSteps)
+                .analyze(RandomizeGame.scramble(level, SCRAMBLE_SEED), 1, cancelled);
+        return analysis.nodesToFirst() < 0 ? -1 : difficulty(analysis, level);
+    }
+
+    /**
+     * Analyzes one level.
+     *
+     * @param file the level file, in the text or binary format.
+     * @return the report.
+     */
+    public Report analyze(Path file) {
+        GameLoader loader = new GameLoader(file.toString());
+        List<String> problems = loader.problems();
+        if (!problems.isEmpty()) {
+            return new Report(file, Math.max(loader.x, 0), Math.max(loader.y, 0), 0, "invalid", 0, false, 0, -1, 0,
+                    problems);
+        }
+        LevelTemplate level = loader.toTemplate();
+        BacktrackingSolver.Analysis analysis = new BacktrackingSolver(maxSteps)
+                .analyze(RandomizeGame.scramble(level, SCRAMBLE_SEED), maxSolutions, () -> false);
+        String status;
+        if (analysis.solutions() > 0) {
+            status = "solvable";
+        } else {
+            status = analysis.complete() ? "unsolvable" : "unknown";
+        }
+        double difficulty = analysis.nodesToFirst() < 0 ? 0 : difficulty(analysis, level);
+        return new Report(file, level.rows(), level.cols(), level.nodeCount(), status, analysis.solutions(),
+                analysis.complete(), analysis.nodes(), analysis.nodesToFirst(), difficulty, problems);
+    }
+
+    /**
+     * @param analysis the analysis of a level that found a solution.
+     * @param level the level.
+     * @return the search steps until the first solution per node.
+     */
+    private static double difficulty(BacktrackingSolver.Analysis analysis, LevelTemplate level) {
+        return (double) Math.max(analysis.nodesToFirst(), 1) / Math.max(level.nodeCount(), 1);
+    }
+
+    /**
+     * Analyzes every regular file of a directory in parallel on all cores.
+     *
+     * @param directory the directory.
+     * @return the reports ordered by file name.
+     * @throws IOException If the directory cannot be listed.
+     */
+    public List<Report> analyzeAll(Path directory) throws IOException {
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(Files::isRegularFile).sorted().toList();
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            List<Callable<Report>> tasks = new ArrayList<>(files.size());
+            for (Path file : files) {
+                tasks.add(() -> analyze(file));
+            }
+            List<Report> reports = new ArrayList<>(files.size());
+            for (Future<Report> report : executor.invokeAll(tasks)) {
+                reports.add(report.get());
+            }
+            return reports;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("analysis interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IOException("analysis failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Writes reports as CSV, one level per line after a header line. The problems of a level are joined by "; ".
+     *
+     * @param reports the reports.
+     * @param writer the destination.
+     * @throws IOException If writing fails.
+     */
+    public static void writeCsv(List<Report> reports, Writer writer) throws IOException {
+        writer.write(String.join(",", COLUMNS));
+        writer.write('\n');
+        for (Report report : reports) {
+            Object[] values = values(report);
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                String value = values[i] instanceof List<?> list
+                        ? list.stream().map(String::valueOf).collect(Collectors.joining("; "))
+                        : String.valueOf(values[i]);
+                if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0) {
+                    value = '"' + value.replace("\"", "\"\"") + '"';
+                }
+                writer.write(value);
+            }
+            writer.write('\n');
+        }
+    }
+
+    /**
+     * Writes reports as a JSON array of objects, the problems of a level as an array of strings.
+     *
+     * @param reports the reports.
+     * @param writer the destination.
+     * @throws IOException If writing fails.
+     */
+    public static void writeJson(List<Report> reports, Writer writer) throws IOException {
+        writer.write('[');
+        for (int r = 0; r < reports.size(); r++) {
+            writer.write(r == 0 ? "\n  {" : ",\n  {");
+            Object[] values = values(reports.get(r));
+            for (int i = 0; i < values.length; i++) {
+                writer.write(i == 0 ? "\"" : ", \"");
+                writer.write(COLUMNS[i]);
+                writer.write("\": ");
+                if (values[i] instanceof List<?> list) {
+                    writer.write('[');
+                    for (int p = 0; p < list.size(); p++) {
+                        writer.write(p == 0 ? "" : ", ");
+                        writer.write(jsonString(String.valueOf(list.get(p))));
+                    }
+                    writer.write(']');
+                } else if (values[i] instanceof String || values[i] instanceof Path) {
+                    writer.write(jsonString(values[i].toString()));
+                } else {
+                    writer.write(String.valueOf(values[i]));
+                }
+            }
+            writer.write('}');
+        }
+        writer.write(reports.isEmpty() ? "]\n" : "\n]\n");
+    }
+
+    /**
+     * @param report a report.
+     * @return the values of the report in the order of {@link #COLUMNS}.
+     */
+    private static Object[] values(Report report) {
+        return new Object[] {report.file().getFileName(), report.rows(), report.cols(), report.nodes(),
+                report.status(), report.solutions(), report.complete(), report.steps(), report.stepsToFirst(),
+                Math.round(report.difficulty() * 100) / 100.0, report.rating(), report.problems()};
+    }
+
+    /**
+     * @param value a string.
+     * @return the string as a quoted JSON string literal.
+     */
+    private static String jsonString(String value) {
+        StringBuilder builder = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> builder.append("\\\"");
+                case '\\' -> builder.append("\\\\");
+                case '\n' -> builder.append("\\n");
+                case '\r' -> builder.append("\\r");
+                case '\t' -> builder.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+                }
+            }
+        }
+        return builder.append('"').toString();
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 4) {
+            System.err.println("usage: LevelAnalyzer <directory> <report.csv|report.json> [maxSolutions [maxSteps]]");
+            System.exit(2);
+        }
+        int maxSolutions = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_MAX_SOLUTIONS;
+        long maxSteps = args.length > 3 ? Long.parseLong(args[3]) : DEFAULT_MAX_STEPS;
+        long start = System.nanoTime();
+        List<Report> reports = new LevelAnalyzer(maxSolutions, maxSteps).analyzeAll(Paths.get(args[0]));
+        Path output = Paths.get(args[1]);
+        try (Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            if (output.getFileName().toString().endsWith(".json")) {
+                writeJson(reports, writer);
+            } else {
+                writeCsv(reports, writer);
+            }
+        }
+        System.out.println("analyzed " + reports.size() + " levels in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+}
@@ -0,0 +1,193 @@
+package project.game;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@link LevelAtlas} class packs many levels into one file with an offset index.
+ * <p>
+ * Layout (big endian):
+ * <pre>
+ * 0        magic "ELA1"
+ * 4        number of levels           int
+ * 8 + 16i  offset of level i          long
+ * 16 + 16i length of level i in bytes int
+ * 20 + 16i reserved                   int
+ * ...      levels in the {@link BinaryLevelFormat}
+ * </pre>
+ * An opened atlas is memory-mapped, so opening it does not read the levels. The index entry of a level is
+ * found at a fixed position, so any level is decoded in constant time without looking at the others.
+ * Running the class packs levels ({@code LevelAtlas pack <atlas> <level>...}) or extracts one level in the
+ * text format ({@code LevelAtlas extract <atlas> <index> <output>}).
+ */
+public class LevelAtlas implements Closeable {
+    private static final byte[] MAGIC = {'E', 'L', 'A', '1'};
+    private static final int HEADER_SIZE = 8;
+    private static final int ENTRY_SIZE = 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final int count;
+
+    /**
+     * Opens an atlas by mapping its file.
+     *
+     * @param channel the open channel of the atlas file.
+     * @throws IOException If the file cannot be mapped or is not an atlas.
+     */
+    private LevelAtlas(FileChannel channel) throws IOException {
+        this.channel = channel;
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("atlas is too large to be mapped");
+        }
+        this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (size < HEADER_SIZE || buffer.get(i) != MAGIC[i]) {
+                throw new IOException("not a level atlas");
+            }
+        }
+        this.count = buffer.getInt(4);
+        if (count < 0 || HEADER_SIZE + (long) count * ENTRY_SIZE > size) {
+            throw new IOException("corrupted atlas index");
+        }
+    }
+
+    /**
+     * Opens an atlas file.
+     *
+     * @param file the atlas file.
+     * @return the opened atlas, to be closed after use.
+     * @throws IOException If the file cannot be opened or is not an atlas.
+     */
+    public static LevelAtlas open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new LevelAtlas(channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of levels in the atlas.
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns a read-only view of the binary form of a level, without copying it.
+     *
+     * @param index the 0-based level index.
+     * @return the bytes of the level.
+     * @throws IndexOutOfBoundsException if there is no such level.
+     */
+    public ByteBuffer slice(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("level " + index + " of " + count);
+        }
+        int entry = HEADER_SIZE + index * ENTRY_SIZE;
+        long offset = buffer.getLong(entry);
+        int length = buffer.getInt(entry + 8);
+        if (offset < 0 || offset + length > buffer.limit()) {
+            throw new IllegalStateException("corrupted atlas entry " + index);
+        }
+        return buffer.slice((int) offset, length);
+    }
+
+    /**
+     * Decodes a level.
+     *
+     * @param index the 0-based level index.
+     * @return the level.
+     * @throws IndexOutOfBoundsException if there is no such level.
+     */
+    public LevelTemplate level(int index) {
+        return BinaryLevelFormat.read(slice(index));
+    }
+
+    /**
+     * Closes the file of the atlas. The mapping stays valid until it is garbage collected.
+     *
+     * @throws IOException If closing fails.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Writes levels into a new atlas file.
+     *
+     * @param levels the levels in the order of their indexes.
+     * @param file the atlas file, replaced if it exists.
+     * @throws IOException If writing fails.
+     */
+    public static void pack(List<LevelTemplate> levels, Path file) throws IOException {
+        ByteBuffer index = ByteBuffer.allocate(HEADER_SIZE + levels.size() * ENTRY_SIZE);
+        index.put(MAGIC).putInt(levels.size());
+        long offset = index.capacity();
+        for (LevelTemplate level : levels) {
+            int length = BinaryLevelFormat.encodedSize(level);
+            index.putLong(offset).putInt(length).putInt(0);
+            offset += length;
+        }
+        index.flip();
+        try (FileChannel out = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(out, index);
+            for (LevelTemplate level : levels) {
+                writeFully(out, BinaryLevelFormat.encode(level));
+            }
+        }
+    }
+
+    /**
+     * Writes the whole buffer to the channel.
+     *
+     * @param channel the destination.
+     * @param buffer the data.
+     * @throws IOException If writing fails.
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Packs level files into an atlas or extracts a level from it.
+     *
+     * @param args {@code pack <atlas> <level>...} or {@code extract <atlas> <index> <output>}.
+     * @throws IOException If a file cannot be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 3 && args[0].equals("pack")) {
+            List<LevelTemplate> levels = new ArrayList<>();
+            for (int i = 2; i < args.length; i++) {
+                levels.add(BinaryLevelFormat.load(Paths.get(args[i])));
+            }
+            pack(levels, Paths.get(args[1]));
+        } else if (args.length == 4 && args[0].equals("extract")) {
+            try (LevelAtlas atlas = open(Paths.get(args[1]));
+                 Writer writer = Files.newBufferedWriter(Paths.get(args[3]), StandardCharsets.UTF_8)) {
+                atlas.level(Integer.parseInt(args[2])).writeText(writer);
+            }
+        } else {
+            System.err.println("usage: LevelAtlas pack <atlas> <level>... | extract <atlas> <index> <output>");
+            System.exit(2);
+        }
+    }
+}
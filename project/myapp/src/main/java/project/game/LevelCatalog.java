@@ -0,0 +1,308 @@
+package project.game;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * The {@link LevelCatalog} class lists the levels of a directory from a small index file.
+ * <p>
+ * The index holds one line per level file: its name, modification time and size, the size of the board, the
+ * number of tiles, and the status and difficulty found by the {@link LevelAnalyzer}. Opening the catalog only
+ * lists the directory and compares the modification times and sizes with the index; new and changed files
+ * are analyzed in parallel, and the index is rewritten only when something changed. Levels are ordered by
+ * name with numbers compared by value, so level2 comes before level10. Only playable levels, solvable ones or
+ * ones too hard to decide, are listed. The catalog is immutable and thread-safe.
+ */
+public final class LevelCatalog {
+    /** Default directory of the levels. */
+    public static final Path LEVELS = Paths.get("data", "levels");
+    /** Default index file, kept outside the level directory. */
+    public static final Path INDEX = Paths.get("data", "levels.index");
+
+    private static final String HEADER = "# electrician level catalog 1";
+    /** Analysis limits: only solvability and difficulty are needed, not the number of solutions. */
+    private static final LevelAnalyzer ANALYZER = new LevelAnalyzer(1, 1_000_000);
+    private static final Comparator<Entry> ORDER = Comparator.<Entry, String>comparing(Entry::name,
+            LevelCatalog::compareNatural).thenComparing(Entry::path);
+
+    private final List<Entry> levels;
+    private final Map<String, Integer> positions = new HashMap<>();
+
+    /**
+     * A level of the catalog.
+     *
+     * @param path the path of the level file.
+     * @param modified the modification time of the file in milliseconds.
+     * @param size the size of the file in bytes.
+     * @param rows the number of rows.
+     * @param cols the number of columns.
+     * @param tiles the number of non-empty tiles.
+     * @param status the status found by the {@link LevelAnalyzer}.
+     * @param difficulty the difficulty found by the {@link LevelAnalyzer}.
+     */
+    public record Entry(String path, long modified, long size, int rows, int cols, int tiles, String status,
+                        double difficulty) {
+        /**
+         * @return the file name without its extension.
+         */
+        public String name() {
+            String file = Paths.get(path).getFileName().toString();
+            int dot = file.lastIndexOf('.');
+            return dot > 0 ? file.substring(0, dot) : file;
+        }
+
+        /**
+         * @return true when the level can be played: it is solvable or too hard to decide.
+         */
+        public boolean playable() {
+            return status.equals("solvable") || status.equals("unknown");
+        }
+
+        /**
+         * @return the rating of the difficulty, see {@link LevelAnalyzer#rating(double)}.
+         */
+        public String rating() {
+            return status.equals("solvable") ? LevelAnalyzer.rating(difficulty) : "?";
+        }
+    }
+
+    private LevelCatalog(List<Entry> levels) {
+        this.levels = Collections.unmodifiableList(levels);
+        for (int i = 0; i < levels.size(); i++) {
+            positions.put(levels.get(i).path(), i);
+        }
+    }
+
+    /**
+     * Opens the catalog of the default level directory with the default index.
+     *
+     * @return the catalog.
+     * @throws IOException If the directory cannot be listed.
+     */
+    public static LevelCatalog open() throws IOException {
+        return open(LEVELS, INDEX);
+    }
+
+    /**
+     * Opens the catalog of a directory, updating its index when files were added, changed or removed.
+     *
+     * @param directory the directory of the levels.
+     * @param index the index file, created when missing.
+     * @return the catalog.
+     * @throws IOException If the directory cannot be listed.
+     */
+    public static LevelCatalog open(Path directory, Path index) throws IOException {
+        Map<String, Entry> indexed = read(index, directory);
+        int known = indexed.size();
+        List<Entry> entries = new ArrayList<>();
+        List<Path> changed = new ArrayList<>();
+        try (Stream<Path> listing = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) listing::iterator) {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                String name = file.getFileName().toString();
+                if (!attributes.isRegularFile() || name.indexOf('\t') >= 0 || name.indexOf('\n') >= 0) {
+                    continue;
+                }
+                Entry entry = indexed.get(name);
+                if (entry != null && entry.modified() == attributes.lastModifiedTime().toMillis()
+                        && entry.size() == attributes.size()) {
+                    entries.add(entry);
+                } else {
+                    changed.add(file);
+                }
+            }
+        }
+        try {
+            entries.addAll(changed.parallelStream().map(LevelCatalog::analyze).toList());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        entries.sort(ORDER);
+        if (!changed.isEmpty() || entries.size() != known) {
+            try {
+                write(index, entries);
+            } catch (IOException e) {
+                // the catalog still works, it is only rebuilt again next time
+                e.printStackTrace();
+            }
+        }
+        return new LevelCatalog(entries.stream().filter(Entry::playable).toList());
+    }
+
+    /**
+     * @return the playable levels in order.
+     */
+    public List<Entry> levels() {
+        return levels;
+    }
+
+    /**
+     * @return the first playable level, or null when there is none.
+     */
+    public Entry first() {
+        return levels.isEmpty() ? null : levels.get(0);
+    }
+
+    /**
+     * Finds the playable level of a level file.
+     *
+     * @param path the path of the level file.
+     * @return the level, or null when it is not in the catalog.
+     */
+    public Entry find(String path) {
+        Integer position = positions.get(path);
+        return position == null ? null : levels.get(position);
+    }
+
+    /**
+     * Returns the level following a level file.
+     *
+     * @param path the path of the level file.
+     * @return the next playable level, or null when the level is the last one or not in the catalog.
+     */
+    public Entry after(String path) {
+        Integer position = positions.get(path);
+        return position == null || position + 1 == levels.size() ? null : levels.get(position + 1);
+    }
+
+    /**
+     * Analyzes a new or changed level file.
+     *
+     * @param file the file.
+     * @return its entry.
+     */
+    private static Entry analyze(Path file) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            LevelAnalyzer.Report report = ANALYZER.analyze(file);
+            return new Entry(file.toString(), attributes.lastModifiedTime().toMillis(), attributes.size(),
+                    report.rows(), report.cols(), report.nodes(), report.status(), report.difficulty());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads an index.
+     *
+     * @param index the index file.
+     * @param directory the directory of the levels.
+     * @return the entries by file name, empty when the index is missing or unreadable.
+     */
+    private static Map<String, Entry> read(Path index, Path directory) {
+        Map<String, Entry> entries = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(index, StandardCharsets.UTF_8)) {
+            if (!HEADER.equals(reader.readLine())) {
+                return entries;
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t");
+                if (fields.length != 8) {
+                    throw new IOException("malformed line: " + line);
+                }
+                entries.put(fields[0], new Entry(directory.resolve(fields[0]).toString(),
+                        Long.parseLong(fields[1]), Long.parseLong(fields[2]), Integer.parseInt(fields[3]),
+                        Integer.parseInt(fields[4]), Integer.parseInt(fields[5]), fields[6],
+                        Double.parseDouble(fields[7])));
+            }
+        } catch (NoSuchFileException e) {
+            return entries;
+        } catch (IOException | NumberFormatException e) {
+            System.err.println(index + ": " + e.getMessage() + ", rebuilding the level catalog");
+            entries.clear();
+        }
+        return entries;
+    }
+
+    /**
+     * Writes an index into a temporary file and renames it over the old one.
+     *
+     * @param index the index file.
+     * @param entries all entries, also those of levels that are not playable.
+     * @throws IOException If writing fails, the old index is then left untouched.
+     */
+    private static void write(Path index, List<Entry> entries) throws IOException {
+        Path dir = index.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path temp = Files.createTempFile(dir, index.getFileName().toString(), ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                writer.write(HEADER);
+                writer.write('\n');
+                for (Entry entry : entries) {
+                    writer.write(Paths.get(entry.path()).getFileName() + "\t" + entry.modified() + "\t"
+                            + entry.size() + "\t" + entry.rows() + "\t" + entry.cols() + "\t" + entry.tiles()
+                            + "\t" + entry.status() + "\t" + entry.difficulty() + "\n");
+                }
+            }
+            try {
+                Files.move(temp, index, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, index, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Compares names so that runs of digits are compared by their value.
+     *
+     * @param a a name.
+     * @param b another name.
+     * @return the comparison result.
+     */
+    private static int compareNatural(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            char ca = a.charAt(i);
+            char cb = b.charAt(j);
+            if (Character.isDigit(ca) && Character.isDigit(cb)) {
+                int endA = i;
+                int endB = j;
+                while (endA < a.length() && Character.isDigit(a.charAt(endA))) {
+                    endA++;
+                }
+                while (endB < b.length() && Character.isDigit(b.charAt(endB))) {
+                    endB++;
+                }
+                String digitsA = a.substring(i, endA).replaceFirst("^0+(?=.)", "");
+                String digitsB = b.substring(j, endB).replaceFirst("^0+(?=.)", "");
+                int result = digitsA.length() != digitsB.length()
+                        ? Integer.compare(digitsA.length(), digitsB.length())
+                        : digitsA.compareTo(digitsB);
+                if (result != 0) {
+                    return result;
+                }
+                i = endA;
+                j = endB;
+            } else {
+                if (ca != cb) {
+                    return Character.compare(ca, cb);
+                }
+                i++;
+                j++;
+            }
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+}
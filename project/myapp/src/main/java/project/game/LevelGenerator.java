@@ -0,0 +1,128 @@
+package project.game;
+
+import java.util.SplittableRandom;
+
+import project.common.NodeType;
+import project.common.Side;
+
+/**
+ * The {@link LevelGenerator} class creates random solvable levels that fill the whole board.
+ * <p>
+ * A random spanning tree of the grid is grown from the power source by picking random edges out of the tree
+ * (Prim's algorithm with random weights), which gives many short branches. Afterwards every other pair of
+ * neighbours is connected with the given probability, adding loops. The connections become the connectors
+ * of the tiles: tiles with a single connection are bulbs, the others wires. The authored orientation of a
+ * generated level is its solution; the same size, loop probability and seed always give the same level.
+ */
+public final class LevelGenerator {
+    private static final Side[] SIDES = Side.values();
+
+    private final int rows;
+    private final int cols;
+    private final double loops;
+
+    /**
+     * Creates a generator.
+     *
+     * @param rows the number of rows.
+     * @param cols the number of columns.
+     * @param loops the probability that two neighbours outside the spanning tree are connected, 0 for trees.
+     * @throws IllegalArgumentException if the board has less than two tiles or the probability is not in [0, 1].
+     */
+    public LevelGenerator(int rows, int cols, double loops) {
+        if (rows < 1 || cols < 1 || (long) rows * cols < 2 || (long) rows * cols > Integer.MAX_VALUE / 4) {
+            throw new IllegalArgumentException("invalid level size " + rows + "x" + cols);
+        }
+        if (!(loops >= 0 && loops <= 1)) {
+            throw new IllegalArgumentException("loops must be a probability: " + loops);
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.loops = loops;
+    }
+
+    /**
+     * Generates a level.
+     *
+     * @param seed the seed of the level.
+     * @return the level, solved in its authored orientation.
+     */
+    public LevelTemplate generate(long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int size = rows * cols;
+        int[] masks = new int[size];
+        boolean[] inTree = new boolean[size];
+        int source = random.nextInt(size);
+        // frontier edges as tile << 2 | side, removed in random order
+        int[] frontier = new int[size * 4];
+        int frontierSize = addEdges(source, frontier, 0);
+        inTree[source] = true;
+        while (frontierSize > 0) {
+            int pick = random.nextInt(frontierSize);
+            int edge = frontier[pick];
+            frontier[pick] = frontier[--frontierSize];
+            int tile = edge >>> 2;
+            Side side = SIDES[edge & 3];
+            int neighbor = neighbor(tile, side);
+            if (inTree[neighbor]) {
+                continue;
+            }
+            inTree[neighbor] = true;
+            masks[tile] |= side.bit();
+            masks[neighbor] |= side.opposite().bit();
+            frontierSize = addEdges(neighbor, frontier, frontierSize);
+        }
+        if (loops > 0) {
+            for (int tile = 0; tile < size; tile++) {
+                for (Side side : new Side[] {Side.EAST, Side.SOUTH}) {
+                    int neighbor = neighbor(tile, side);
+                    if (neighbor >= 0 && (masks[tile] & side.bit()) == 0 && random.nextDouble() < loops) {
+                        masks[tile] |= side.bit();
+                        masks[neighbor] |= side.opposite().bit();
+                    }
+                }
+            }
+        }
+        byte[] cells = new byte[size];
+        for (int tile = 0; tile < size; tile++) {
+            NodeType type = tile == source ? NodeType.SOURCE
+                    : Integer.bitCount(masks[tile]) == 1 ? NodeType.BULB
+                    : NodeType.WIRE;
+            cells[tile] = LevelTemplate.encode(type, masks[tile]);
+        }
+        return LevelTemplate.of(rows, cols, cells);
+    }
+
+    /**
+     * Pushes the edges of a tile to its neighbours onto the frontier.
+     *
+     * @param tile the tile.
+     * @param frontier the frontier.
+     * @param frontierSize the number of edges on the frontier.
+     * @return the new number of edges on the frontier.
+     */
+    private int addEdges(int tile, int[] frontier, int frontierSize) {
+        for (Side side : SIDES) {
+            if (neighbor(tile, side) >= 0) {
+                frontier[frontierSize++] = tile << 2 | side.ordinal();
+            }
+        }
+        return frontierSize;
+    }
+
+    /**
+     * @param tile a tile index.
+     * @param side a side of the tile.
+     * @return the index of the neighbour on that side, or -1 at the edge of the board.
+     */
+    private int neighbor(int tile, Side side) {
+        int row = tile / cols;
+        int col = tile % cols;
+        return switch (side) {
+            case NORTH -> row > 0 ? tile - cols : -1;
+            case EAST -> col < cols - 1 ? tile + 1 : -1;
+            case SOUTH -> row < rows - 1 ? tile + cols : -1;
+            case WEST -> col > 0 ? tile - 1 : -1;
+        };
+    }
+}
@@ -0,0 +1,265 @@
+package project.game;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@link LevelGeneratorPool} class keeps a supply of fresh levels of one size and difficulty.
+ * <p>
+ * Producer threads, one per core by default, generate candidate levels with the {@link LevelGenerator},
+ * estimate their difficulty like the {@link LevelAnalyzer} does and discard those outside the target band.
+ * Accepted levels go into a bounded queue; when it is full, the producers wait until a level is taken, so an
+ * idle pool costs no CPU. Every candidate has its own seed, counted up from the first one, so a run can be
+ * repeated. The number of candidates and accepted levels per second is tracked for throughput reports.
+ * <p>
+ * Running the class writes generated levels in the text format of {@link GameLoader}
+ * ({@code LevelGeneratorPool <rows> <cols> <count> <directory> [rating|min-max [loops [seed]]]}), where the
+ * rating is one of those of {@link LevelAnalyzer#rating(double)}, and reports the throughput every second.
+ */
+public final class LevelGeneratorPool {
+    /** Number of search steps after which a candidate is discarded as too hard to rate. */
+    private static final long MAX_STEPS = 1_000_000L;
+
+    private final int rows;
+    private final int cols;
+    private final double loops;
+    private final double minDifficulty;
+    private final double maxDifficulty;
+    private final int threads;
+    private final BlockingQueue<Generated> queue;
+    private final AtomicLong seeds;
+    private final LevelAnalyzer analyzer = new LevelAnalyzer(1, MAX_STEPS);
+    private final LongAdder candidates = new LongAdder();
+    private final LongAdder accepted = new LongAdder();
+    private final List<Thread> producers = new ArrayList<>();
+    private volatile boolean stopped;
+    private long started;
+
+    /**
+     * A generated level.
+     *
+     * @param level the level, solved in its authored orientation.
+     * @param seed the seed the {@link LevelGenerator} created it from.
+     * @param difficulty the difficulty estimated by the {@link LevelAnalyzer}.
+     */
+    public record Generated(LevelTemplate level, long seed, double difficulty) {
+        /**
+         * Writes the level in the text format of {@link GameLoader} into a directory, named after its size
+         * and seed.
+         *
+         * @param directory the directory, created when missing.
+         * @return the written file.
+         * @throws IOException If writing fails.
+         */
+        public Path write(Path directory) throws IOException {
+            Files.createDirectories(directory);
+            Path file = directory.resolve("random-" + level.rows() + "x" + level.cols() + "-"
+                    + Long.toHexString(seed) + ".txt");
+            try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+                level.writeText(writer);
+            }
+            return file;
+        }
+    }
+
+    /**
+     * Creates a pool; it produces nothing until {@link #start()} is called.
+     *
+     * @param rows the number of rows of the levels.
+     * @param cols the number of columns of the levels.
+     * @param loops the loop probability of the {@link LevelGenerator}, 0 for trees.
+     * @param minDifficulty the lowest accepted difficulty.
+     * @param maxDifficulty the accepted difficulties are below this one.
+     * @param capacity the number of levels kept ready.
+     * @param threads the number of producer threads.
+     * @param firstSeed the seed of the first candidate.
+     * @throws IllegalArgumentException if the size, loops, band, capacity or thread count is invalid.
+     */
+    public LevelGeneratorPool(int rows, int cols, double loops, double minDifficulty, double maxDifficulty,
+                              int capacity, int threads, long firstSeed) {
+        // checks the size and the loop probability
+        new LevelGenerator(rows, cols, loops);
+        if (!(minDifficulty < maxDifficulty)) {
+            throw new IllegalArgumentException("empty difficulty band " + minDifficulty + "-" + maxDifficulty);
+        }
+        if (capacity < 1 || threads < 1) {
+            throw new IllegalArgumentException("capacity and threads must be positive");
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.loops = loops;
+        this.minDifficulty = minDifficulty;
+        this.maxDifficulty = maxDifficulty;
+        this.threads = threads;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.seeds = new AtomicLong(firstSeed);
+    }
+
+    /**
+     * Starts the producer threads. Calling it again has no effect.
+     */
+    public synchronized void start() {
+        if (!producers.isEmpty() || stopped) {
+            return;
+        }
+        started = System.nanoTime();
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread(this::produce, "level-generator-" + i);
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            producers.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * Takes a level, waiting until one is ready.
+     *
+     * @return the level.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public Generated take() throws InterruptedException {
+        return queue.take();
+    }
+
+    /**
+     * Takes a level, waiting at most the given time.
+     *
+     * @param timeout the longest time to wait.
+     * @param unit the unit of the time.
+     * @return the level, or null when none was ready in time.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public Generated poll(long timeout, TimeUnit unit) throws InterruptedException {
+        return queue.poll(timeout, unit);
+    }
+
+    /**
+     * Stops the producer threads; levels being generated are dropped.
+     */
+    public synchronized void shutdown() {
+        stopped = true;
+        for (Thread thread : producers) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * @return the number of generated and rated candidates.
+     */
+    public long candidates() {
+        return candidates.sum();
+    }
+
+    /**
+     * @return the number of levels within the difficulty band put into the queue.
+     */
+    public long accepted() {
+        return accepted.sum();
+    }
+
+    /**
+     * @return the accepted levels per second since {@link #start()}.
+     */
+    public double levelsPerSecond() {
+        return perSecond(accepted());
+    }
+
+    /**
+     * @return the rated candidates per second since {@link #start()}.
+     */
+    public double candidatesPerSecond() {
+        return perSecond(candidates());
+    }
+
+    /**
+     * @param count a count since the start.
+     * @return the count per second.
+     */
+    private synchronized double perSecond(long count) {
+        if (producers.isEmpty()) {
+            return 0;
+        }
+        return count / Math.max((System.nanoTime() - started) / 1e9, 1e-9);
+    }
+
+    /**
+     * The loop of a producer thread.
+     */
+    private void produce() {
+        LevelGenerator generator = new LevelGenerator(rows, cols, loops);
+        try {
+            while (!stopped) {
+                long seed = seeds.getAndIncrement();
+                LevelTemplate level = generator.generate(seed);
+                double difficulty = analyzer.difficulty(level, () -> stopped);
+                candidates.increment();
+                if (difficulty >= minDifficulty && difficulty < maxDifficulty) {
+                    queue.put(new Generated(level, seed, difficulty));
+                    accepted.increment();
+                }
+            }
+        } catch (InterruptedException e) {
+            // shut down
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 4 || args.length > 7) {
+            System.err.println("usage: LevelGeneratorPool <rows> <cols> <count> <directory> "
+                    + "[rating|min-max [loops [seed]]]");
+            System.exit(2);
+        }
+        int rows = Integer.parseInt(args[0]);
+        int cols = Integer.parseInt(args[1]);
+        int count = Integer.parseInt(args[2]);
+        Path directory = Paths.get(args[3]);
+        double[] band = {0, Double.POSITIVE_INFINITY};
+        if (args.length > 4) {
+            int dash = args[4].indexOf('-');
+            band = dash < 0 ? LevelAnalyzer.band(args[4]) : new double[] {
+                    Double.parseDouble(args[4].substring(0, dash)), Double.parseDouble(args[4].substring(dash + 1))};
+        }
+        double loops = args.length > 5 ? Double.parseDouble(args[5]) : 0;
+        long seed = args.length > 6 ? Long.parseLong(args[6]) : new SplittableRandom().nextLong();
+
+        LevelGeneratorPool pool = new LevelGeneratorPool(rows, cols, loops, band[0], band[1], 64,
+                Runtime.getRuntime().availableProcessors(), seed);
+        pool.start();
+        long lastReport = System.nanoTime();
+        int written = 0;
+        while (written < count) {
+            Generated level = pool.poll(1, TimeUnit.SECONDS);
+            if (level != null) {
+                try {
+                    level.write(directory);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    System.exit(1);
+                }
+                written++;
+            }
+            if (System.nanoTime() - lastReport >= 1_000_000_000L) {
+                lastReport = System.nanoTime();
+                System.err.printf("%d/%d levels, %.1f levels/s, %.1f candidates/s%n", written, count,
+                        pool.levelsPerSecond(), pool.candidatesPerSecond());
+            }
+        }
+        pool.shutdown();
+        System.out.printf("%d levels written to %s, %.1f levels/s, %.1f candidates/s, %d%% accepted%n", written,
+                directory, pool.levelsPerSecond(), pool.candidatesPerSecond(),
+                pool.candidates() == 0 ? 0 : 100 * pool.accepted() / pool.candidates());
+    }
+}
@@ -0,0 +1,37 @@
+package project.game;
+
+import java.util.function.BooleanSupplier;
+
+import project.common.ToolEnvironment;
+
+/**
+ * A {@link LevelSolver} finds an orientation of every tile of a board that powers all of its nodes.
+ * <p>
+ * Solvers work on a {@link BoardState}, so they can run on any thread while the game goes on. The current
+ * rotations of the board are only a preference: solvers should try them first, so a found solution is close
+ * to the board the player sees.
+ */
+public interface LevelSolver {
+    /**
+     * Solves a board.
+     *
+     * @param board the board to solve, it is not changed.
+     * @param cancelled checked regularly, the search stops as soon as it returns true.
+     * @return the rotation (0-3 clockwise quarter turns from the authored orientation) of every tile in a
+     *         solution, or null when the board has no solution or the search was cancelled.
+     */
+    byte[] solve(BoardState board, BooleanSupplier cancelled);
+
+    /**
+     * Solves any board, for example a running {@link Game}. The board is copied first, see
+     * {@link BoardState#of(ToolEnvironment)}, so the rotations are relative to its current orientation.
+     *
+     * @param environment the board to solve, it is not changed.
+     * @param cancelled checked regularly, the search stops as soon as it returns true.
+     * @return the clockwise quarter turns every tile needs from its current orientation to a solution, or
+     *         null when the board has no solution or the search was cancelled.
+     */
+    default byte[] solve(ToolEnvironment environment, BooleanSupplier cancelled) {
+        return solve(BoardState.of(environment), cancelled);
+    }
+}
@@ -0,0 +1,232 @@
+package project.game;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+import project.common.NodeType;
+import project.common.Side;
+
+/**
+ * The {@link LevelTemplate} class is the immutable topology of a level: its size and, for every tile,
+ * the node type and the connectors in the authored orientation.
+ * <p>
+ * Tiles are stored row by row in a single byte array, one byte per tile with the {@link NodeType} ordinal in
+ * the high nibble and the connector mask (see {@link Side#bit()}) in the low nibble. Tile indexes are
+ * 0-based, while rows and columns are 1-based as everywhere else in the game.
+ */
+public final class LevelTemplate {
+    private static final NodeType[] NODE_TYPES = NodeType.values();
+
+    private final int rows;
+    private final int cols;
+    private final byte[] cells;
+    private final int source;
+    private final int nodeCount;
+
+    /**
+     * Creates a template that takes ownership of the given cell array, which must not be modified afterwards.
+     *
+     * @param rows the number of rows.
+     * @param cols the number of columns.
+     * @param cells the encoded tiles, {@code rows * cols} bytes.
+     * @throws IllegalArgumentException if the size does not match or a tile is not valid.
+     */
+    LevelTemplate(int rows, int cols, byte[] cells) {
+        if (rows < 1 || cols < 1 || (long) rows * cols != cells.length) {
+            throw new IllegalArgumentException("invalid level size " + rows + "x" + cols);
+        }
+        this.rows = rows;
+        this.cols = cols;
+        this.cells = cells;
+        int sourceIndex = -1;
+        int nodes = 0;
+        for (int i = 0; i < cells.length; i++) {
+            int type = (cells[i] >> 4) & 0xF;
+            if (type >= NODE_TYPES.length) {
+                throw new IllegalArgumentException("invalid node type at tile " + i);
+            }
+            if (type != NodeType.EMPTY.ordinal()) {
+                nodes++;
+            }
+            if (type == NodeType.SOURCE.ordinal() && sourceIndex < 0) {
+                sourceIndex = i;
+            }
+        }
+        this.source = sourceIndex;
+        this.nodeCount = nodes;
+    }
+
+    /**
+     * Creates a template from a copy of the given encoded tiles.
+     *
+     * @param rows the number of rows.
+     * @param cols the number of columns.
+     * @param cells the encoded tiles, {@code rows * cols} bytes, see {@link #encode(NodeType, int)}.
+     * @return the new template.
+     * @throws IllegalArgumentException if the size does not match or a tile is not valid.
+     */
+    public static LevelTemplate of(int rows, int cols, byte[] cells) {
+        return new LevelTemplate(rows, cols, cells.clone());
+    }
+
+    /**
+     * Encodes a tile into its byte representation.
+     *
+     * @param type the node type.
+     * @param mask the connector mask.
+     * @return the encoded tile.
+     */
+    public static byte encode(NodeType type, int mask) {
+        return (byte) ((type.ordinal() << 4) | (mask & 0xF));
+    }
+
+    /**
+     * @return the number of rows.
+     */
+    public int rows() {
+        return rows;
+    }
+
+    /**
+     * @return the number of columns.
+     */
+    public int cols() {
+        return cols;
+    }
+
+    /**
+     * @return the number of tiles ({@code rows * cols}).
+     */
+    public int size() {
+        return cells.length;
+    }
+
+    /**
+     * @return the number of tiles that are not empty.
+     */
+    public int nodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Returns the index of a tile.
+     *
+     * @param row the 1-based row.
+     * @param col the 1-based column.
+     * @return the 0-based tile index.
+     */
+    public int index(int row, int col) {
+        return (row - 1) * cols + (col - 1);
+    }
+
+    /**
+     * @param index the tile index.
+     * @return the 1-based row of the tile.
+     */
+    public int row(int index) {
+        return index / cols + 1;
+    }
+
+    /**
+     * @param index the tile index.
+     * @return the 1-based column of the tile.
+     */
+    public int col(int index) {
+        return index % cols + 1;
+    }
+
+    /**
+     * @param index the tile index.
+     * @return the node type of the tile.
+     */
+    public NodeType type(int index) {
+        return NODE_TYPES[(cells[index] >> 4) & 0xF];
+    }
+
+    /**
+     * @param index the tile index.
+     * @return the connector mask of the tile in the authored orientation.
+     */
+    public int mask(int index) {
+        return cells[index] & 0xF;
+    }
+
+    /**
+     * @param index the tile index.
+     * @return the encoded tile (type in the high nibble, connector mask in the low nibble).
+     */
+    public byte cell(int index) {
+        return cells[index];
+    }
+
+    /**
+     * @return the index of the power source, or -1 when the level has none.
+     */
+    public int sourceIndex() {
+        return source;
+    }
+
+    /**
+     * Returns a copy of the encoded tiles.
+     *
+     * @return the encoded tiles, row by row.
+     */
+    public byte[] cells() {
+        return cells.clone();
+    }
+
+    /**
+     * Gives classes of the package direct access to the tiles without copying. The array must not be modified.
+     *
+     * @return the encoded tiles.
+     */
+    byte[] cellArray() {
+        return cells;
+    }
+
+    /**
+     * Writes the template in the text format read by {@link GameLoader}.
+     *
+     * @param writer the destination.
+     * @throws IOException If writing fails.
+     */
+    public void writeText(Writer writer) throws IOException {
+        writer.write(rows + " " + cols + "\n");
+        StringBuilder line = new StringBuilder();
+        for (int i = 0; i < cells.length; i++) {
+            NodeType type = type(i);
+            if (type == NodeType.EMPTY) {
+                continue;
+            }
+            line.setLength(0);
+            line.append(type.swichSideToString()).append(' ').append(row(i)).append(' ').append(col(i));
+            for (Side side : Side.fromMask(mask(i))) {
+                line.append(' ').append(side.name());
+            }
+            writer.write(line.append('\n').toString());
+        }
+    }
+
+    /**
+     * Two templates are equal when they have the same size and the same tiles.
+     *
+     * @param obj the object to compare with.
+     * @return {@code true} if the templates describe the same level.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof LevelTemplate other)) {
+            return false;
+        }
+        return rows == other.rows && cols == other.cols && Arrays.equals(cells, other.cells);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * rows + cols) + Arrays.hashCode(cells);
+    }
+}
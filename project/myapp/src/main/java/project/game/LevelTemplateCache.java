@@ -0,0 +1,121 @@
+package project.game;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The {@link LevelTemplateCache} class keeps recently used levels parsed in memory.
+ * <p>
+ * Levels are keyed by the path of their file and evicted in least-recently-used order once the cache holds
+ * more than its capacity. A cached level is reused as long as the modification time and the length of its
+ * file are unchanged, so starting a level again or cycling through levels does not read or parse the file.
+ * New games are stamped from the cached {@link LevelTemplate} with {@link Game#create(LevelTemplate)}.
+ * The cache is thread-safe.
+ */
+public class LevelTemplateCache {
+    /** Capacity of the shared cache. */
+    public static final int DEFAULT_CAPACITY = 16;
+
+    private static final LevelTemplateCache SHARED = new LevelTemplateCache(DEFAULT_CAPACITY);
+
+    private final Map<String, CachedLevel> levels;
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * A parsed level together with the file attributes it was parsed from.
+     */
+    private record CachedLevel(LevelTemplate template, long modified, long length) {
+    }
+
+    /**
+     * Creates an empty cache.
+     *
+     * @param capacity the maximum number of cached levels.
+     * @throws IllegalArgumentException if the capacity is less than 1.
+     */
+    public LevelTemplateCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.levels = new LinkedHashMap<>(capacity * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedLevel> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the cache shared by the whole application.
+     *
+     * @return the shared cache.
+     */
+    public static LevelTemplateCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the parsed level stored in a file, parsing the file only when it is not cached or has changed.
+     *
+     * @param path the path of the level file.
+     * @return the parsed level.
+     * @throws IllegalArgumentException if the file cannot be read or does not hold a valid level.
+     */
+    public LevelTemplate get(String path) {
+        File file = new File(path);
+        long modified = file.lastModified();
+        long length = file.length();
+        synchronized (this) {
+            CachedLevel cached = levels.get(path);
+            if (cached != null && cached.modified() == modified && cached.length() == length) {
+                hits++;
+                return cached.template();
+            }
+            misses++;
+        }
+        LevelTemplate template = new GameLoader(path).toTemplate();
+        synchronized (this) {
+            levels.put(path, new CachedLevel(template, modified, length));
+        }
+        return template;
+    }
+
+    /**
+     * Removes a level from the cache.
+     *
+     * @param path the path of the level file.
+     */
+    public synchronized void invalidate(String path) {
+        levels.remove(path);
+    }
+
+    /**
+     * Removes all levels from the cache.
+     */
+    public synchronized void clear() {
+        levels.clear();
+    }
+
+    /**
+     * @return the number of cached levels.
+     */
+    public synchronized int size() {
+        return levels.size();
+    }
+
+    /**
+     * @return the number of requests answered from the cache.
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of requests that had to parse the level file.
+     */
+    public synchronized long misses() {
+        return misses;
+    }
+}
@@ -0,0 +1,309 @@
+package project.game;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import project.common.GameNode;
+
+/**
+ * The {@link LiveStateFile} class keeps the rotation of every tile of the current game in a memory-mapped
+ * file, so the saved state is always the live one and survives a crash or {@code kill -9}.
+ * <p>
+ * Layout (big endian):
+ * <pre>
+ * 0   magic "ELS1"
+ * 4   rows                       int
+ * 8   columns                    int
+ * 12  length of the level path   int
+ * 16  generation                 long, incremented by every turn
+ * 24  checksum                   long, weighted sum of the rotations
+ * 32  intent tile                int, -1 when no update is in progress
+ * 36  intent rotation            int
+ * 40  SHA-256 of the level file  32 bytes
+ * 72  level path                 UTF-8, padded to a multiple of 8
+ * ... rotations                  one byte per tile, row by row
+ * </pre>
+ * A turn is a handful of stores into the mapping: the intent is recorded, the rotation byte is written, the
+ * checksum is adjusted in constant time and the generation is bumped before the intent is cleared. The pages
+ * belong to the operating system, so they reach the disk even when the process is killed. Opening the file only
+ * checks the header, the intent record and the generation, so it takes constant time; only when the file is
+ * opened after a crash in the middle of a turn, the recorded intent is completed and the checksum is rebuilt over
+ * all tiles. The checksum of a file is compared with its rotations by {@link #verify()}, on request. Rebuilding
+ * the board with {@link #board()} reads the level file anyway, and checks its SHA-256 on the way. The mode is
+ * enabled with {@code -Delectrician.liveState=true}, the verification on open with
+ * {@code -Delectrician.liveState.verify=true}.
+ */
+public final class LiveStateFile implements GameTurnListener, Closeable {
+    private static final String PROPERTY = "electrician.liveState";
+    private static final String VERIFY_PROPERTY = "electrician.liveState.verify";
+    private static final byte[] MAGIC = {'E', 'L', 'S', '1'};
+    private static final int GENERATION = 16;
+    private static final int CHECKSUM = 24;
+    private static final int INTENT_TILE = 32;
+    private static final int INTENT_ROTATION = 36;
+    private static final int HASH = 40;
+    private static final int HASH_SIZE = 32;
+    private static final int PATH = HASH + HASH_SIZE;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final String levelPath;
+    private final int rows;
+    private final int cols;
+    private final int tiles;
+    private boolean closed;
+
+    /**
+     * Maps an existing state file.
+     *
+     * @param channel the open channel of the file.
+     * @throws IOException If the file cannot be mapped or is not a valid state file.
+     */
+    private LiveStateFile(FileChannel channel) throws IOException {
+        this.channel = channel;
+        long size = channel.size();
+        if (size < PATH || size > Integer.MAX_VALUE) {
+            throw new IOException("not a live state file");
+        }
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        byte[] magic = new byte[MAGIC.length];
+        buffer.get(0, magic);
+        this.rows = buffer.getInt(4);
+        this.cols = buffer.getInt(8);
+        int pathLength = buffer.getInt(12);
+        if (!Arrays.equals(magic, MAGIC) || rows < 1 || cols < 1 || pathLength < 0
+                || tilesOffset(pathLength) + (long) rows * cols != size || buffer.getLong(GENERATION) < 0) {
+            throw new IOException("not a live state file");
+        }
+        byte[] path = new byte[pathLength];
+        buffer.get(PATH, path);
+        this.levelPath = new String(path, StandardCharsets.UTF_8);
+        this.tiles = tilesOffset(pathLength);
+        int intent = buffer.getInt(INTENT_TILE);
+        if (intent >= 0 && intent < rows * cols) {
+            // a turn was interrupted: finish it and rebuild the checksum
+            buffer.put(tiles + intent, (byte) (buffer.getInt(INTENT_ROTATION) & 3));
+            buffer.putLong(CHECKSUM, checksum());
+            buffer.putInt(INTENT_TILE, -1);
+        } else if (intent != -1) {
+            throw new IOException("invalid intent record in live state file");
+        }
+    }
+
+    /**
+     * @return true when the live state mode was requested with {@code -Delectrician.liveState=true}.
+     */
+    public static boolean isRequested() {
+        return Boolean.getBoolean(PROPERTY);
+    }
+
+    /**
+     * @return true when the checksum of the file is to be verified when it is opened, requested with
+     *         {@code -Delectrician.liveState.verify=true}.
+     */
+    public static boolean isVerifyRequested() {
+        return Boolean.getBoolean(VERIFY_PROPERTY);
+    }
+
+    /**
+     * Creates a state file for a board of a level, replacing any existing one. The file is written next to
+     * its final place and renamed over it, so a crash never leaves a half-created state.
+     *
+     * @param file the state file.
+     * @param levelPath the path of the level file the board was created from.
+     * @param board the current board.
+     * @return the opened state file, to be closed after use.
+     * @throws IOException If the file cannot be written.
+     */
+    public static LiveStateFile create(Path file, String levelPath, BoardState board) throws IOException {
+        byte[] path = levelPath.getBytes(StandardCharsets.UTF_8);
+        int offset = tilesOffset(path.length);
+        ByteBuffer content = ByteBuffer.allocate(offset + board.size());
+        content.put(MAGIC).putInt(board.rows()).putInt(board.cols()).putInt(path.length);
+        content.putLong(0).putLong(0).putInt(-1).putInt(0);
+        content.put(DeltaSaveFormat.hash(Paths.get(levelPath))).put(path);
+        long checksum = 0;
+        for (int i = 0; i < board.size(); i++) {
+            int rotation = board.rotation(i);
+            content.put(offset + i, (byte) rotation);
+            checksum += weight(i) * rotation;
+        }
+        content.putLong(CHECKSUM, checksum);
+        content.clear();
+
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (content.hasRemaining()) {
+                    out.write(content);
+                }
+                out.force(false);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return open(file);
+    }
+
+    /**
+     * Opens an existing state file, completing a turn interrupted by a crash.
+     *
+     * @param file the state file.
+     * @return the opened state file, to be closed after use.
+     * @throws IOException If the file cannot be opened or is corrupted.
+     */
+    public static LiveStateFile open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return new LiveStateFile(channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Compares the checksum of the file with its rotations. Unlike opening, it visits every tile.
+     *
+     * @throws IOException If the checksum does not match.
+     */
+    public void verify() throws IOException {
+        if (buffer.getLong(CHECKSUM) != checksum()) {
+            throw new IOException("live state checksum mismatch");
+        }
+    }
+
+    /**
+     * @return the path of the level file of the saved board.
+     */
+    public String levelPath() {
+        return levelPath;
+    }
+
+    /**
+     * @return the number of turns written to the file since it was created.
+     */
+    public long generation() {
+        return buffer.getLong(GENERATION);
+    }
+
+    /**
+     * Rebuilds the saved board. The level file is loaded through the {@link LevelTemplateCache}, and hashed to
+     * check it did not change; both are linear in the size of the level.
+     *
+     * @return the saved board.
+     * @throws IOException If the level file is missing or changed since the state file was created.
+     */
+    public BoardState board() throws IOException {
+        byte[] hash = new byte[HASH_SIZE];
+        buffer.get(HASH, hash);
+        if (!Arrays.equals(hash, DeltaSaveFormat.hash(Paths.get(levelPath)))) {
+            throw new IOException("level " + levelPath + " changed since it was saved");
+        }
+        LevelTemplate template = LevelTemplateCache.shared().get(levelPath);
+        if (template.rows() != rows || template.cols() != cols) {
+            throw new IOException("live state does not match level " + levelPath);
+        }
+        BoardState board = new BoardState(template);
+        for (int i = 0; i < rows * cols; i++) {
+            board.setRotation(i, buffer.get(tiles + i));
+        }
+        return board;
+    }
+
+    /**
+     * Updates the rotation of one tile in place.
+     *
+     * @param index the tile index.
+     * @param rotation the number of clockwise quarter turns from the authored orientation, taken modulo 4.
+     */
+    public void setRotation(int index, int rotation) {
+        int value = Math.floorMod(rotation, 4);
+        int old = buffer.get(tiles + index);
+        if (closed || old == value) {
+            return;
+        }
+        buffer.putInt(INTENT_ROTATION, value);
+        buffer.putInt(INTENT_TILE, index);
+        buffer.put(tiles + index, (byte) value);
+        buffer.putLong(CHECKSUM, buffer.getLong(CHECKSUM) + weight(index) * (value - old));
+        buffer.putLong(GENERATION, buffer.getLong(GENERATION) + 1);
+        buffer.putInt(INTENT_TILE, -1);
+    }
+
+    /**
+     * Writes the new rotation of a turned node.
+     *
+     * @param index the tile index of the node.
+     * @param node the turned node.
+     */
+    @Override
+    public void onTurn(int index, GameNode node) {
+        setRotation(index, node.getTurns());
+    }
+
+    /**
+     * Closes the file. Turns reported afterwards are ignored.
+     *
+     * @throws IOException If closing fails.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        channel.close();
+    }
+
+    /**
+     * Computes the checksum of all rotations.
+     *
+     * @return the checksum.
+     */
+    private long checksum() {
+        long checksum = 0;
+        for (int i = 0; i < rows * cols; i++) {
+            checksum += weight(i) * buffer.get(tiles + i);
+        }
+        return checksum;
+    }
+
+    /**
+     * Returns the checksum weight of a tile, a well mixed odd number.
+     *
+     * @param index the tile index.
+     * @return the weight.
+     */
+    private static long weight(int index) {
+        long z = (index + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return (z ^ (z >>> 31)) | 1;
+    }
+
+    /**
+     * Returns the offset of the rotations for a level path of the given length.
+     *
+     * @param pathLength the length of the encoded level path.
+     * @return the offset, a multiple of 8.
+     */
+    private static int tilesOffset(int pathLength) {
+        return (PATH + pathLength + 7) & ~7;
+    }
+}
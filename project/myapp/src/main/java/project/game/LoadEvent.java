@@ -0,0 +1,33 @@
+package project.game;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JDK Flight Recorder event emitted when a level file is parsed by {@link GameLoader}.
+ */
+@Name("project.Load")
+@Label("Level Load")
+@Category({"Electrician", "I/O"})
+@Description("Parsing of a level file")
+public class LoadEvent extends jdk.jfr.Event {
+    @Label("Path")
+    public String path;
+
+    @Label("Rows")
+    public int rows;
+
+    @Label("Columns")
+    public int cols;
+
+    @Label("Nodes")
+    @Description("Number of node definitions in the file")
+    public int nodes;
+
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+}
@@ -0,0 +1,125 @@
+package project.game;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The {@link ParOptimizer} class computes the par of a scrambled level: the minimum number of clicks that
+ * turn the scrambled board into a winning one.
+ * <p>
+ * The search is the branch and bound of {@link BacktrackingSolver#solveMinimal(BoardState, BooleanSupplier)},
+ * limited to {@link #MAX_NODES} search steps: large or loopy levels can take the exact search far longer than
+ * a level is played, so their par stays unknown. A scramble is fully determined by the level and its seed
+ * (see {@link RandomizeGame}), so results are cached per level and seed, and evicted in least-recently-used
+ * order once the cache holds more than its capacity.
+ * Pars are computed on the background thread "par-optimizer" while the level is played; cancelling a future
+ * returned by {@link #parOf(LevelTemplate, long)} stops its search, so the next level does not wait behind it.
+ * The class is thread-safe.
+ */
+public final class ParOptimizer {
+    /** Capacity of the shared optimizer cache. */
+    public static final int DEFAULT_CAPACITY = 64;
+    /** Number of search steps after which the par is given up, a few seconds of search. */
+    public static final long MAX_NODES = 2_000_000L;
+
+    private static final ParOptimizer SHARED = new ParOptimizer(DEFAULT_CAPACITY);
+
+    private final Map<ParKey, CompletableFuture<Integer>> results;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "par-optimizer");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+
+    /**
+     * The identity of a scramble.
+     *
+     * @param level the level.
+     * @param seed the seed of the scramble.
+     */
+    private record ParKey(LevelTemplate level, long seed) {
+    }
+
+    /**
+     * Creates an optimizer with an empty cache.
+     *
+     * @param capacity the maximum number of cached pars.
+     * @throws IllegalArgumentException if the capacity is less than 1.
+     */
+    public ParOptimizer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.results = new LinkedHashMap<>(capacity * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ParKey, CompletableFuture<Integer>> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Returns the optimizer shared by the whole application.
+     *
+     * @return the shared optimizer.
+     */
+    public static ParOptimizer shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the par of a scramble, computing it in the background when it is not cached.
+     *
+     * @param level the level.
+     * @param seed the seed of the scramble, see {@link RandomizeGame#scramble(LevelTemplate, long)}.
+     * @return the future par, -1 when the scrambled board has no solution or the search exceeded
+     *         {@link #MAX_NODES}. Cancelling it stops the search.
+     */
+    public CompletableFuture<Integer> parOf(LevelTemplate level, long seed) {
+        ParKey key = new ParKey(level, seed);
+        synchronized (this) {
+            CompletableFuture<Integer> cached = results.get(key);
+            if (cached != null && !cached.isCancelled()) {
+                return cached;
+            }
+            CompletableFuture<Integer> result = new CompletableFuture<>();
+            executor.execute(() -> {
+                if (result.isDone()) {
+                    return;
+                }
+                try {
+                    result.complete(par(RandomizeGame.scramble(level, seed), result::isCancelled));
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                }
+            });
+            results.put(key, result);
+            return result;
+        }
+    }
+
+    /**
+     * Computes the minimum number of clicks that solve a board.
+     *
+     * @param board the board.
+     * @param cancelled checked regularly, the search stops as soon as it returns true.
+     * @return the par, or -1 when the board has no solution, the search was cancelled or it exceeded
+     *         {@link #MAX_NODES}.
+     */
+    public static int par(BoardState board, BooleanSupplier cancelled) {
+        byte[] rotations = new BacktrackingSolver(MAX_NODES).solveMinimal(board, cancelled);
+        if (rotations == null) {
+            return -1;
+        }
+        int clicks = 0;
+        for (int i = 0; i < rotations.length; i++) {
+            clicks += (rotations[i] - board.rotation(i)) & 3;
+        }
+        return clicks;
+    }
+}
@@ -0,0 +1,28 @@
+package project.game;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JDK Flight Recorder event emitted for every power propagation ({@link Game#init()}).
+ */
+@Name("project.Propagation")
+@Label("Power Propagation")
+@Category({"Electrician", "Game"})
+@Description("Recomputation of the powered nodes of the board")
+public class PropagationEvent extends jdk.jfr.Event {
+    @Label("Rows")
+    public int rows;
+
+    @Label("Columns")
+    public int cols;
+
+    @Label("Nodes Visited")
+    public int nodesVisited;
+
+    @Label("Nodes Changed")
+    @Description("Nodes whose power state changed and whose observers were notified")
+    public int nodesChanged;
+}
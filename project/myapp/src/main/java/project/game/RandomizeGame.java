@@ -5,46 +5,88 @@ import javafx.animation.Timeline;
 import javafx.util.Duration;
 import project.common.*;
 
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
- * The {@link RandomizeGame} class handles the randomization of game elements 
- * in the game, including the initial randomization phase and the phase where 
+ * The {@link RandomizeGame} class handles the randomization of game elements
+ * in the game, including the initial randomization phase and the phase where
  * the game continues until no bulbs are turned on.
  * <p>
  * This class coordinates the game setup and randomization using a series of
  * timelines, actions, and subsequent game state checks.
+ * <p>
+ * The scramble is deterministic: it is computed up front from the level and a seed on a
+ * {@link BoardState} fork, and only then animated on the game. The same level and seed always give the
+ * same board, so the scrambled level is saved as its seed (see {@link SavedGame}) instead of a board dump.
  */
 public class RandomizeGame {
+    /** Version of the scramble algorithm, saved with the seed. Must change whenever {@link #plan} changes. */
+    public static final int ALGORITHM_VERSION = 1;
+
+    private static final int INITIAL_PICKS = 10;
+    private static final int MAX_PICKS = 10_000;
+
     private final Game game;
-    private final GameLoader loader;
-    private final Random random = new Random();
+    private final String levelPath;
+    private final long seed;
+    private final BoardState planned;
+    private final boolean reproducible;
+    private final Runnable onSaved;
+
+    /**
+     * Initializes the game randomization process with a random seed.
+     *
+     * @param game The game instance to randomize, only its non-empty nodes are rotated.
+     * @param levelPath The path of the level file of the game, or null when it has none.
+     * @see #RandomizeGame(Game, String, long, Runnable)
+     */
+    public RandomizeGame(Game game, String levelPath) {
+        this(game, levelPath, ThreadLocalRandom.current().nextLong(), null);
+    }
+
+    /**
+     * Initializes the game randomization process with a random seed.
+     *
+     * @param game The game instance to randomize, only its non-empty nodes are rotated.
+     * @param levelPath The path of the level file of the game, or null when it has none.
+     * @param onSaved Called once the scrambled level was saved, may be null.
+     * @see #RandomizeGame(Game, String, long, Runnable)
+     */
+    public RandomizeGame(Game game, String levelPath, Runnable onSaved) {
+        this(game, levelPath, ThreadLocalRandom.current().nextLong(), onSaved);
+    }
 
     /**
      * Initializes the game randomization process.
      * <p>
      * This method triggers the following sequence:
-     * 1. {@link #playInitialRandomization(Runnable)} starts the initial randomization.
-     * 2. Once the first phase finishes, {@link #playUntilNoBulbsOn(Runnable)} is triggered.
-     * 3. When all bulbs are off, the game data is saved via {@link #saveData()}.
-     * 
-     * @param game The game instance to randomize.
-     * @param loader The GameLoader instance used to load the game's initial state.
+     * 1. {@link #plan(BoardState, long)} computes all turns of the scramble.
+     * 2. {@link #playInitialRandomization(int[], Runnable)} animates the initial randomization.
+     * 3. Once the first phase finishes, {@link #playUntilNoBulbsOn(int[], Runnable)} animates the rest.
+     * 4. When all bulbs are off, the game data is saved via {@link #saveData()}.
+     *
+     * @param game The game instance to randomize, only its non-empty nodes are rotated.
+     * @param levelPath The path of the level file of the game, or null when it has none.
+     * @param seed The seed of the scramble.
+     * @param onSaved Called once the scrambled level was saved, may be null.
      */
-    public RandomizeGame(Game game, GameLoader loader) {
+    public RandomizeGame(Game game, String levelPath, long seed, Runnable onSaved) {
         this.game = game;
-        this.loader = loader;
+        this.levelPath = levelPath;
+        this.seed = seed;
+        this.onSaved = onSaved;
+        BoardState board = game.fork();
+        this.reproducible = levelPath != null && game.getTemplate() != null
+                && board.rotationsEqual(new BoardState(game.getTemplate()));
+        int[] plan = plan(board, seed);
+        this.planned = board;
 
         // Start phase 1
-        playInitialRandomization(() -> {
+        playInitialRandomization(plan, () -> {
             // Once phase 1 finishes, start phase 2
-            playUntilNoBulbsOn(() -> {
+            playUntilNoBulbsOn(plan, () -> {
                 // After phase 2 ends, save game data
                 saveData();
             });
@@ -52,26 +94,82 @@ public class RandomizeGame {
     }
 
     /**
-     * Executes the initial randomization phase where random positions are selected
-     * and nodes are rotated a random number of times.
-     * 
-     * @param onFinished Runnable callback to execute after the initial randomization phase.
+     * Returns the board a level is scrambled to with the given seed.
+     *
+     * @param template The level.
+     * @param seed The seed of the scramble.
+     * @return The scrambled board.
+     */
+    public static BoardState scramble(LevelTemplate template, long seed) {
+        BoardState board = new BoardState(template);
+        plan(board, seed);
+        return board;
+    }
+
+    /**
+     * Computes the scramble and applies it to the board. A pick rotates one random non-empty tile
+     * a random number of times. After {@value #INITIAL_PICKS} picks, tiles are picked until no bulb is on,
+     * but at most {@value #MAX_PICKS} times in total.
+     *
+     * @param board The board to scramble.
+     * @param seed The seed of the scramble.
+     * @return The picks in order, each encoded as {@code tileIndex << 2 | turns}.
      */
-    private void playInitialRandomization(Runnable onFinished) {
-        List<Runnable> actions = new ArrayList<>();
-        for (int i = 0; i < 10; i++) {
-            Position pos = loader.filledPositions.get(random.nextInt(loader.filledPositions.size()));
+    private static int[] plan(BoardState board, long seed) {
+        int[] filled = new int[board.topology().nodeCount()];
+        int count = 0;
+        for (int i = 0; i < board.size(); i++) {
+            if (board.type(i) != NodeType.EMPTY) {
+                filled[count++] = i;
+            }
+        }
+        if (count == 0) {
+            return new int[0];
+        }
+        Random random = new Random(seed);
+        int[] picks = new int[INITIAL_PICKS * 2];
+        int size = 0;
+        while (size < INITIAL_PICKS || (size < MAX_PICKS && board.someBulbsAreOn())) {
+            int index = filled[random.nextInt(count)];
             int turns = random.nextInt(4);
-            for (int j = 0; j < turns; j++) {
-                actions.add(() -> game.node(pos).turn());
+            board.setRotation(index, board.rotation(index) + turns);
+            if (size == picks.length) {
+                picks = Arrays.copyOf(picks, size * 2);
             }
+            picks[size++] = index << 2 | turns;
+        }
+        return Arrays.copyOf(picks, size);
+    }
+
+    /**
+     * Turns the node of a planned pick.
+     *
+     * @param pick The pick, see {@link #plan(BoardState, long)}.
+     */
+    private void turn(int pick) {
+        LevelTemplate topology = planned.topology();
+        int index = pick >>> 2;
+        GameNode node = game.node(new Position(topology.row(index), topology.col(index)));
+        for (int i = 0; i < (pick & 3); i++) {
+            node.turn();
         }
+    }
 
+    /**
+     * Animates the initial randomization phase, one turn at a time.
+     *
+     * @param plan The planned picks.
+     * @param onFinished Runnable callback to execute after the initial randomization phase.
+     */
+    private void playInitialRandomization(int[] plan, Runnable onFinished) {
         Timeline timeline = new Timeline();
         int delay = 200;
-        for (int i = 0; i < actions.size(); i++) {
-            Runnable action = actions.get(i);
-            timeline.getKeyFrames().add(new KeyFrame(Duration.millis(i * delay), e -> action.run()));
+        int frame = 0;
+        for (int i = 0; i < Math.min(INITIAL_PICKS, plan.length); i++) {
+            int single = plan[i] & ~3 | 1;
+            for (int j = 0; j < (plan[i] & 3); j++) {
+                timeline.getKeyFrames().add(new KeyFrame(Duration.millis(frame++ * delay), e -> turn(single)));
+            }
         }
 
         timeline.setOnFinished(e -> onFinished.run());
@@ -79,74 +177,43 @@ public class RandomizeGame {
     }
 
     /**
-     * Executes the second phase where random positions are rotated until no bulbs are on.
-     * 
+     * Animates the second phase, one pick at a time, until no bulbs are on.
+     *
+     * @param plan The planned picks.
      * @param onFinished Runnable callback to execute after all bulbs are off.
      */
-    private void playUntilNoBulbsOn(Runnable onFinished) {
+    private void playUntilNoBulbsOn(int[] plan, Runnable onFinished) {
+        if (plan.length <= INITIAL_PICKS) {
+            onFinished.run();
+            return;
+        }
         Timeline timeline = new Timeline();
-        timeline.setCycleCount(Timeline.INDEFINITE);
-    
-        KeyFrame keyFrame = new KeyFrame(Duration.millis(100), e -> {
-            if (!game.someBulbsAreOn()) {
-                timeline.stop();
-                // Invoke onFinished after stopping the animation
-                onFinished.run();
-                return;
-            }
-    
-            Position pos = loader.filledPositions.get(random.nextInt(loader.filledPositions.size()));
-            int turns = random.nextInt(4);
-            for (int i = 0; i < turns; i++) {
-                game.node(pos).turn();
-            }
-        });
-    
-        timeline.getKeyFrames().add(keyFrame);
+        int delay = 100;
+        for (int i = INITIAL_PICKS; i < plan.length; i++) {
+            int pick = plan[i];
+            timeline.getKeyFrames().add(new KeyFrame(Duration.millis((i - INITIAL_PICKS + 1) * delay), e -> turn(pick)));
+        }
+
+        timeline.setOnFinished(e -> onFinished.run());
         timeline.play();
     }
 
     /**
-     * Saves the current game state to a file for future use.
-     * 
-     * @throws IOException If an I/O error occurs during file writing.
+     * Saves the scrambled level for future use. When the board is exactly the one reproduced from the level
+     * and the seed, only the seed is saved. Otherwise, for example when the player turned tiles during the
+     * animation, the rotations of the tiles are saved, or the whole board when the game has no level file.
      */
     private void saveData() {
-        try {
-            File file = new File("data/currentLevel/levelData.txt");
-            BufferedWriter writer = new BufferedWriter(new FileWriter(file));
-
-            // Write to file
-            writer.write(game.rows() + " " + game.cols() + "\n");
-            for (int r = 1; r <= game.rows(); r++) {
-                for (int c = 1; c <= game.cols(); c++) {
-                    GameNode[][] node = game.getGame();
-                    if (node[r][c].getType() != NodeType.EMPTY) {
-                        writer.write(node[r][c].toString() + "\n");
-                    }
-                }
-            }
-             // Close file writer
-            writer.close();
-            removeUnnecessaryData();
-        } catch (IOException e) {
-            e.printStackTrace();
+        BoardState current = game.snapshot();
+        if (reproducible && current.rotationsEqual(planned)) {
+            SavedGame.saveScramble(levelPath, seed);
+        } else if (levelPath != null && game.getTemplate() != null) {
+            SavedGame.saveDelta(levelPath, current);
+        } else {
+            SavedGame.saveBoard(current);
         }
-    }
-
-
-     /**
-     * Removes unnecessary data by clearing the steps file after saving the game state.
-     * 
-     * @throws IOException If an I/O error occurs while clearing the file.
-     */
-    private void removeUnnecessaryData(){
-        try {
-            FileWriter writer = new FileWriter("data/currentLevel/steps.txt");
-            writer.write("");
-            writer.close();
-        } catch (IOException e) {
-            System.err.println(e.getMessage());
+        if (onSaved != null) {
+            onSaved.run();
         }
     }
-}
\ No newline at end of file
+}
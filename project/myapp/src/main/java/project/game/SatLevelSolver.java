@@ -0,0 +1,320 @@
+package project.game;
+
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntPredicate;
+
+import project.common.NodeType;
+import project.common.Side;
+
+/**
+ * The {@link SatLevelSolver} class solves boards by encoding them as a SAT formula for the embedded
+ * {@link SatSolver}.
+ * <p>
+ * Every node has one variable per distinct connector mask it can take, exactly one of which is true.
+ * Every pair of neighbouring nodes that can face each other has a link variable, which implies that both
+ * of them face each other. The connectivity of the board is added lazily as cut constraints: every node
+ * needs a link, and whenever a found assignment leaves a group of connected nodes without power, some link
+ * must leave that group in every solution, so a clause over those links is added and the search goes on
+ * with everything it learnt. Each such clause rules out the assignment it was derived from, so the loop
+ * ends with a powered board or with an unsatisfiable formula.
+ * <p>
+ * The variable of the current connector mask of every tile is preferred, so solutions stay close to the
+ * board. Unlike the {@link BacktrackingSolver} the search is not led by the power, which makes it robust on
+ * boards with many loops and on boards whose dead ends show up late.
+ */
+public final class SatLevelSolver implements LevelSolver {
+    private static final Side[] SIDES = Side.values();
+
+    @Override
+    public byte[] solve(BoardState board, BooleanSupplier cancelled) {
+        return new Encoding(board).solve(cancelled);
+    }
+
+    /**
+     * The formula of one board.
+     */
+    private static final class Encoding {
+        private final BoardState board;
+        private final LevelTemplate topology;
+        private final SatSolver sat = new SatSolver();
+        /** First variable of the masks of every tile, -1 for empty tiles. */
+        private final int[] firstVar;
+        /** Rotations of the distinct masks of every tile, starting with the current one. */
+        private final int[][] rotations;
+        /** {@code links[tile * 4 + side]}: the link variable across that side, or -1. */
+        private final int[] links;
+        private final int[] component;
+        private final int[] queue;
+
+        Encoding(BoardState board) {
+            this.board = board;
+            this.topology = board.topology();
+            int size = board.size();
+            this.firstVar = new int[size];
+            this.rotations = new int[size][];
+            this.links = new int[size * 4];
+            this.component = new int[size];
+            this.queue = new int[size];
+            Arrays.fill(firstVar, -1);
+            Arrays.fill(links, -1);
+        }
+
+        /**
+         * Solves the board.
+         *
+         * @param cancelled the cancellation check.
+         * @return the rotations of a solution, or null.
+         */
+        byte[] solve(BooleanSupplier cancelled) {
+            if (topology.nodeCount() == 0) {
+                return rotationsOf(false);
+            }
+            if (topology.sourceIndex() < 0 || !encode()) {
+                return null;
+            }
+            while (true) {
+                int status = sat.solve(cancelled);
+                if (status != SatSolver.SATISFIABLE) {
+                    return null;
+                }
+                int[] masks = new int[board.size()];
+                for (int i = 0; i < masks.length; i++) {
+                    masks[i] = firstVar[i] < 0 ? 0 : Side.rotateMask(topology.mask(i), rotations[i][chosen(i)]);
+                }
+                if (!addCuts(masks)) {
+                    return rotationsOf(true);
+                }
+            }
+        }
+
+        /**
+         * Adds the variables and the clauses known up front.
+         *
+         * @return false when the formula is already unsatisfiable.
+         */
+        private boolean encode() {
+            for (int i = 0; i < board.size(); i++) {
+                if (topology.type(i) == NodeType.EMPTY) {
+                    continue;
+                }
+                rotations[i] = distinctRotations(i);
+                firstVar[i] = sat.vars();
+                int[] atLeastOne = new int[rotations[i].length];
+                for (int k = 0; k < rotations[i].length; k++) {
+                    int var = sat.newVar();
+                    atLeastOne[k] = SatSolver.literal(var, true);
+                }
+                sat.setPhase(firstVar[i], true);
+                if (!sat.addClause(atLeastOne)) {
+                    return false;
+                }
+                for (int a = 0; a < atLeastOne.length; a++) {
+                    for (int b = a + 1; b < atLeastOne.length; b++) {
+                        if (!sat.addClause(atLeastOne[a] ^ 1, atLeastOne[b] ^ 1)) {
+                            return false;
+                        }
+                    }
+                }
+            }
+            for (int i = 0; i < board.size(); i++) {
+                if (firstVar[i] < 0) {
+                    continue;
+                }
+                for (Side side : new Side[] {Side.EAST, Side.SOUTH}) {
+                    int neighbor = board.neighbor(i, side);
+                    if (neighbor < 0 || firstVar[neighbor] < 0) {
+                        continue;
+                    }
+                    int[] here = facing(i, side);
+                    int[] there = facing(neighbor, side.opposite());
+                    if (here.length == 0 || there.length == 0) {
+                        continue;
+                    }
+                    int link = sat.newVar();
+                    links[i * 4 + side.ordinal()] = link;
+                    links[neighbor * 4 + side.opposite().ordinal()] = link;
+                    if (!sat.addClause(implies(link, here)) || !sat.addClause(implies(link, there))) {
+                        return false;
+                    }
+                }
+            }
+            if (topology.nodeCount() == 1) {
+                return true;
+            }
+            // a single node is a group without power unless it has a link
+            for (int i = 0; i < board.size(); i++) {
+                if (firstVar[i] < 0) {
+                    continue;
+                }
+                int[] clause = new int[4];
+                int count = 0;
+                for (Side side : SIDES) {
+                    if (links[i * 4 + side.ordinal()] >= 0) {
+                        clause[count++] = SatSolver.literal(links[i * 4 + side.ordinal()], true);
+                    }
+                }
+                if (!sat.addClause(Arrays.copyOf(clause, count))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @param tile a node.
+         * @return the index of the mask variable that is true for the node in the found assignment.
+         */
+        private int chosen(int tile) {
+            for (int k = 0; k < rotations[tile].length; k++) {
+                if (sat.value(firstVar[tile] + k)) {
+                    return k;
+                }
+            }
+            throw new IllegalStateException("no mask chosen for tile " + tile);
+        }
+
+        /**
+         * Finds the groups of connected nodes without power in an assignment and adds a cut clause for each
+         * of them and for the powered group.
+         *
+         * @param masks the connector mask of every tile in the assignment.
+         * @return false when all nodes are powered.
+         */
+        private boolean addCuts(int[] masks) {
+            Arrays.fill(component, -1);
+            int source = topology.sourceIndex();
+            int powered = flood(masks, source, 0);
+            if (powered == topology.nodeCount()) {
+                return false;
+            }
+            sat.addClause(cut(tile -> component[tile] == 0));
+            int groups = 1;
+            for (int i = 0; i < board.size(); i++) {
+                if (firstVar[i] >= 0 && component[i] < 0) {
+                    int group = groups++;
+                    flood(masks, i, group);
+                    sat.addClause(cut(tile -> component[tile] == group));
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Marks the nodes connected to a node in an assignment.
+         *
+         * @param masks the connector mask of every tile.
+         * @param start the node.
+         * @param group the mark.
+         * @return the number of marked nodes.
+         */
+        private int flood(int[] masks, int start, int group) {
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = start;
+            component[start] = group;
+            while (head < tail) {
+                int tile = queue[head++];
+                for (Side side : SIDES) {
+                    if ((masks[tile] & side.bit()) == 0) {
+                        continue;
+                    }
+                    int neighbor = board.neighbor(tile, side);
+                    if (neighbor >= 0 && component[neighbor] < 0 && firstVar[neighbor] >= 0
+                            && (masks[neighbor] & side.opposite().bit()) != 0) {
+                        component[neighbor] = group;
+                        queue[tail++] = neighbor;
+                    }
+                }
+            }
+            return tail;
+        }
+
+        /**
+         * Builds the clause requiring a link out of a group of nodes.
+         *
+         * @param inGroup tells whether a tile belongs to the group.
+         * @return the positive literals of the links leaving the group.
+         */
+        private int[] cut(IntPredicate inGroup) {
+            int[] literals = new int[16];
+            int count = 0;
+            for (int i = 0; i < board.size(); i++) {
+                if (firstVar[i] < 0 || !inGroup.test(i)) {
+                    continue;
+                }
+                for (Side side : SIDES) {
+                    int link = links[i * 4 + side.ordinal()];
+                    if (link >= 0 && !inGroup.test(board.neighbor(i, side))) {
+                        if (count == literals.length) {
+                            literals = Arrays.copyOf(literals, count * 2);
+                        }
+                        literals[count++] = SatSolver.literal(link, true);
+                    }
+                }
+            }
+            return Arrays.copyOf(literals, count);
+        }
+
+        /**
+         * @param link a link variable.
+         * @param masks the mask variables of a node facing the link.
+         * @return the clause "link implies one of the masks".
+         */
+        private static int[] implies(int link, int[] masks) {
+            int[] clause = new int[masks.length + 1];
+            clause[0] = SatSolver.literal(link, false);
+            for (int k = 0; k < masks.length; k++) {
+                clause[k + 1] = SatSolver.literal(masks[k], true);
+            }
+            return clause;
+        }
+
+        /**
+         * @param tile a node.
+         * @param side a side.
+         * @return the mask variables of the node that have a connector on that side.
+         */
+        private int[] facing(int tile, Side side) {
+            int[] vars = new int[rotations[tile].length];
+            int count = 0;
+            for (int k = 0; k < rotations[tile].length; k++) {
+                if ((Side.rotateMask(topology.mask(tile), rotations[tile][k]) & side.bit()) != 0) {
+                    vars[count++] = firstVar[tile] + k;
+                }
+            }
+            return Arrays.copyOf(vars, count);
+        }
+
+        /**
+         * @param tile a node.
+         * @return one rotation per distinct connector mask, in the order of the turns they need from the board.
+         */
+        private int[] distinctRotations(int tile) {
+            int[] result = new int[4];
+            int count = 0;
+            int seen = 0;
+            for (int k = 0; k < 4; k++) {
+                int rotation = (board.rotation(tile) + k) & 3;
+                int mask = Side.rotateMask(topology.mask(tile), rotation);
+                if ((seen & 1 << mask) == 0) {
+                    seen |= 1 << mask;
+                    result[count++] = rotation;
+                }
+            }
+            return Arrays.copyOf(result, count);
+        }
+
+        /**
+         * @param solved whether to take the rotations of the found assignment or of the current board.
+         * @return the rotation of every tile.
+         */
+        private byte[] rotationsOf(boolean solved) {
+            byte[] result = new byte[board.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = (byte) (!solved || firstVar[i] < 0 ? board.rotation(i) : rotations[i][chosen(i)]);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,620 @@
+package project.game;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The {@link SatSolver} class is a small conflict-driven clause learning (CDCL) SAT solver used by the
+ * {@link SatLevelSolver}.
+ * <p>
+ * Variables are numbered from 0; the literal of variable {@code v} is {@code 2v}, its negation {@code 2v + 1}
+ * (see {@link #literal(int, boolean)}). Clauses are watched by two literals, conflicts are analyzed to the
+ * first unique implication point and the learnt clause is minimized locally. Decisions follow the most
+ * active variable (VSIDS) with its saved phase, the search restarts after a Luby sequence of conflicts, and
+ * half of the less active learnt clauses are dropped whenever there are too many of them.
+ * <p>
+ * The solver is incremental: after {@link #solve(BooleanSupplier)} more clauses may be added and the search
+ * continues with everything learnt so far. It is not thread-safe.
+ */
+final class SatSolver {
+    /** The formula is satisfiable, see {@link #value(int)}. */
+    static final int SATISFIABLE = 1;
+    /** The formula is unsatisfiable. */
+    static final int UNSATISFIABLE = 0;
+    /** The search was cancelled. */
+    static final int UNKNOWN = -1;
+
+    private static final int RESTART_BASE = 100;
+    private static final double VAR_DECAY = 0.95;
+    private static final double CLAUSE_DECAY = 0.999;
+
+    private int vars;
+    private byte[] assigns = new byte[16];
+    private int[] level = new int[16];
+    private Clause[] reason = new Clause[16];
+    private boolean[] phase = new boolean[16];
+    private byte[] seen = new byte[16];
+    private double[] activity = new double[16];
+    private Clause[][] watches = new Clause[32][];
+    private int[] watchCount = new int[32];
+    private int[] trail = new int[16];
+    private int trailSize;
+    private int[] trailLim = new int[16];
+    private int decisionLevel;
+    private int qhead;
+    private final VarHeap heap = new VarHeap();
+    private final List<Clause> learnts = new ArrayList<>();
+    private int clauseCount;
+    private double varInc = 1;
+    private double clauseInc = 1;
+    private double maxLearnts;
+    private boolean ok = true;
+    private boolean[] model;
+    private long conflicts;
+    private long decisions;
+
+    /**
+     * A clause; the first two literals are watched, the first one is implied when the clause is a reason.
+     */
+    private static final class Clause {
+        final int[] lits;
+        final boolean learnt;
+        double activity;
+        boolean deleted;
+
+        Clause(int[] lits, boolean learnt) {
+            this.lits = lits;
+            this.learnt = learnt;
+        }
+    }
+
+    /**
+     * @param var a variable.
+     * @param positive whether the literal is the variable or its negation.
+     * @return the literal.
+     */
+    static int literal(int var, boolean positive) {
+        return positive ? var << 1 : var << 1 | 1;
+    }
+
+    /**
+     * Adds a variable.
+     *
+     * @return the new variable.
+     */
+    int newVar() {
+        int var = vars++;
+        if (var == assigns.length) {
+            int capacity = assigns.length * 2;
+            assigns = Arrays.copyOf(assigns, capacity);
+            level = Arrays.copyOf(level, capacity);
+            reason = Arrays.copyOf(reason, capacity);
+            phase = Arrays.copyOf(phase, capacity);
+            seen = Arrays.copyOf(seen, capacity);
+            activity = Arrays.copyOf(activity, capacity);
+            trail = Arrays.copyOf(trail, capacity);
+            trailLim = Arrays.copyOf(trailLim, capacity);
+            watches = Arrays.copyOf(watches, capacity * 2);
+            watchCount = Arrays.copyOf(watchCount, capacity * 2);
+        }
+        heap.insert(var);
+        return var;
+    }
+
+    /**
+     * @return the number of variables.
+     */
+    int vars() {
+        return vars;
+    }
+
+    /**
+     * @return the number of conflicts so far.
+     */
+    long conflicts() {
+        return conflicts;
+    }
+
+    /**
+     * @return the number of decisions so far.
+     */
+    long decisions() {
+        return decisions;
+    }
+
+    /**
+     * Sets the value a variable takes first when the search decides it.
+     *
+     * @param var the variable.
+     * @param value the preferred value.
+     */
+    void setPhase(int var, boolean value) {
+        phase[var] = value;
+    }
+
+    /**
+     * Adds a clause.
+     *
+     * @param lits the literals of the clause, see {@link #literal(int, boolean)}.
+     * @return false when the formula became unsatisfiable.
+     */
+    boolean addClause(int... lits) {
+        if (!ok) {
+            return false;
+        }
+        int[] sorted = lits.clone();
+        Arrays.sort(sorted);
+        int size = 0;
+        int previous = -1;
+        for (int lit : sorted) {
+            int value = litValue(lit);
+            if (value > 0 || lit == (previous ^ 1)) {
+                return true;
+            }
+            if (value == 0 && lit != previous) {
+                sorted[size++] = lit;
+                previous = lit;
+            }
+        }
+        if (size == 0) {
+            ok = false;
+        } else if (size == 1) {
+            enqueue(sorted[0], null);
+            ok = propagate() == null;
+        } else {
+            Clause clause = new Clause(Arrays.copyOf(sorted, size), false);
+            attach(clause);
+            clauseCount++;
+        }
+        return ok;
+    }
+
+    /**
+     * Searches for an assignment that satisfies all clauses.
+     *
+     * @param cancelled checked regularly, the search stops as soon as it returns true.
+     * @return {@link #SATISFIABLE}, {@link #UNSATISFIABLE} or {@link #UNKNOWN} when cancelled.
+     */
+    int solve(BooleanSupplier cancelled) {
+        model = null;
+        if (!ok) {
+            return UNSATISFIABLE;
+        }
+        maxLearnts = Math.max(clauseCount / 3.0, 1000);
+        for (int restart = 0; ; restart++) {
+            int status = search(luby(restart) * RESTART_BASE, cancelled);
+            if (status != UNKNOWN) {
+                return status;
+            }
+            if (cancelled.getAsBoolean()) {
+                return UNKNOWN;
+            }
+            maxLearnts *= 1.1;
+        }
+    }
+
+    /**
+     * @param var a variable.
+     * @return its value in the assignment found by the last successful {@link #solve(BooleanSupplier)}.
+     */
+    boolean value(int var) {
+        return model[var];
+    }
+
+    /**
+     * Searches until a result or a number of conflicts.
+     *
+     * @param maxConflicts the conflicts after which the search restarts.
+     * @param cancelled the cancellation check.
+     * @return the status, {@link #UNKNOWN} for a restart or cancellation.
+     */
+    private int search(long maxConflicts, BooleanSupplier cancelled) {
+        long restartConflicts = 0;
+        int[] learnt = new int[16];
+        while (true) {
+            Clause conflict = propagate();
+            if (conflict != null) {
+                conflicts++;
+                restartConflicts++;
+                if (decisionLevel == 0) {
+                    ok = false;
+                    return UNSATISFIABLE;
+                }
+                learnt = analyze(conflict, learnt);
+                int size = learnt[learnt.length - 1];
+                cancelUntil(size == 1 ? 0 : level[learnt[1] >> 1]);
+                if (size == 1) {
+                    enqueue(learnt[0], null);
+                } else {
+                    Clause clause = new Clause(Arrays.copyOf(learnt, size), true);
+                    attach(clause);
+                    learnts.add(clause);
+                    bumpClause(clause);
+                    enqueue(learnt[0], clause);
+                }
+                varInc /= VAR_DECAY;
+                clauseInc /= CLAUSE_DECAY;
+                continue;
+            }
+            if (restartConflicts >= maxConflicts || ((decisions & 255) == 0 && cancelled.getAsBoolean())) {
+                cancelUntil(0);
+                return UNKNOWN;
+            }
+            if (learnts.size() - trailSize >= maxLearnts) {
+                reduceLearnts();
+            }
+            int next = pickBranch();
+            if (next < 0) {
+                model = new boolean[vars];
+                for (int v = 0; v < vars; v++) {
+                    model[v] = assigns[v] > 0;
+                }
+                cancelUntil(0);
+                return SATISFIABLE;
+            }
+            decisions++;
+            trailLim[decisionLevel++] = trailSize;
+            enqueue(next, null);
+        }
+    }
+
+    /**
+     * @param lit a literal.
+     * @return 1 when it is true, -1 when it is false, 0 when its variable is unassigned.
+     */
+    private int litValue(int lit) {
+        int value = assigns[lit >> 1];
+        return (lit & 1) == 0 ? value : -value;
+    }
+
+    /**
+     * Assigns a literal true.
+     *
+     * @param lit the literal.
+     * @param cause the clause that implies it, or null for a decision or a unit clause.
+     */
+    private void enqueue(int lit, Clause cause) {
+        int var = lit >> 1;
+        assigns[var] = (byte) ((lit & 1) == 0 ? 1 : -1);
+        level[var] = decisionLevel;
+        reason[var] = cause;
+        trail[trailSize++] = lit;
+    }
+
+    /**
+     * Starts watching the first two literals of a clause.
+     *
+     * @param clause the clause.
+     */
+    private void attach(Clause clause) {
+        watch(clause.lits[0], clause);
+        watch(clause.lits[1], clause);
+    }
+
+    private void watch(int lit, Clause clause) {
+        Clause[] list = watches[lit];
+        if (list == null) {
+            list = watches[lit] = new Clause[4];
+        } else if (watchCount[lit] == list.length) {
+            list = watches[lit] = Arrays.copyOf(list, list.length * 2);
+        }
+        list[watchCount[lit]++] = clause;
+    }
+
+    /**
+     * Propagates all assignments on the trail.
+     *
+     * @return a clause with all literals false, or null.
+     */
+    private Clause propagate() {
+        while (qhead < trailSize) {
+            int falseLit = trail[qhead++] ^ 1;
+            Clause[] list = watches[falseLit];
+            int count = watchCount[falseLit];
+            int i = 0;
+            int j = 0;
+            while (i < count) {
+                Clause clause = list[i++];
+                if (clause.deleted) {
+                    continue;
+                }
+                int[] lits = clause.lits;
+                if (lits[0] == falseLit) {
+                    lits[0] = lits[1];
+                    lits[1] = falseLit;
+                }
+                if (litValue(lits[0]) > 0) {
+                    list[j++] = clause;
+                    continue;
+                }
+                boolean moved = false;
+                for (int k = 2; k < lits.length; k++) {
+                    if (litValue(lits[k]) >= 0) {
+                        lits[1] = lits[k];
+                        lits[k] = falseLit;
+                        watch(lits[1], clause);
+                        moved = true;
+                        break;
+                    }
+                }
+                if (moved) {
+                    continue;
+                }
+                list[j++] = clause;
+                if (litValue(lits[0]) < 0) {
+                    while (i < count) {
+                        list[j++] = list[i++];
+                    }
+                    watchCount[falseLit] = j;
+                    qhead = trailSize;
+                    return clause;
+                }
+                enqueue(lits[0], clause);
+            }
+            watchCount[falseLit] = j;
+        }
+        return null;
+    }
+
+    /**
+     * Derives a learnt clause from a conflict: the asserting literal first, the literal of the highest
+     * remaining level second.
+     *
+     * @param conflict the conflicting clause.
+     * @param learnt a buffer for the clause, reused when large enough.
+     * @return the buffer holding the clause, its size in the last element.
+     */
+    private int[] analyze(Clause conflict, int[] learnt) {
+        if (learnt.length < vars + 1) {
+            learnt = new int[vars + 1];
+        }
+        int size = 1;
+        int pathCount = 0;
+        int lit = -1;
+        int index = trailSize - 1;
+        Clause clause = conflict;
+        do {
+            if (clause.learnt) {
+                bumpClause(clause);
+            }
+            int[] lits = clause.lits;
+            for (int k = lit < 0 ? 0 : 1; k < lits.length; k++) {
+                int var = lits[k] >> 1;
+                if (seen[var] == 0 && level[var] > 0) {
+                    bumpVar(var);
+                    seen[var] = 1;
+                    if (level[var] >= decisionLevel) {
+                        pathCount++;
+                    } else {
+                        learnt[size++] = lits[k];
+                    }
+                }
+            }
+            while (seen[trail[index] >> 1] == 0) {
+                index--;
+            }
+            lit = trail[index--];
+            clause = reason[lit >> 1];
+            seen[lit >> 1] = 0;
+            pathCount--;
+        } while (pathCount > 0);
+        learnt[0] = lit ^ 1;
+
+        // drop literals implied by the other literals of the clause
+        int kept = 1;
+        for (int k = 1; k < size; k++) {
+            Clause cause = reason[learnt[k] >> 1];
+            boolean redundant = cause != null;
+            if (redundant) {
+                for (int m = 1; m < cause.lits.length; m++) {
+                    int var = cause.lits[m] >> 1;
+                    if (seen[var] == 0 && level[var] > 0) {
+                        redundant = false;
+                        break;
+                    }
+                }
+            }
+            if (!redundant) {
+                int swap = learnt[kept];
+                learnt[kept++] = learnt[k];
+                learnt[k] = swap;
+            }
+        }
+        for (int k = 1; k < size; k++) {
+            seen[learnt[k] >> 1] = 0;
+        }
+        size = kept;
+        if (size > 1) {
+            int highest = 1;
+            for (int k = 2; k < size; k++) {
+                if (level[learnt[k] >> 1] > level[learnt[highest] >> 1]) {
+                    highest = k;
+                }
+            }
+            int swap = learnt[1];
+            learnt[1] = learnt[highest];
+            learnt[highest] = swap;
+        }
+        learnt[learnt.length - 1] = size;
+        return learnt;
+    }
+
+    /**
+     * Undoes all assignments above a decision level, saving their phases.
+     *
+     * @param target the decision level to keep.
+     */
+    private void cancelUntil(int target) {
+        if (decisionLevel <= target) {
+            return;
+        }
+        for (int c = trailSize - 1; c >= trailLim[target]; c--) {
+            int var = trail[c] >> 1;
+            phase[var] = (trail[c] & 1) == 0;
+            assigns[var] = 0;
+            reason[var] = null;
+            heap.insert(var);
+        }
+        trailSize = trailLim[target];
+        qhead = trailSize;
+        decisionLevel = target;
+    }
+
+    /**
+     * @return the literal of the most active unassigned variable in its saved phase, or -1 when all are assigned.
+     */
+    private int pickBranch() {
+        while (!heap.isEmpty()) {
+            int var = heap.removeMax();
+            if (assigns[var] == 0) {
+                return literal(var, phase[var]);
+            }
+        }
+        return -1;
+    }
+
+    private void bumpVar(int var) {
+        if ((activity[var] += varInc) > 1e100) {
+            for (int v = 0; v < vars; v++) {
+                activity[v] *= 1e-100;
+            }
+            varInc *= 1e-100;
+        }
+        heap.increased(var);
+    }
+
+    private void bumpClause(Clause clause) {
+        if ((clause.activity += clauseInc) > 1e20) {
+            for (Clause learnt : learnts) {
+                learnt.activity *= 1e-20;
+            }
+            clauseInc *= 1e-20;
+        }
+    }
+
+    /**
+     * Deletes the less active half of the learnt clauses, except binary ones and reasons of assignments.
+     * Deleted clauses are dropped from the watch lists by {@link #propagate()}.
+     */
+    private void reduceLearnts() {
+        learnts.sort((a, b) -> Double.compare(a.activity, b.activity));
+        int half = learnts.size() / 2;
+        int kept = 0;
+        for (int i = 0; i < learnts.size(); i++) {
+            Clause clause = learnts.get(i);
+            int[] lits = clause.lits;
+            boolean locked = reason[lits[0] >> 1] == clause && litValue(lits[0]) > 0;
+            if (i < half && lits.length > 2 && !locked) {
+                clause.deleted = true;
+            } else {
+                learnts.set(kept++, clause);
+            }
+        }
+        learnts.subList(kept, learnts.size()).clear();
+    }
+
+    /**
+     * @param i the index in the sequence, from 0.
+     * @return the element of the Luby sequence 1, 1, 2, 1, 1, 2, 4, ...
+     */
+    private static long luby(int i) {
+        int size = 1;
+        int seq = 0;
+        while (size < i + 1) {
+            seq++;
+            size = 2 * size + 1;
+        }
+        while (size - 1 != i) {
+            size = (size - 1) >> 1;
+            seq--;
+            i = i % size;
+        }
+        return 1L << seq;
+    }
+
+    /**
+     * A binary max-heap of variables ordered by activity.
+     */
+    private final class VarHeap {
+        private int[] heap = new int[16];
+        private int[] position = new int[0];
+        private int size;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void insert(int var) {
+            if (var >= position.length) {
+                int old = position.length;
+                position = Arrays.copyOf(position, Math.max(16, var * 2 + 1));
+                Arrays.fill(position, old, position.length, -1);
+            }
+            if (position[var] >= 0) {
+                return;
+            }
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, size * 2);
+            }
+            heap[size] = var;
+            position[var] = size;
+            up(size++);
+        }
+
+        void increased(int var) {
+            if (var < position.length && position[var] >= 0) {
+                up(position[var]);
+            }
+        }
+
+        int removeMax() {
+            int top = heap[0];
+            position[top] = -1;
+            int last = heap[--size];
+            if (size > 0) {
+                heap[0] = last;
+                position[last] = 0;
+                down(0);
+            }
+            return top;
+        }
+
+        private void up(int i) {
+            int var = heap[i];
+            while (i > 0) {
+                int parent = (i - 1) >> 1;
+                if (activity[heap[parent]] >= activity[var]) {
+                    break;
+                }
+                heap[i] = heap[parent];
+                position[heap[i]] = i;
+                i = parent;
+            }
+            heap[i] = var;
+            position[var] = i;
+        }
+
+        private void down(int i) {
+            int var = heap[i];
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && activity[heap[child + 1]] > activity[heap[child]]) {
+                    child++;
+                }
+                if (activity[heap[child]] <= activity[var]) {
+                    break;
+                }
+                heap[i] = heap[child];
+                position[heap[i]] = i;
+                i = child;
+            }
+            heap[i] = var;
+            position[var] = i;
+        }
+    }
+}
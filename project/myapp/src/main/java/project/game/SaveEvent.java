@@ -0,0 +1,40 @@
+package project.game;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JDK Flight Recorder event emitted when game data is written to disk.
+ */
+@Name("project.Save")
+@Label("Game Save")
+@Category({"Electrician", "I/O"})
+@Description("Write of the level data or of the step journal")
+public class SaveEvent extends jdk.jfr.Event {
+    @Label("Path")
+    public String path;
+
+    @Label("Kind")
+    @Description("levelData for a board dump, delta for a rotation save, steps for a step journal entry")
+    public String kind;
+
+    @Label("Rows")
+    public int rows;
+
+    @Label("Columns")
+    public int cols;
+
+    @Label("Row")
+    @Description("Row of the tile for a step journal entry")
+    public int row;
+
+    @Label("Column")
+    @Description("Column of the tile for a step journal entry")
+    public int col;
+
+    @Label("Nodes")
+    @Description("Number of nodes written")
+    public int nodes;
+}
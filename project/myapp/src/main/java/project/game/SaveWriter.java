@@ -0,0 +1,254 @@
+package project.game;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The {@link SaveWriter} class writes save files on a single background thread, so saving never blocks
+ * the JavaFX Application Thread.
+ * <p>
+ * Writes run in the order they were issued. A whole file is written into a temporary file next to it,
+ * forced to disk and atomically renamed over the old one, so a crash leaves either the old or the new
+ * save, never a truncated one. A replacement of a file that is still waiting is coalesced with the
+ * waiting one: only the latest content is written. Appends and deletions are never coalesced, and no
+ * replacement is moved across them, so files that depend on each other stay consistent on disk.
+ * <p>
+ * The content is produced on the writer thread, so callers pass an immutable snapshot of what they save
+ * (for example a {@link BoardState#snapshot()}) rather than live game objects.
+ */
+public final class SaveWriter {
+    private static final SaveWriter SHARED = new SaveWriter();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "save-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<Path, PendingReplace> pending = new HashMap<>();
+
+    /**
+     * Produces the content of a save file on the writer thread.
+     */
+    @FunctionalInterface
+    public interface Content {
+        /**
+         * Writes the content.
+         *
+         * @param writer the destination, flushed and closed by the caller.
+         * @throws IOException If writing fails.
+         */
+        void writeTo(Writer writer) throws IOException;
+    }
+
+    /**
+     * Produces the content of a binary save file on the writer thread.
+     */
+    @FunctionalInterface
+    public interface BinaryContent {
+        /**
+         * Encodes the content.
+         *
+         * @return the bytes to write, from the position to the limit of the buffer.
+         * @throws IOException If the content cannot be produced.
+         */
+        ByteBuffer encode() throws IOException;
+    }
+
+    /**
+     * Writes the body of a replaced file into its temporary file.
+     */
+    @FunctionalInterface
+    private interface Body {
+        void writeTo(FileChannel channel) throws IOException;
+    }
+
+    /**
+     * A replacement of a file that has not been written yet. Its body is swapped when the same file
+     * is replaced again before the writer thread gets to it.
+     */
+    private static final class PendingReplace {
+        private Body body;
+
+        private PendingReplace(Body body) {
+            this.body = body;
+        }
+    }
+
+    /**
+     * @return the writer shared by the whole application.
+     */
+    public static SaveWriter shared() {
+        return SHARED;
+    }
+
+    /**
+     * Schedules an atomic replacement of a text file. When a replacement of the same file is still waiting,
+     * its content is replaced instead and only one write happens.
+     *
+     * @param file the file to replace.
+     * @param content produces the new content of the file.
+     */
+    public void replace(Path file, Content content) {
+        schedule(file, channel -> {
+            Writer writer = Channels.newWriter(channel, StandardCharsets.UTF_8);
+            content.writeTo(writer);
+            writer.flush();
+        });
+    }
+
+    /**
+     * Schedules an atomic replacement of a binary file, coalesced like {@link #replace(Path, Content)}.
+     *
+     * @param file the file to replace.
+     * @param content produces the new content of the file.
+     */
+    public void replaceBinary(Path file, BinaryContent content) {
+        schedule(file, channel -> {
+            ByteBuffer buffer = content.encode();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        });
+    }
+
+    /**
+     * Schedules an atomic replacement of a file, or swaps the body of a waiting one.
+     *
+     * @param file the file to replace.
+     * @param body writes the new content of the file.
+     */
+    private void schedule(Path file, Body body) {
+        synchronized (pending) {
+            PendingReplace waiting = pending.get(file);
+            if (waiting != null) {
+                waiting.body = body;
+                return;
+            }
+            PendingReplace replace = new PendingReplace(body);
+            pending.put(file, replace);
+            executor.execute(() -> {
+                Body latest;
+                synchronized (pending) {
+                    pending.remove(file, replace);
+                    latest = replace.body;
+                }
+                run(file, () -> writeAtomically(file, latest));
+            });
+        }
+    }
+
+    /**
+     * Schedules an append to a file, after every write issued so far.
+     *
+     * @param file the file to append to, created if it does not exist.
+     * @param content produces the appended text.
+     */
+    public void append(Path file, Content content) {
+        synchronized (pending) {
+            // a later replacement must not be merged into one issued before this append
+            pending.clear();
+            executor.execute(() -> run(file, () -> {
+                try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    content.writeTo(writer);
+                }
+            }));
+        }
+    }
+
+    /**
+     * Schedules the deletion of a file, after every write issued so far.
+     *
+     * @param file the file to delete, nothing happens when it does not exist.
+     */
+    public void delete(Path file) {
+        synchronized (pending) {
+            pending.clear();
+            executor.execute(() -> run(file, () -> Files.deleteIfExists(file)));
+        }
+    }
+
+    /**
+     * Waits until every write issued so far is on disk.
+     */
+    public void flush() {
+        Future<?> barrier = executor.submit(() -> { });
+        try {
+            barrier.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Runs one write, reporting failures and recording the save metrics.
+     *
+     * @param file the written file.
+     * @param write the write.
+     */
+    private static void run(Path file, IOAction write) {
+        long start = GameMetrics.start();
+        try {
+            Path dir = file.toAbsolutePath().getParent();
+            if (dir != null) {
+                Files.createDirectories(dir);
+            }
+            write.run();
+        } catch (IOException | RuntimeException e) {
+            System.err.println("Saving " + file + " failed: " + e);
+        }
+        GameMetrics.count(GameMetrics.Counter.SAVES);
+        GameMetrics.stop(GameMetrics.Timer.SAVE, start);
+    }
+
+    /**
+     * Writes a file into a temporary file in the same directory and renames it over the target.
+     *
+     * @param file the file to replace.
+     * @param body writes the new content.
+     * @throws IOException If writing or renaming fails, the old file is then left untouched.
+     */
+    private static void writeAtomically(Path file, Body body) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                body.writeTo(channel);
+                channel.force(false);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * A file operation that may fail with an {@link IOException}.
+     */
+    @FunctionalInterface
+    private interface IOAction {
+        void run() throws IOException;
+    }
+}
@@ -0,0 +1,472 @@
+package project.game;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The {@link SavedGame} class saves the current level and restores it for Load Last Game.
+ * <p>
+ * A level scrambled by {@link RandomizeGame} is saved as its scramble record in {@code scramble.txt}:
+ * the path of the level file, the SHA-256 of its content, the seed and the version of the scramble algorithm.
+ * The record has a constant size, because the scrambled board is reproduced from the original level; it is
+ * not used when the level file changed since, like the delta save. A board that cannot be reproduced
+ * that way is saved as the rotation of every tile relative to the level file in {@code levelData.eld}
+ * (see {@link DeltaSaveFormat}). A board that was not created from a level file is saved in full to
+ * {@code levelData.txt}. Only one of these files exists at a time. The turns made afterwards are journaled to
+ * {@code steps.txt} in all cases.
+ * <p>
+ * While the level is played, the {@link Checkpointer} periodically saves the board to {@code checkpoint.eld}
+ * together with the logical position of the last step it covers. The steps up to that position are then
+ * compacted away: the step log starts with a {@code # base N} line and holds only the steps after step N.
+ * Restoring loads the checkpoint and puts only the tail of the log on the redo stack.
+ * <p>
+ * All files are written by the {@link SaveWriter}. In the optional live state mode the current board is
+ * additionally kept in {@code live.els} by a {@link LiveStateFile}, updated in place on every turn.
+ */
+public final class SavedGame {
+    /** The full board dump of the saved level. */
+    public static final Path LEVEL_DATA = Paths.get("data/currentLevel/levelData.txt");
+    /** The rotations of the saved level relative to its level file. */
+    public static final Path DELTA = Paths.get("data/currentLevel/levelData.eld");
+    /** The scramble record of the saved level. */
+    public static final Path SCRAMBLE = Paths.get("data/currentLevel/scramble.txt");
+    /** The latest checkpoint of the saved level. */
+    public static final Path CHECKPOINT = Paths.get("data/currentLevel/checkpoint.eld");
+    /** The memory-mapped live state of the current level. */
+    public static final Path LIVE = Paths.get("data/currentLevel/live.els");
+    /** The journal of the turns made since the level was saved. */
+    public static final Path STEPS = Paths.get("data/currentLevel/steps.txt");
+    /** Prefix of the first line of a compacted step log, followed by the position of the last removed step. */
+    public static final String BASE_PREFIX = "# base ";
+
+    private static final byte[] CHECKPOINT_MAGIC = {'E', 'L', 'C', '1'};
+    private static final int CHECKPOINT_HEADER_SIZE = 12;
+
+    /**
+     * A restored game.
+     *
+     * @param game the game, not initialized yet.
+     * @param levelPath the path of its level file, or null when it was not created from one.
+     * @param step the logical position of the last step already applied to the board; the later steps
+     *             of the step log are the ones to redo.
+     * @param journalEnd the logical position of the last step in the step log.
+     */
+    public record Restored(Game game, String levelPath, long step, long journalEnd) {
+    }
+
+    /**
+     * A decoded checkpoint.
+     *
+     * @param step the logical position of the last step applied to the board.
+     * @param levelPath the path of the level file of the board.
+     * @param board the board.
+     */
+    record Checkpoint(long step, String levelPath, BoardState board) {
+    }
+
+    /**
+     * Private constructor, the class only has static methods.
+     */
+    private SavedGame() {
+    }
+
+    /**
+     * Saves a scrambled level as its scramble record and starts a new turn journal.
+     *
+     * @param levelPath the path of the original level file.
+     * @param seed the seed of the scramble.
+     */
+    public static void saveScramble(String levelPath, long seed) {
+        SaveWriter writer = SaveWriter.shared();
+        writer.replace(SCRAMBLE, out -> {
+            out.write("version " + RandomizeGame.ALGORITHM_VERSION + "\n");
+            out.write("level " + levelPath + "\n");
+            out.write("hash " + HexFormat.of().formatHex(DeltaSaveFormat.hash(Paths.get(levelPath))) + "\n");
+            out.write("seed " + seed + "\n");
+        });
+        writer.delete(DELTA);
+        writer.delete(LEVEL_DATA);
+        clearSteps();
+    }
+
+    /**
+     * Saves a board of a level as the rotations of its tiles and starts a new turn journal.
+     *
+     * @param levelPath the path of the level file the board was created from.
+     * @param board the board to save, usually a {@link Game#snapshot()} of a game created from the level.
+     */
+    public static void saveDelta(String levelPath, BoardState board) {
+        SaveWriter writer = SaveWriter.shared();
+        writer.replaceBinary(DELTA, () -> {
+            SaveEvent event = new SaveEvent();
+            event.begin();
+            ByteBuffer buffer = DeltaSaveFormat.encode(levelPath, board);
+            if (event.shouldCommit()) {
+                event.path = DELTA.toString();
+                event.kind = "delta";
+                event.rows = board.rows();
+                event.cols = board.cols();
+                event.nodes = board.topology().nodeCount();
+                event.commit();
+            }
+            return buffer;
+        });
+        writer.delete(SCRAMBLE);
+        writer.delete(LEVEL_DATA);
+        clearSteps();
+    }
+
+    /**
+     * Saves a whole board and starts a new turn journal.
+     *
+     * @param board the board to save, usually a {@link Game#snapshot()}.
+     */
+    public static void saveBoard(BoardState board) {
+        SaveWriter writer = SaveWriter.shared();
+        writer.replace(LEVEL_DATA, out -> {
+            SaveEvent event = new SaveEvent();
+            event.begin();
+            board.writeText(out);
+            if (event.shouldCommit()) {
+                event.path = LEVEL_DATA.toString();
+                event.kind = "levelData";
+                event.rows = board.rows();
+                event.cols = board.cols();
+                event.nodes = board.topology().nodeCount();
+                event.commit();
+            }
+        });
+        writer.delete(SCRAMBLE);
+        writer.delete(DELTA);
+        clearSteps();
+    }
+
+    /**
+     * Empties the turn journal and drops the checkpoint of the previous save.
+     */
+    private static void clearSteps() {
+        SaveWriter.shared().delete(CHECKPOINT);
+        SaveWriter.shared().replace(STEPS, out -> { });
+    }
+
+    /**
+     * Saves a checkpoint of the board and compacts the step log up to it. Both happen on the writer thread,
+     * after every step issued so far was appended. The log is compacted only when the checkpoint was written.
+     *
+     * @param levelPath the path of the level file the board was created from.
+     * @param board the board after the given step, usually a {@link Game#snapshot()}.
+     * @param step the logical position of the last step applied to the board.
+     */
+    public static void saveCheckpoint(String levelPath, BoardState board, long step) {
+        SaveWriter writer = SaveWriter.shared();
+        writer.replaceBinary(CHECKPOINT, () -> {
+            SaveEvent event = new SaveEvent();
+            event.begin();
+            ByteBuffer buffer = encodeCheckpoint(levelPath, board, step);
+            if (event.shouldCommit()) {
+                event.path = CHECKPOINT.toString();
+                event.kind = "checkpoint";
+                event.rows = board.rows();
+                event.cols = board.cols();
+                event.nodes = board.topology().nodeCount();
+                event.commit();
+            }
+            return buffer;
+        });
+        writer.replace(STEPS, out -> {
+            List<String> lines = Files.exists(STEPS) ? Files.readAllLines(STEPS, StandardCharsets.UTF_8) : List.of();
+            long base = lines.isEmpty() ? 0 : base(lines.get(0));
+            if (checkpointStep() != step || base > step) {
+                // the checkpoint was not written, keep the whole log
+                for (String line : lines) {
+                    out.write(line + "\n");
+                }
+                return;
+            }
+            long position = base;
+            out.write(BASE_PREFIX + step + "\n");
+            for (String line : lines) {
+                if (isStep(line) && ++position > step) {
+                    out.write(line + "\n");
+                }
+            }
+        });
+    }
+
+    /**
+     * Encodes a checkpoint: the magic "ELC1", the step as a long and the board in the {@link DeltaSaveFormat}.
+     *
+     * @param levelPath the path of the level file the board was created from.
+     * @param board the board after the given step.
+     * @param step the logical position of the last step applied to the board.
+     * @return the encoded checkpoint, flipped.
+     * @throws IOException If the level file cannot be read.
+     */
+    static ByteBuffer encodeCheckpoint(String levelPath, BoardState board, long step) throws IOException {
+        ByteBuffer delta = DeltaSaveFormat.encode(levelPath, board);
+        ByteBuffer buffer = ByteBuffer.allocate(CHECKPOINT_HEADER_SIZE + delta.remaining());
+        return buffer.put(CHECKPOINT_MAGIC).putLong(step).put(delta).flip();
+    }
+
+    /**
+     * Decodes a checkpoint. The level file is loaded through the {@link LevelTemplateCache}.
+     *
+     * @param buffer the content of a checkpoint file.
+     * @return the checkpoint.
+     * @throws IOException If the checkpoint is malformed, or its level is missing or changed since.
+     */
+    static Checkpoint decodeCheckpoint(ByteBuffer buffer) throws IOException {
+        if (!isCheckpoint(buffer)) {
+            throw new IOException("not a checkpoint");
+        }
+        ByteBuffer delta = buffer.slice(CHECKPOINT_HEADER_SIZE, buffer.limit() - CHECKPOINT_HEADER_SIZE);
+        return new Checkpoint(buffer.getLong(4), DeltaSaveFormat.levelPath(delta), DeltaSaveFormat.decode(delta));
+    }
+
+    /**
+     * Reads the step position of the checkpoint file.
+     *
+     * @return the position, or -1 when there is no valid checkpoint.
+     */
+    private static long checkpointStep() {
+        try {
+            if (!Files.exists(CHECKPOINT)) {
+                return -1;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(CHECKPOINT));
+            return isCheckpoint(buffer) ? buffer.getLong(4) : -1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @param buffer the content of a file.
+     * @return true when it starts with the checkpoint header.
+     */
+    private static boolean isCheckpoint(ByteBuffer buffer) {
+        if (buffer.remaining() < CHECKPOINT_HEADER_SIZE) {
+            return false;
+        }
+        for (int i = 0; i < CHECKPOINT_MAGIC.length; i++) {
+            if (buffer.get(i) != CHECKPOINT_MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the base position declared by the first line of a step log.
+     *
+     * @param firstLine the first line of the log.
+     * @return the position of the last compacted step, 0 when the log was never compacted.
+     */
+    public static long base(String firstLine) {
+        if (firstLine.startsWith(BASE_PREFIX)) {
+            try {
+                return Long.parseLong(firstLine.substring(BASE_PREFIX.length()).trim());
+            } catch (NumberFormatException e) {
+                System.err.println(STEPS + ": invalid base line " + firstLine);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @param line a line of the step log.
+     * @return true when the line records a step.
+     */
+    public static boolean isStep(String line) {
+        return !line.startsWith("#") && line.split(" ").length >= 4;
+    }
+
+    /**
+     * Restores the saved level. Pending saves are written first. The latest checkpoint is used when it is
+     * valid; otherwise the scramble record or the delta save, and the full board dump as the last resort.
+     *
+     * @return the restored game and the position in the step log it starts from, or null when no save can be
+     *         used.
+     */
+    public static Restored restore() {
+        SaveWriter.shared().flush();
+        long base = 0;
+        long end = 0;
+        if (Files.exists(STEPS)) {
+            try (BufferedReader reader = Files.newBufferedReader(STEPS, StandardCharsets.UTF_8)) {
+                String line = reader.readLine();
+                if (line != null) {
+                    base = base(line);
+                    end = base;
+                }
+                for (; line != null; line = reader.readLine()) {
+                    if (isStep(line)) {
+                        end++;
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        if (Files.exists(CHECKPOINT)) {
+            try {
+                Checkpoint checkpoint = decodeCheckpoint(ByteBuffer.wrap(Files.readAllBytes(CHECKPOINT)));
+                long step = checkpoint.step();
+                if (step < base || step > end) {
+                    throw new IOException("checkpoint at step " + step + " does not match the step log");
+                }
+                return new Restored(Game.create(checkpoint.board()), checkpoint.levelPath(), step, end);
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println(CHECKPOINT + ": " + e.getMessage());
+            }
+        }
+        if (base > 0) {
+            System.err.println(STEPS + ": steps up to " + base + " were compacted, they are missing from the board");
+        }
+        if (Files.exists(SCRAMBLE)) {
+            Restored restored = loadScramble(base, end);
+            if (restored != null) {
+                return restored;
+            }
+        }
+        if (Files.exists(DELTA)) {
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(DELTA));
+                String levelPath = DeltaSaveFormat.levelPath(buffer);
+                return new Restored(Game.create(DeltaSaveFormat.decode(buffer)), levelPath, base, end);
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println(DELTA + ": " + e.getMessage());
+            }
+        }
+        if (!Files.exists(LEVEL_DATA)) {
+            // no save matches the step log, its steps must not be replayed onto another board
+            System.err.println(LEVEL_DATA + ": no usable save of the last game");
+            return null;
+        }
+        GameLoader loader = new GameLoader(LEVEL_DATA.toString());
+        Game game = Game.create(loader.x, loader.y);
+        loader.SetUpGame(game);
+        return new Restored(game, null, base, end);
+    }
+
+    /**
+     * Returns the level files the saved game refers to. Pending saves are written first.
+     *
+     * @return the paths of the level files named by the scramble record, the delta save, the checkpoint and
+     *         the live state file, as far as they exist and can be read.
+     */
+    public static Set<Path> levelPaths() {
+        SaveWriter.shared().flush();
+        Set<Path> paths = new HashSet<>();
+        try {
+            if (Files.exists(SCRAMBLE)) {
+                for (String line : Files.readAllLines(SCRAMBLE, StandardCharsets.UTF_8)) {
+                    if (line.startsWith("level ")) {
+                        paths.add(Paths.get(line.substring("level ".length())));
+                    }
+                }
+            }
+            if (Files.exists(DELTA)) {
+                paths.add(Paths.get(DeltaSaveFormat.levelPath(ByteBuffer.wrap(Files.readAllBytes(DELTA)))));
+            }
+            if (Files.exists(CHECKPOINT)) {
+                ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(CHECKPOINT));
+                if (isCheckpoint(buffer)) {
+                    ByteBuffer delta = buffer.slice(CHECKPOINT_HEADER_SIZE, buffer.limit() - CHECKPOINT_HEADER_SIZE);
+                    paths.add(Paths.get(DeltaSaveFormat.levelPath(delta)));
+                }
+            }
+            if (Files.exists(LIVE)) {
+                try (LiveStateFile live = LiveStateFile.open(LIVE)) {
+                    paths.add(Paths.get(live.levelPath()));
+                }
+            }
+        } catch (IOException | InvalidPathException e) {
+            System.err.println("saved game: " + e.getMessage());
+        }
+        return paths;
+    }
+
+    /**
+     * Opens the live state file of the last game, and verifies its checksum when
+     * {@link LiveStateFile#isVerifyRequested()}.
+     *
+     * @return the opened file, or null when there is none or it cannot be used.
+     */
+    public static LiveStateFile openLive() {
+        if (!Files.exists(LIVE)) {
+            return null;
+        }
+        try {
+            LiveStateFile file = LiveStateFile.open(LIVE);
+            if (LiveStateFile.isVerifyRequested()) {
+                try {
+                    file.verify();
+                } catch (IOException e) {
+                    file.close();
+                    throw e;
+                }
+            }
+            return file;
+        } catch (IOException e) {
+            System.err.println(LIVE + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Reproduces a level from its scramble record.
+     *
+     * @param step the position of the last step applied to the reproduced board.
+     * @param journalEnd the position of the last step in the step log.
+     * @return the scrambled game, or null when the record is not usable.
+     */
+    private static Restored loadScramble(long step, long journalEnd) {
+        try {
+            Map<String, String> record = new HashMap<>();
+            List<String> lines = Files.readAllLines(SCRAMBLE, StandardCharsets.UTF_8);
+            for (String line : lines) {
+                int space = line.indexOf(' ');
+                if (space > 0) {
+                    record.put(line.substring(0, space), line.substring(space + 1).trim());
+                }
+            }
+            int version = Integer.parseInt(record.getOrDefault("version", "0"));
+            if (version != RandomizeGame.ALGORITHM_VERSION) {
+                System.err.println(SCRAMBLE + ": unsupported scramble version " + version);
+                return null;
+            }
+            String levelPath = record.get("level");
+            long seed = Long.parseLong(record.getOrDefault("seed", ""));
+            if (levelPath == null || !Files.isRegularFile(Paths.get(levelPath))) {
+                System.err.println(SCRAMBLE + ": level " + levelPath + " not found");
+                return null;
+            }
+            String hash = record.get("hash");
+            if (hash == null
+                    || !Arrays.equals(HexFormat.of().parseHex(hash), DeltaSaveFormat.hash(Paths.get(levelPath)))) {
+                // the steps belong to a board of other content, they must not be replayed onto this one
+                System.err.println(SCRAMBLE + ": level " + levelPath + " changed since the game was saved");
+                return null;
+            }
+            LevelTemplate template = LevelTemplateCache.shared().get(levelPath);
+            return new Restored(Game.create(RandomizeGame.scramble(template, seed)), levelPath, step, journalEnd);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println(SCRAMBLE + ": " + e.getMessage());
+            return null;
+        }
+    }
+}
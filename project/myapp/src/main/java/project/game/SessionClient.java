@@ -0,0 +1,356 @@
+package project.game;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import project.common.NodeType;
+
+/**
+ * The {@link SessionClient} class is a stub client of the {@link SessionHost} protocol.
+ * <p>
+ * One client is one connection; its requests are answered in order. Error answers of the host are thrown as
+ * {@link IOException}s with the message of the host. Running the class drives a host with many concurrent
+ * sessions, each on its own connection and virtual thread, making random turns, undos and redos
+ * ({@code SessionClient <port|socket> <level> [sessions [turns [pauseMs]]]}). Every session keeps its own copy
+ * of the power of the board, the rotations and the history, updated from the deltas, and checks every delta
+ * against it, so evictions and restores on the host are checked too. The throughput and the latency are
+ * reported.
+ */
+public final class SessionClient implements Closeable {
+    private final SocketChannel channel;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+
+    /**
+     * The board of an opened session.
+     *
+     * @param session the session id.
+     * @param rows the number of rows.
+     * @param cols the number of columns.
+     * @param win true when all nodes are powered.
+     * @param tiles per tile: connector mask in bits 0-3, the ordinal of the {@link NodeType} in bits 4-5 and the
+     *              power in bit 6.
+     */
+    public record Opened(long session, int rows, int cols, boolean win, byte[] tiles) {
+    }
+
+    private SessionClient(SocketChannel channel) {
+        this.channel = channel;
+        this.in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+    }
+
+    /**
+     * Connects to a host.
+     *
+     * @param address the address of the host, see {@link SessionHost#address(String)}.
+     * @return the client.
+     * @throws IOException If the host cannot be reached.
+     */
+    public static SessionClient connect(SocketAddress address) throws IOException {
+        SocketChannel channel = address instanceof UnixDomainSocketAddress
+                ? SocketChannel.open(StandardProtocolFamily.UNIX) : SocketChannel.open();
+        try {
+            channel.connect(address);
+            return new SessionClient(channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a session.
+     *
+     * @param level the name of the level file in the level directory of the host.
+     * @param seed the seed of the scramble.
+     * @return the board.
+     * @throws IOException If the request fails.
+     */
+    public Opened open(String level, long seed) throws IOException {
+        out.writeByte(SessionHost.OPEN);
+        out.writeUTF(level);
+        out.writeLong(seed);
+        request();
+        long session = in.readLong();
+        int rows = in.readUnsignedShort();
+        int cols = in.readUnsignedShort();
+        boolean win = in.readByte() != 0;
+        byte[] tiles = new byte[rows * cols];
+        in.readFully(tiles);
+        return new Opened(session, rows, cols, win, tiles);
+    }
+
+    /**
+     * Turns a tile clockwise.
+     *
+     * @param session the session id.
+     * @param tile the tile index.
+     * @return the delta.
+     * @throws IOException If the request fails.
+     */
+    public SessionHost.Delta turn(long session, int tile) throws IOException {
+        out.writeByte(SessionHost.TURN);
+        out.writeLong(session);
+        out.writeInt(tile);
+        return delta();
+    }
+
+    /**
+     * Undoes the last turn.
+     *
+     * @param session the session id.
+     * @return the delta.
+     * @throws IOException If the request fails.
+     */
+    public SessionHost.Delta undo(long session) throws IOException {
+        out.writeByte(SessionHost.UNDO);
+        out.writeLong(session);
+        return delta();
+    }
+
+    /**
+     * Redoes the last undone turn.
+     *
+     * @param session the session id.
+     * @return the delta.
+     * @throws IOException If the request fails.
+     */
+    public SessionHost.Delta redo(long session) throws IOException {
+        out.writeByte(SessionHost.REDO);
+        out.writeLong(session);
+        return delta();
+    }
+
+    /**
+     * Closes a session.
+     *
+     * @param session the session id.
+     * @throws IOException If the request fails.
+     */
+    public void close(long session) throws IOException {
+        out.writeByte(SessionHost.CLOSE);
+        out.writeLong(session);
+        request();
+    }
+
+    /**
+     * @return the statistics of the host.
+     * @throws IOException If the request fails.
+     */
+    public SessionHost.Stats stats() throws IOException {
+        out.writeByte(SessionHost.STATS);
+        request();
+        return new SessionHost.Stats(in.readInt(), in.readInt(), in.readLong(), in.readLong(), in.readLong());
+    }
+
+    /**
+     * Closes the connection; the sessions stay on the host.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Sends the written request and reads the status of the answer.
+     *
+     * @throws IOException If sending fails or the answer is an error.
+     */
+    private void request() throws IOException {
+        out.flush();
+        byte status = in.readByte();
+        if (status != SessionHost.OK) {
+            throw new IOException("status " + status + ": " + in.readUTF());
+        }
+    }
+
+    /**
+     * @return the delta answered to the written request.
+     * @throws IOException If the request fails.
+     */
+    private SessionHost.Delta delta() throws IOException {
+        request();
+        int tile = in.readInt();
+        int rotation = in.readByte();
+        int flags = in.readByte();
+        int[] changes = new int[in.readInt()];
+        for (int i = 0; i < changes.length; i++) {
+            changes[i] = in.readInt();
+        }
+        return new SessionHost.Delta(tile, rotation, (flags & 1) != 0, (flags & 2) != 0, changes);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2 || args.length > 5) {
+            System.err.println("usage: SessionClient <port|socket> <level> [sessions [turns [pauseMs]]]");
+            System.exit(2);
+        }
+        SocketAddress address = SessionHost.address(args[0]);
+        String level = args[1];
+        int sessions = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        int turns = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+        long pause = args.length > 4 ? Long.parseLong(args[4]) : 0;
+
+        LatencyHistogram latency = new LatencyHistogram();
+        AtomicLong failures = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int s = 0; s < sessions; s++) {
+            long seed = s;
+            threads.add(Thread.ofVirtual().name("session-client-" + s).start(() -> {
+                try {
+                    play(address, level, seed, turns, pause, latency);
+                } catch (IOException | IllegalStateException e) {
+                    failures.incrementAndGet();
+                    System.err.println("session " + seed + ": " + e.getMessage());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d sessions, %d requests in %.2f s, %.0f requests/s, %d failed%n", sessions,
+                latency.count(), seconds, latency.count() / seconds, failures.get());
+        System.out.printf("latency: mean %.1f us, p50 %.1f us, p99 %.1f us, max %.1f us%n", latency.mean() / 1e3,
+                latency.percentile(50) / 1e3, latency.percentile(99) / 1e3, latency.max() / 1e3);
+        try (SessionClient client = connect(address)) {
+            SessionHost.Stats stats = client.stats();
+            System.out.printf("host: %d sessions in memory, %d on disk, %.1f MB, %d evictions, %d restores%n",
+                    stats.active(), stats.evicted(), stats.memory() / 1048576.0, stats.evictions(),
+                    stats.restores());
+        }
+        System.exit(failures.get() == 0 ? 0 : 1);
+    }
+
+    /**
+     * Plays one session with random requests and checks the deltas against a local copy of the power.
+     *
+     * @param address the address of the host.
+     * @param level the level name.
+     * @param seed the seed of the scramble and of the requests.
+     * @param turns the number of requests.
+     * @param pause the pause between requests in milliseconds, lets the host evict idle sessions.
+     * @param latency records the time of every request.
+     * @throws IOException If a request fails.
+     * @throws InterruptedException If interrupted while pausing.
+     */
+    private static void play(SocketAddress address, String level, long seed, int turns, long pause,
+                             LatencyHistogram latency) throws IOException, InterruptedException {
+        SplittableRandom random = new SplittableRandom(seed);
+        try (SessionClient client = connect(address)) {
+            long start = System.nanoTime();
+            Opened opened = client.open(level, seed);
+            latency.record(System.nanoTime() - start);
+            int size = opened.rows() * opened.cols();
+            List<Integer> nodes = new ArrayList<>();
+            boolean[] powered = new boolean[size];
+            for (int i = 0; i < size; i++) {
+                if ((opened.tiles()[i] >> 4 & 3) != NodeType.EMPTY.ordinal()) {
+                    nodes.add(i);
+                }
+                powered[i] = (opened.tiles()[i] & 1 << 6) != 0;
+            }
+            boolean win = opened.win();
+            int[] rotations = new int[size];
+            Arrays.fill(rotations, -1);
+            IntStack undo = new IntStack();
+            IntStack redo = new IntStack();
+            for (int t = 0; t < turns; t++) {
+                if (pause > 0) {
+                    Thread.sleep(pause);
+                }
+                int action = random.nextInt(10);
+                int expected;
+                boolean forward;
+                SessionHost.Delta delta;
+                start = System.nanoTime();
+                if (action < 7) {
+                    expected = nodes.get(random.nextInt(nodes.size()));
+                    forward = true;
+                    delta = client.turn(opened.session(), expected);
+                    undo.push(expected);
+                    redo.clear();
+                } else if (action < 9) {
+                    expected = undo.isEmpty() ? -1 : redo.push(undo.pop());
+                    forward = false;
+                    delta = client.undo(opened.session());
+                } else {
+                    expected = redo.isEmpty() ? -1 : undo.push(redo.pop());
+                    forward = true;
+                    delta = client.redo(opened.session());
+                }
+                latency.record(System.nanoTime() - start);
+                if (delta.tile() != expected) {
+                    throw new IllegalStateException("request " + t + " turned tile " + delta.tile()
+                            + " instead of " + expected);
+                }
+                if (expected >= 0) {
+                    int last = rotations[expected];
+                    if (last >= 0 && delta.rotation() != ((last + (forward ? 1 : 3)) & 3)) {
+                        throw new IllegalStateException("request " + t + " left tile " + expected
+                                + " at rotation " + delta.rotation());
+                    }
+                    rotations[expected] = delta.rotation();
+                }
+                for (int change : delta.changes()) {
+                    powered[change >>> 1] = (change & 1) != 0;
+                }
+                boolean all = true;
+                for (int node : nodes) {
+                    all &= powered[node];
+                }
+                if (delta.win() != all || delta.winChanged() != (delta.win() != win)) {
+                    throw new IllegalStateException("delta disagrees with the local board at request " + t);
+                }
+                win = delta.win();
+            }
+            client.close(opened.session());
+        }
+    }
+
+    /**
+     * A growable stack of ints, the local copy of a history.
+     */
+    private static final class IntStack {
+        private int[] items = new int[16];
+        private int size;
+
+        int push(int item) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            items[size++] = item;
+            return item;
+        }
+
+        int pop() {
+            return items[--size];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+}
@@ -0,0 +1,764 @@
+package project.game;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+import project.common.GameNode;
+import project.common.NodeType;
+
+/**
+ * The {@link SessionHost} class runs many headless games in one JVM and serves them over a local socket.
+ * <p>
+ * Every session owns a {@link Game} created from a scramble of a level of the level directory. Clients send
+ * compact binary requests over TCP on the loopback interface or over a Unix-domain socket, and each
+ * connection is served by its own virtual thread, so thousands of idle connections cost little. A turn, undo
+ * or redo is answered with a delta: the turned tile, its new rotation, the win state and the tiles whose
+ * power changed. Undo and redo use the compact history of {@link CommandManager}, one int per turn,
+ * {@code tileIndex << 1 | reverse}. Sessions are locked with a {@link ReentrantLock}, which, unlike a
+ * monitor, does not pin the carrier thread of a blocked virtual thread.
+ * <p>
+ * The memory of every session is estimated from its board and history. Sessions idle for longer than the idle
+ * timeout, and the least recently used ones while the total is above the memory budget, are evicted: their
+ * rotations and history are written to the spill directory and the game is dropped. The next request
+ * restores the session transparently.
+ * <p>
+ * All numbers are big-endian. A request starts with an opcode byte:
+ * <ul>
+ * <li>{@link #OPEN}: level name (UTF), scramble seed (long); answered with the session id (long), rows and
+ * columns (short each), the win state (byte) and one byte per tile: connector mask in bits 0-3, the ordinal of
+ * the {@link NodeType} in bits 4-5 and the power in bit 6.</li>
+ * <li>{@link #TURN}: session id (long), tile index (int); {@link #UNDO} and {@link #REDO}: session id (long);
+ * all answered with a delta: the turned tile (int, -1 when nothing happened), its rotation (byte), flags
+ * (byte: bit 0 win, bit 1 win changed), the number of power changes (int) and per change
+ * {@code tileIndex << 1 | powered} (int).</li>
+ * <li>{@link #CLOSE}: session id (long); answered with the status only.</li>
+ * <li>{@link #STATS}: answered with the sessions in memory and on disk (int each), the estimated memory (long),
+ * and the number of evictions and restores (long each).</li>
+ * </ul>
+ * Every answer starts with a status byte; when it is not {@link #OK}, only a message (UTF) follows. Running the
+ * class starts a host ({@code SessionHost <port|socket> [levels [idleSeconds [memoryMB]]]}); see
+ * {@link SessionClient} for a stub client.
+ */
+public final class SessionHost implements Closeable {
+    /** Opens a session. */
+    public static final byte OPEN = 1;
+    /** Turns a tile of a session clockwise. */
+    public static final byte TURN = 2;
+    /** Undoes the last turn of a session. */
+    public static final byte UNDO = 3;
+    /** Redoes the last undone turn of a session. */
+    public static final byte REDO = 4;
+    /** Closes a session. */
+    public static final byte CLOSE = 5;
+    /** Reports the statistics of the host. */
+    public static final byte STATS = 6;
+
+    /** The request was served. */
+    public static final byte OK = 0;
+    /** The session does not exist. */
+    public static final byte NO_SESSION = 1;
+    /** The request is invalid. */
+    public static final byte BAD_REQUEST = 2;
+    /** The request could not be served. */
+    public static final byte FAILED = 3;
+
+    /**
+     * Estimated size of a session without its board. With {@link #TILE_BYTES} it matches the measured heap of
+     * 8x8 games, about 22 KB each, on a 64-bit JVM with compressed references.
+     */
+    private static final long SESSION_BYTES = 2048;
+    /** Estimated size of one tile of a game: its node with the border nodes, observers and board state entry. */
+    private static final long TILE_BYTES = 320;
+    /** Pending connections, enough for a front end that reconnects many clients at once. */
+    private static final int BACKLOG = 1024;
+
+    private final Path levels;
+    private final Path spill;
+    private final long idleNanos;
+    private final long memoryBudget;
+    private final Map<Long, Session> sessions = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final AtomicLong memory = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong restores = new AtomicLong();
+    private final ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "session-evictor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final List<ServerSocketChannel> servers = new ArrayList<>();
+    private volatile boolean closed;
+
+    /**
+     * The outcome of a turn, undo or redo.
+     *
+     * @param tile the turned tile, -1 when nothing was turned.
+     * @param rotation the rotation of the turned tile.
+     * @param win true when all nodes are powered.
+     * @param winChanged true when the win state changed.
+     * @param changes the tiles whose power changed, as {@code tileIndex << 1 | powered}.
+     */
+    public record Delta(int tile, int rotation, boolean win, boolean winChanged, int[] changes) {
+    }
+
+    /**
+     * The statistics of a host.
+     *
+     * @param active the sessions in memory.
+     * @param evicted the sessions on disk.
+     * @param memory the estimated memory of all sessions in bytes.
+     * @param evictions the number of evictions so far.
+     * @param restores the number of restores so far.
+     */
+    public record Stats(int active, int evicted, long memory, long evictions, long restores) {
+    }
+
+    /**
+     * Creates a host; it serves nothing until {@link #listen(SocketAddress)} is called.
+     *
+     * @param levels the directory of the levels sessions can be opened with.
+     * @param spill the directory evicted sessions are written to, cleared of old sessions.
+     * @param idleSeconds the idle time after which a session is evicted.
+     * @param memoryBudget the estimated memory of all sessions above which the least recently used are evicted.
+     * @throws IOException If the spill directory cannot be prepared.
+     */
+    public SessionHost(Path levels, Path spill, long idleSeconds, long memoryBudget) throws IOException {
+        if (idleSeconds < 1 || memoryBudget < 1) {
+            throw new IllegalArgumentException("idle time and memory budget must be positive");
+        }
+        this.levels = levels.toAbsolutePath().normalize();
+        this.spill = spill;
+        this.idleNanos = TimeUnit.SECONDS.toNanos(idleSeconds);
+        this.memoryBudget = memoryBudget;
+        Files.createDirectories(spill);
+        // session ids start over, so sessions of an earlier run must not be restored
+        try (Stream<Path> files = Files.list(spill)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (file.getFileName().toString().endsWith(".session")) {
+                    Files.delete(file);
+                }
+            }
+        }
+        long period = Math.max(100, Math.min(1000, TimeUnit.NANOSECONDS.toMillis(idleNanos) / 4));
+        evictor.scheduleWithFixedDelay(this::evict, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts accepting connections on an address.
+     *
+     * @param address an {@link InetSocketAddress} or a {@link UnixDomainSocketAddress}; an existing socket file
+     *                is replaced.
+     * @return the bound address, with the chosen port when port 0 was asked for.
+     * @throws IOException If the address cannot be bound.
+     */
+    public SocketAddress listen(SocketAddress address) throws IOException {
+        ServerSocketChannel server;
+        if (address instanceof UnixDomainSocketAddress unix) {
+            Files.deleteIfExists(unix.getPath());
+            server = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            server = ServerSocketChannel.open();
+        }
+        server.bind(address, BACKLOG);
+        synchronized (servers) {
+            servers.add(server);
+        }
+        Thread acceptor = new Thread(() -> accept(server), "session-host-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return server.getLocalAddress();
+    }
+
+    /**
+     * Parses the address of a host: a port number for TCP on the loopback interface, a socket file otherwise.
+     *
+     * @param address the port or the path of the socket file.
+     * @return the socket address.
+     */
+    public static SocketAddress address(String address) {
+        if (address.matches("\\d+")) {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address));
+        }
+        return UnixDomainSocketAddress.of(address);
+    }
+
+    /**
+     * @return the statistics of the host.
+     */
+    public Stats stats() {
+        int active = 0;
+        int evicted = 0;
+        for (Session session : sessions.values()) {
+            if (session.game != null) {
+                active++;
+            } else {
+                evicted++;
+            }
+        }
+        return new Stats(active, evicted, memory.get(), evictions.get(), restores.get());
+    }
+
+    /**
+     * Stops accepting connections and evicting sessions. Open connections end with their next request.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        synchronized (servers) {
+            for (ServerSocketChannel server : servers) {
+                try {
+                    SocketAddress address = server.getLocalAddress();
+                    server.close();
+                    if (address instanceof UnixDomainSocketAddress unix) {
+                        Files.deleteIfExists(unix.getPath());
+                    }
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Accepts connections until the server is closed, starting a virtual thread for each.
+     *
+     * @param server the server channel.
+     */
+    private void accept(ServerSocketChannel server) {
+        Thread.Builder builder = Thread.ofVirtual().name("session-connection-", 0);
+        while (!closed) {
+            try {
+                SocketChannel channel = server.accept();
+                builder.start(() -> serve(channel));
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                if (!closed) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Serves the requests of one connection until it is closed.
+     *
+     * @param channel the connection.
+     */
+    private void serve(SocketChannel channel) {
+        try (channel;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+            int opcode;
+            while (!closed && (opcode = in.read()) >= 0) {
+                if (!handle(opcode, in, out)) {
+                    out.flush();
+                    return;
+                }
+                out.flush();
+            }
+        } catch (EOFException e) {
+            // the client went away in the middle of a request
+        } catch (IOException e) {
+            if (!closed) {
+                System.err.println("session connection: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Reads one request and writes its answer.
+     *
+     * @param opcode the opcode of the request.
+     * @param in the rest of the request.
+     * @param out the answer.
+     * @return false when the request was not understood and the connection has to be closed.
+     * @throws IOException If reading or writing fails.
+     */
+    private boolean handle(int opcode, DataInputStream in, DataOutputStream out) throws IOException {
+        switch (opcode) {
+            case OPEN -> open(in.readUTF(), in.readLong(), out);
+            case TURN, UNDO, REDO -> {
+                long id = in.readLong();
+                int tile = opcode == TURN ? in.readInt() : -1;
+                Session session = sessions.get(id);
+                if (session == null) {
+                    error(out, NO_SESSION, "no session " + id);
+                    return true;
+                }
+                session.lock.lock();
+                try {
+                    if (!load(session)) {
+                        error(out, NO_SESSION, "no session " + id);
+                    } else if (opcode == TURN && (tile < 0 || tile >= session.level.size()
+                            || session.level.type(tile) == NodeType.EMPTY)) {
+                        error(out, BAD_REQUEST, "no node at tile " + tile);
+                    } else {
+                        Delta delta = opcode == TURN ? session.turn(tile)
+                                : opcode == UNDO ? session.undo() : session.redo();
+                        account(session);
+                        writeDelta(out, delta);
+                    }
+                } catch (IOException e) {
+                    error(out, FAILED, "session " + id + " cannot be restored: " + e.getMessage());
+                } finally {
+                    session.lock.unlock();
+                }
+            }
+            case CLOSE -> {
+                long id = in.readLong();
+                Session session = sessions.remove(id);
+                if (session == null) {
+                    error(out, NO_SESSION, "no session " + id);
+                    return true;
+                }
+                session.lock.lock();
+                try {
+                    session.closed = true;
+                    memory.addAndGet(-session.bytes);
+                    Files.deleteIfExists(spillFile(id));
+                } finally {
+                    session.lock.unlock();
+                }
+                out.writeByte(OK);
+            }
+            case STATS -> {
+                Stats stats = stats();
+                out.writeByte(OK);
+                out.writeInt(stats.active());
+                out.writeInt(stats.evicted());
+                out.writeLong(stats.memory());
+                out.writeLong(stats.evictions());
+                out.writeLong(stats.restores());
+            }
+            default -> {
+                error(out, BAD_REQUEST, "unknown opcode " + opcode);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Opens a session and writes its board.
+     *
+     * @param name the name of the level file in the level directory.
+     * @param seed the seed of the scramble.
+     * @param out the answer.
+     * @throws IOException If writing fails.
+     */
+    private void open(String name, long seed, DataOutputStream out) throws IOException {
+        Path file = levels.resolve(name).normalize();
+        if (!file.startsWith(levels) || !Files.isRegularFile(file)) {
+            error(out, BAD_REQUEST, "no level " + name);
+            return;
+        }
+        LevelTemplate level;
+        try {
+            level = LevelTemplateCache.shared().get(file.toString());
+        } catch (IllegalArgumentException e) {
+            error(out, BAD_REQUEST, name + ": " + e.getMessage());
+            return;
+        }
+        Session session = new Session(nextId.getAndIncrement(), level);
+        session.start(RandomizeGame.scramble(level, seed));
+        account(session);
+        sessions.put(session.id, session);
+        out.writeByte(OK);
+        out.writeLong(session.id);
+        out.writeShort(level.rows());
+        out.writeShort(level.cols());
+        out.writeByte(session.unpowered == 0 ? 1 : 0);
+        BoardState board = session.game.snapshot();
+        byte[] tiles = new byte[level.size()];
+        for (int i = 0; i < tiles.length; i++) {
+            tiles[i] = (byte) (board.mask(i) | level.type(i).ordinal() << 4 | (session.powered[i] ? 1 << 6 : 0));
+        }
+        out.write(tiles);
+    }
+
+    /**
+     * Makes sure the game of a session is in memory. The session must be locked.
+     *
+     * @param session the session.
+     * @return false when the session was closed meanwhile.
+     * @throws IOException If an evicted session cannot be read back.
+     */
+    private boolean load(Session session) throws IOException {
+        if (session.closed) {
+            return false;
+        }
+        session.lastUsed = System.nanoTime();
+        if (session.game == null) {
+            Path file = spillFile(session.id);
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                session.restore(in);
+            }
+            Files.delete(file);
+            restores.incrementAndGet();
+            account(session);
+        }
+        return true;
+    }
+
+    /**
+     * Updates the memory estimate of a session and of the host. The session must be locked.
+     *
+     * @param session the session.
+     */
+    private void account(Session session) {
+        long bytes = session.estimateBytes();
+        memory.addAndGet(bytes - session.bytes);
+        session.bytes = bytes;
+    }
+
+    /**
+     * Evicts the idle sessions, and the least recently used ones while the memory budget is exceeded. Busy
+     * sessions are skipped.
+     */
+    private void evict() {
+        long now = System.nanoTime();
+        List<Session> loaded = new ArrayList<>();
+        for (Session session : sessions.values()) {
+            if (session.game == null) {
+                continue;
+            }
+            if (now - session.lastUsed > idleNanos) {
+                evict(session);
+            } else {
+                loaded.add(session);
+            }
+        }
+        if (memory.get() > memoryBudget) {
+            loaded.sort(Comparator.comparingLong(session -> session.lastUsed));
+            for (Session session : loaded) {
+                if (memory.get() <= memoryBudget) {
+                    break;
+                }
+                evict(session);
+            }
+        }
+    }
+
+    /**
+     * Writes a session to the spill directory and drops its game, unless it is busy or closed.
+     *
+     * @param session the session.
+     */
+    private void evict(Session session) {
+        if (!session.lock.tryLock()) {
+            return;
+        }
+        try {
+            if (session.closed || session.game == null) {
+                return;
+            }
+            Path file = spillFile(session.id);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+                session.write(out);
+            } catch (IOException e) {
+                // the session stays in memory
+                e.printStackTrace();
+                return;
+            }
+            session.drop();
+            account(session);
+            evictions.incrementAndGet();
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    /**
+     * @param id a session id.
+     * @return the file of the session when it is evicted.
+     */
+    private Path spillFile(long id) {
+        return spill.resolve(id + ".session");
+    }
+
+    /**
+     * Writes an error answer.
+     *
+     * @param out the answer.
+     * @param status the status.
+     * @param message the message.
+     * @throws IOException If writing fails.
+     */
+    private static void error(DataOutputStream out, byte status, String message) throws IOException {
+        out.writeByte(status);
+        out.writeUTF(message);
+    }
+
+    /**
+     * Writes a delta answer.
+     *
+     * @param out the answer.
+     * @param delta the delta.
+     * @throws IOException If writing fails.
+     */
+    private static void writeDelta(DataOutputStream out, Delta delta) throws IOException {
+        out.writeByte(OK);
+        out.writeInt(delta.tile());
+        out.writeByte(delta.rotation());
+        out.writeByte((delta.win() ? 1 : 0) | (delta.winChanged() ? 2 : 0));
+        out.writeInt(delta.changes().length);
+        for (int change : delta.changes()) {
+            out.writeInt(change);
+        }
+    }
+
+    /**
+     * One game of the host. Everything but the id and the level is guarded by the lock.
+     */
+    private static final class Session {
+        final long id;
+        final LevelTemplate level;
+        final ReentrantLock lock = new ReentrantLock();
+        /** The game, null while the session is evicted; read without the lock by the statistics. */
+        volatile Game game;
+        GameNode[] nodes;
+        boolean[] powered;
+        int unpowered;
+        int[] undo = new int[16];
+        int undoSize;
+        int[] redo = new int[16];
+        int redoSize;
+        long bytes;
+        boolean closed;
+        volatile long lastUsed = System.nanoTime();
+
+        Session(long id, LevelTemplate level) {
+            this.id = id;
+            this.level = level;
+        }
+
+        /**
+         * Creates the game of a board.
+         *
+         * @param board the board.
+         */
+        void start(BoardState board) {
+            game = Game.create(board);
+            game.init();
+            GameNode[][] grid = game.getGame();
+            nodes = new GameNode[level.size()];
+            powered = new boolean[level.size()];
+            unpowered = 0;
+            for (int i = 0; i < nodes.length; i++) {
+                nodes[i] = grid[level.row(i)][level.col(i)];
+                powered[i] = nodes[i].isPowered();
+                if (level.type(i) != NodeType.EMPTY && !powered[i]) {
+                    unpowered++;
+                }
+            }
+        }
+
+        /**
+         * Drops the game after it was written out.
+         */
+        void drop() {
+            game = null;
+            nodes = null;
+            powered = null;
+            undo = new int[0];
+            redo = new int[0];
+        }
+
+        /**
+         * Turns a node clockwise and clears the redo history.
+         *
+         * @param tile the tile of the node.
+         * @return the delta.
+         */
+        Delta turn(int tile) {
+            undo = push(undo, undoSize++, tile << 1);
+            redoSize = 0;
+            return apply(tile << 1);
+        }
+
+        /**
+         * @return the delta of undoing the last turn, empty when there is none.
+         */
+        Delta undo() {
+            if (undoSize == 0) {
+                return apply(-1);
+            }
+            int entry = undo[--undoSize];
+            redo = push(redo, redoSize++, entry);
+            return apply(entry ^ 1);
+        }
+
+        /**
+         * @return the delta of redoing the last undone turn, empty when there is none.
+         */
+        Delta redo() {
+            if (redoSize == 0) {
+                return apply(-1);
+            }
+            int entry = redo[--redoSize];
+            undo = push(undo, undoSize++, entry);
+            return apply(entry);
+        }
+
+        /**
+         * Turns a node and collects the power changes.
+         *
+         * @param entry the turn, {@code tileIndex << 1 | reverse}, or -1 for none.
+         * @return the delta.
+         */
+        private Delta apply(int entry) {
+            boolean won = unpowered == 0;
+            if (entry < 0) {
+                return new Delta(-1, 0, won, false, new int[0]);
+            }
+            int tile = entry >>> 1;
+            if ((entry & 1) == 0) {
+                TurnCommand.turn(nodes[tile]);
+            } else {
+                TurnCommand.turnReverse(nodes[tile]);
+            }
+            int[] changes = new int[8];
+            int count = 0;
+            for (int i = 0; i < nodes.length; i++) {
+                boolean now = nodes[i].isPowered();
+                if (now != powered[i]) {
+                    powered[i] = now;
+                    if (level.type(i) != NodeType.EMPTY) {
+                        unpowered += now ? -1 : 1;
+                    }
+                    if (count == changes.length) {
+                        changes = Arrays.copyOf(changes, count * 2);
+                    }
+                    changes[count++] = i << 1 | (now ? 1 : 0);
+                }
+            }
+            return new Delta(tile, Math.floorMod(nodes[tile].getTurns(), 4), unpowered == 0,
+                    won != (unpowered == 0), Arrays.copyOf(changes, count));
+        }
+
+        /**
+         * @param stack a history stack.
+         * @param size its size before the push.
+         * @param entry the pushed entry.
+         * @return the stack, grown when it was full.
+         */
+        private static int[] push(int[] stack, int size, int entry) {
+            if (size == stack.length) {
+                stack = Arrays.copyOf(stack, Math.max(16, size * 2));
+            }
+            stack[size] = entry;
+            return stack;
+        }
+
+        /**
+         * @return the estimated memory of the session in bytes.
+         */
+        long estimateBytes() {
+            long history = 4L * (undo.length + redo.length);
+            return SESSION_BYTES + history + (game == null ? 0 : TILE_BYTES * level.size());
+        }
+
+        /**
+         * Writes the rotations and the history.
+         *
+         * @param out the destination.
+         * @throws IOException If writing fails.
+         */
+        void write(DataOutputStream out) throws IOException {
+            BoardState board = game.snapshot();
+            out.writeInt(board.size());
+            for (int i = 0; i < board.size(); i++) {
+                out.writeByte(board.rotation(i));
+            }
+            writeStack(out, undo, undoSize);
+            writeStack(out, redo, redoSize);
+        }
+
+        /**
+         * Reads back what {@link #write(DataOutputStream)} wrote and recreates the game.
+         *
+         * @param in the source.
+         * @throws IOException If reading fails or the data does not belong to the level.
+         */
+        void restore(DataInputStream in) throws IOException {
+            int size = in.readInt();
+            if (size != level.size()) {
+                throw new IOException("the board size does not match the level");
+            }
+            BoardState board = new BoardState(level);
+            for (int i = 0; i < size; i++) {
+                board.setRotation(i, in.readByte() & 3);
+            }
+            undoSize = in.readInt();
+            undo = readStack(in, undoSize);
+            redoSize = in.readInt();
+            redo = readStack(in, redoSize);
+            start(board);
+        }
+
+        private static void writeStack(DataOutputStream out, int[] stack, int size) throws IOException {
+            out.writeInt(size);
+            for (int i = 0; i < size; i++) {
+                out.writeInt(stack[i]);
+            }
+        }
+
+        private static int[] readStack(DataInputStream in, int size) throws IOException {
+            int[] stack = new int[Math.max(16, Integer.highestOneBit(Math.max(size, 1)) * 2)];
+            for (int i = 0; i < size; i++) {
+                stack[i] = in.readInt();
+            }
+            return stack;
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1 || args.length > 4) {
+            System.err.println("usage: SessionHost <port|socket> [levels [idleSeconds [memoryMB]]]");
+            System.exit(2);
+        }
+        Path levels = args.length > 1 ? Paths.get(args[1]) : LevelCatalog.LEVELS;
+        long idleSeconds = args.length > 2 ? Long.parseLong(args[2]) : 60;
+        long memoryMB = args.length > 3 ? Long.parseLong(args[3]) : 512;
+        SessionHost host = new SessionHost(levels, Paths.get("data", "sessions"), idleSeconds, memoryMB << 20);
+        Runtime.getRuntime().addShutdownHook(new Thread(host::close));
+        System.out.println("serving " + levels + " on " + host.listen(address(args[0])));
+        while (true) {
+            Thread.sleep(10_000);
+            Stats stats = host.stats();
+            System.out.printf("%d sessions in memory, %d on disk, %.1f MB, %d evictions, %d restores%n",
+                    stats.active(), stats.evicted(), stats.memory() / 1048576.0, stats.evictions(), stats.restores());
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package project.game;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+/**
+ * The {@link SolverBenchmark} class compares the {@link LevelSolver}s on generated levels of growing size.
+ * <p>
+ * For every size, trees and boards with loops are generated by the {@link LevelGenerator}, scrambled with
+ * {@link RandomizeGame#scramble(LevelTemplate, long)} and solved by every solver with a time limit. Every
+ * returned solution is checked. The table lists per size and solver how many levels were solved in time and
+ * the median and maximum time. A first round on small boards warms the JIT up and is not reported.
+ * Running the class takes the number of levels per size and the time limit in seconds
+ * ({@code SolverBenchmark [levels [seconds]]}).
+ */
+public final class SolverBenchmark {
+    private static final int[] SIZES = {4, 6, 8, 10, 12, 16, 20, 24, 32};
+    private static final double[] LOOPS = {0, 0.3};
+
+    private SolverBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        if (args.length > 2) {
+            System.err.println("usage: SolverBenchmark [levels [seconds]]");
+            System.exit(2);
+        }
+        int levels = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 10;
+        if (levels < 1 || !(seconds > 0)) {
+            throw new IllegalArgumentException("levels and seconds must be positive");
+        }
+        Map<String, LevelSolver> solvers = new LinkedHashMap<>();
+        solvers.put("backtracking", new BacktrackingSolver());
+        solvers.put("sat", new SatLevelSolver());
+
+        run(solvers, new int[] {6}, 20, seconds, false);
+        run(solvers, SIZES, levels, seconds, true);
+        System.exit(0);
+    }
+
+    /**
+     * Runs all solvers on generated levels.
+     *
+     * @param solvers the solvers by name.
+     * @param sizes the board sizes, boards are square.
+     * @param levels the number of levels per size and loop probability.
+     * @param seconds the time limit of one solve.
+     * @param print whether to print the results.
+     */
+    private static void run(Map<String, LevelSolver> solvers, int[] sizes, int levels, double seconds,
+                            boolean print) {
+        if (print) {
+            System.out.printf("%-6s %-5s %-13s %8s %12s %12s%n", "size", "loops", "solver", "solved", "median ms",
+                    "max ms");
+        }
+        long limit = (long) (seconds * 1e9);
+        for (int size : sizes) {
+            for (double loops : LOOPS) {
+                LevelGenerator generator = new LevelGenerator(size, size, loops);
+                BoardState[] boards = new BoardState[levels];
+                for (int i = 0; i < levels; i++) {
+                    boards[i] = RandomizeGame.scramble(generator.generate(i), i);
+                }
+                for (Map.Entry<String, LevelSolver> solver : solvers.entrySet()) {
+                    long[] times = new long[levels];
+                    int solved = 0;
+                    for (int i = 0; i < levels; i++) {
+                        long start = System.nanoTime();
+                        long deadline = start + limit;
+                        BooleanSupplier cancelled = () -> System.nanoTime() > deadline;
+                        byte[] rotations = solver.getValue().solve(boards[i], cancelled);
+                        times[i] = System.nanoTime() - start;
+                        if (rotations == null) {
+                            times[i] = Long.MAX_VALUE;
+                        } else if (!solves(boards[i], rotations)) {
+                            throw new IllegalStateException(solver.getKey() + " returned a wrong solution");
+                        } else {
+                            solved++;
+                        }
+                    }
+                    if (print) {
+                        Arrays.sort(times);
+                        System.out.printf("%-6s %-5s %-13s %8s %12s %12s%n", size + "x" + size, loops,
+                                solver.getKey(), solved + "/" + levels, millis(times[levels / 2]),
+                                millis(times[levels - 1]));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param board a board.
+     * @param rotations the rotation of every tile.
+     * @return true when the board is solved with those rotations.
+     */
+    private static boolean solves(BoardState board, byte[] rotations) {
+        BoardState solved = board.fork();
+        for (int i = 0; i < rotations.length; i++) {
+            solved.setRotation(i, rotations[i]);
+        }
+        return solved.isWin();
+    }
+
+    /**
+     * @param nanos a time in nanoseconds, {@link Long#MAX_VALUE} when the level was not solved.
+     * @return the time in milliseconds, "-" when not solved.
+     */
+    private static String millis(long nanos) {
+        return nanos == Long.MAX_VALUE ? "-" : String.format("%.2f", nanos / 1e6);
+    }
+}
@@ -0,0 +1,120 @@
+package project.game;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The {@link StepLogCursor} class is a forward cursor over the steps of a step log that were not replayed yet.
+ * <p>
+ * Only the byte offset of the next step is kept in memory. A {@link TurnCommand} is created when
+ * {@link #next()} reaches its line, so the memory of a restored session grows with the steps actually redone,
+ * not with the length of the log. The file is opened for each step and not held open in between.
+ */
+final class StepLogCursor {
+    private final Path file;
+    private final Game game;
+    private long offset;
+    private long remaining;
+
+    /**
+     * Creates a cursor.
+     *
+     * @param file the step log.
+     * @param game the game the steps are applied to.
+     * @param offset the byte offset of the first step to replay.
+     * @param remaining the number of steps from that offset to the end of the log.
+     */
+    private StepLogCursor(Path file, Game game, long offset, long remaining) {
+        this.file = file;
+        this.game = game;
+        this.offset = offset;
+        this.remaining = remaining;
+    }
+
+    /**
+     * Opens a cursor at the first step after a given step. The log is scanned once without keeping any line.
+     * A compacted log starts with a {@code # base N} line: its first step is then step N + 1.
+     *
+     * @param file the step log.
+     * @param game the game the steps are applied to.
+     * @param fromStep the logical position of the last step already applied to the game.
+     * @return the cursor, or null when no step follows.
+     * @throws IOException If the log cannot be read.
+     */
+    static StepLogCursor open(Path file, Game game, long fromStep) throws IOException {
+        long offset = -1;
+        long remaining = 0;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            StringBuilder line = new StringBuilder();
+            long position = 0;
+            long lineStart = 0;
+            long step = 0;
+            boolean first = true;
+            int b;
+            do {
+                b = in.read();
+                if (b != -1 && b != '\n') {
+                    line.append((char) b);
+                    position++;
+                    continue;
+                }
+                String text = line.toString();
+                if (first && text.startsWith(SavedGame.BASE_PREFIX)) {
+                    step = SavedGame.base(text);
+                } else if (SavedGame.isStep(text) && ++step > fromStep) {
+                    if (offset < 0) {
+                        offset = lineStart;
+                    }
+                    remaining++;
+                }
+                first = false;
+                line.setLength(0);
+                position++;
+                lineStart = position;
+            } while (b != -1);
+        }
+        return remaining == 0 ? null : new StepLogCursor(file, game, offset, remaining);
+    }
+
+    /**
+     * @return the number of steps not replayed yet.
+     */
+    long remaining() {
+        return remaining;
+    }
+
+    /**
+     * Reads the next step and advances the cursor.
+     *
+     * @return the command of the step, or null when the log ended or cannot be read anymore.
+     */
+    Command next() {
+        try (RandomAccessFile in = new RandomAccessFile(file.toFile(), "r")) {
+            in.seek(offset);
+            String line;
+            while (remaining > 0 && (line = in.readLine()) != null) {
+                offset = in.getFilePointer();
+                if (!SavedGame.isStep(line)) {
+                    continue;
+                }
+                remaining--;
+                String[] parts = line.split(" ");
+                try {
+                    int row = Integer.parseInt(parts[1]);
+                    int col = Integer.parseInt(parts[2]);
+                    return new TurnCommand(game.getGame()[row][col]);
+                } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                    e.printStackTrace();
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        remaining = 0;
+        return null;
+    }
+}
@@ -20,13 +20,20 @@ public class TurnCommand implements Command {
         this.node = node;
     }
 
+    /**
+     * @return the node rotated by this command.
+     */
+    public GameNode getNode() {
+        return node;
+    }
+
     /**
      * Executes the command to rotate the game node clockwise (in the direction of the clock).
      * This method will be invoked to perform the rotation action.
      */
     @Override
     public void execute() {
-        node.turn(); // otočenie v smere hodinových ručičiek
+        turn(node);
     }
 
      /**
@@ -35,6 +42,30 @@ public class TurnCommand implements Command {
      */
     @Override
     public void undo() {
+        turnReverse(node);
+    }
+
+    /**
+     * Rotates a node clockwise and records the rotation in the {@link GameMetrics}.
+     *
+     * @param node The node to rotate.
+     */
+    static void turn(GameNode node) {
+        long start = GameMetrics.start();
+        node.turn(); // otočenie v smere hodinových ručičiek
+        GameMetrics.count(GameMetrics.Counter.ROTATIONS);
+        GameMetrics.stop(GameMetrics.Timer.TURN, start);
+    }
+
+    /**
+     * Rotates a node counterclockwise and records the rotation in the {@link GameMetrics}.
+     *
+     * @param node The node to rotate.
+     */
+    static void turnReverse(GameNode node) {
+        long start = GameMetrics.start();
         node.turnReverse(); // otočenie naspäť (v protismere)
+        GameMetrics.count(GameMetrics.Counter.ROTATIONS);
+        GameMetrics.stop(GameMetrics.Timer.TURN, start);
     }
-}
\ No newline at end of file
+}
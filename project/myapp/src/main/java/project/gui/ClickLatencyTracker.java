@@ -0,0 +1,188 @@
+package project.gui;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.ReadOnlyStringWrapper;
+import javafx.scene.Scene;
+import project.common.GameNode;
+import project.game.Game;
+import project.game.LatencyHistogram;
+
+/**
+ * The {@link ClickLatencyTracker} class measures the latency of tile clicks as the player feels it.
+ * <p>
+ * Every click is split into stages: the rotation of the tile with the update of its view, the power
+ * propagation, the win check, the write of the step journal and the wait for the next pulse that renders the
+ * result. Each stage and the whole click are recorded in a {@link LatencyHistogram}, the last
+ * {@value #KEPT_CLICKS} clicks are kept with their raw timings so they can be dumped to a file.
+ * <p>
+ * The tracker is opt-in ({@code -Delectrician.latency=true}). All methods must be called on the JavaFX
+ * Application Thread.
+ */
+public class ClickLatencyTracker {
+    /** System property that switches the tracker on. */
+    public static final String PROPERTY = "electrician.latency";
+
+    private static final int KEPT_CLICKS = 1000;
+
+    /**
+     * Measured stages of a click, in the order they happen.
+     */
+    public enum Stage {
+        TURN, PROPAGATION, WIN_CHECK, JOURNAL, FRAME, TOTAL
+    }
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Stage.values().length];
+    private final long[][] clicks = new long[KEPT_CLICKS][];
+    private final String[] clickedTiles = new String[KEPT_CLICKS];
+    private final Path dumpFile;
+    private final ReadOnlyStringWrapper summary = new ReadOnlyStringWrapper("Click latency: -");
+    private int nextClick = 0;
+    private long clickCount = 0;
+
+    /**
+     * Creates a tracker dumping to {@code data/logs/click-latency.txt}.
+     */
+    public ClickLatencyTracker() {
+        this(Paths.get("data/logs/click-latency.txt"));
+    }
+
+    /**
+     * Creates a tracker.
+     *
+     * @param dumpFile the file written by {@link #dump()}.
+     */
+    public ClickLatencyTracker(Path dumpFile) {
+        this.dumpFile = dumpFile;
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Records a handled click. The frame stage is completed by the next layout pulse of the scene.
+     *
+     * @param scene the scene that renders the board, or null when the board is not shown.
+     * @param node the clicked node.
+     * @param game the game the node belongs to.
+     * @param inputTime the {@link System#nanoTime()} at the start of the click handler.
+     * @param commandTime the {@link System#nanoTime()} after the turn command was executed.
+     * @param journalTime the {@link System#nanoTime()} after the step was written to the journal.
+     */
+    public void clicked(Scene scene, GameNode node, Game game, long inputTime, long commandTime, long journalTime) {
+        long[] stages = new long[Stage.values().length];
+        long propagation = Math.min(game.getLastPropagationNanos(), commandTime - inputTime);
+        long winCheck = Math.min(game.getLastWinCheckNanos(), commandTime - inputTime - propagation);
+        stages[Stage.TURN.ordinal()] = commandTime - inputTime - propagation - winCheck;
+        stages[Stage.PROPAGATION.ordinal()] = propagation;
+        stages[Stage.WIN_CHECK.ordinal()] = winCheck;
+        stages[Stage.JOURNAL.ordinal()] = journalTime - commandTime;
+        String tile = node.getPosition().getRow() + " " + node.getPosition().getCol();
+
+        if (scene == null) {
+            complete(stages, tile, inputTime, journalTime);
+            return;
+        }
+        Runnable[] listener = new Runnable[1];
+        listener[0] = () -> {
+            scene.removePostLayoutPulseListener(listener[0]);
+            complete(stages, tile, inputTime, System.nanoTime());
+        };
+        scene.addPostLayoutPulseListener(listener[0]);
+    }
+
+    /**
+     * Finishes a click once its result was laid out for rendering.
+     *
+     * @param stages the stage durations measured so far.
+     * @param tile the position of the clicked tile.
+     * @param inputTime the start of the click.
+     * @param frameTime the time the frame with the result was laid out.
+     */
+    private void complete(long[] stages, String tile, long inputTime, long frameTime) {
+        long handled = 0;
+        for (int i = 0; i < Stage.FRAME.ordinal(); i++) {
+            handled += stages[i];
+        }
+        stages[Stage.FRAME.ordinal()] = Math.max(0, frameTime - inputTime - handled);
+        stages[Stage.TOTAL.ordinal()] = frameTime - inputTime;
+        for (Stage stage : Stage.values()) {
+            histograms[stage.ordinal()].record(stages[stage.ordinal()]);
+        }
+        clicks[nextClick] = stages;
+        clickedTiles[nextClick] = tile;
+        nextClick = (nextClick + 1) % KEPT_CLICKS;
+        clickCount++;
+
+        LatencyHistogram total = histograms[Stage.TOTAL.ordinal()];
+        summary.set(String.format("Click latency (n=%d)%np50 %.1f ms, p99 %.1f ms%nmax %.1f ms",
+                total.count(), total.percentile(50) / 1e6, total.percentile(99) / 1e6, total.max() / 1e6));
+    }
+
+    /**
+     * Returns a short text with the click latency percentiles, suitable for an overlay label.
+     *
+     * @return the summary property.
+     */
+    public ReadOnlyStringProperty summaryProperty() {
+        return summary.getReadOnlyProperty();
+    }
+
+    /**
+     * Returns the histogram of a stage.
+     *
+     * @param stage the stage.
+     * @return the histogram of the stage.
+     */
+    public LatencyHistogram histogram(Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    /**
+     * Writes the stage histograms and the kept per-click timings to the dump file.
+     *
+     * @return the path of the written file.
+     * @throws IOException If the file cannot be written.
+     */
+    public Path dump() throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("# click latency " + LocalDateTime.now() + ", clicks " + clickCount);
+        for (Stage stage : Stage.values()) {
+            lines.add("# " + stage.name().toLowerCase() + " " + histograms[stage.ordinal()]);
+        }
+        StringBuilder header = new StringBuilder("row col");
+        for (Stage stage : Stage.values()) {
+            header.append(' ').append(stage.name().toLowerCase()).append("_us");
+        }
+        lines.add(header.toString());
+        int kept = (int) Math.min(clickCount, KEPT_CLICKS);
+        for (int i = 0; i < kept; i++) {
+            int index = (int) ((clickCount - kept + i) % KEPT_CLICKS);
+            StringBuilder line = new StringBuilder(clickedTiles[index]);
+            for (long value : clicks[index]) {
+                line.append(' ').append(value / 1000);
+            }
+            lines.add(line.toString());
+        }
+        Files.createDirectories(dumpFile.toAbsolutePath().getParent());
+        Files.write(dumpFile, lines, StandardCharsets.UTF_8);
+        return dumpFile;
+    }
+
+    /**
+     * Returns whether the tracker was requested on the command line.
+     *
+     * @return true when {@value #PROPERTY} is set to true.
+     */
+    public static boolean isRequested() {
+        return Boolean.getBoolean(PROPERTY);
+    }
+}
@@ -0,0 +1,217 @@
+package project.gui;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import project.game.LatencyHistogram;
+
+/**
+ * The {@link FxStallWatchdog} class detects long stalls of the JavaFX Application Thread.
+ * <p>
+ * An {@link AnimationTimer} stamps every pulse, so the gap between two pulses is the length of a frame.
+ * A background sampler checks the last stamp every few milliseconds; while a frame is longer than the
+ * threshold it captures the stack of the JavaFX thread. The frames found on top of the sampled stacks are
+ * aggregated and periodically appended to a local log file together with the distribution of frame gaps.
+ * <p>
+ * The watchdog is opt-in ({@code -Delectrician.watchdog=true}) because the timer keeps JavaFX pulsing
+ * every frame even when nothing changes on screen.
+ */
+public class FxStallWatchdog {
+    /** System property that switches the watchdog on. */
+    public static final String PROPERTY = "electrician.watchdog";
+    /** System property with the stall threshold in milliseconds. */
+    public static final String THRESHOLD_PROPERTY = "electrician.watchdog.thresholdMs";
+
+    private static final long SAMPLE_INTERVAL_MILLIS = 5;
+    private static final long REPORT_INTERVAL_SECONDS = 30;
+    private static final int REPORTED_FRAMES = 10;
+
+    private final long thresholdNanos;
+    private final Path logFile;
+    private final LatencyHistogram gaps = new LatencyHistogram();
+    private final Map<String, LongAdder> topFrames = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> applicationFrames = new ConcurrentHashMap<>();
+    private final LongAdder stalls = new LongAdder();
+    private final LongAdder samples = new LongAdder();
+    private final AnimationTimer pulseTimer;
+    private ScheduledExecutorService sampler;
+    private volatile long lastPulse;
+    private volatile Thread fxThread;
+
+    /**
+     * Creates a watchdog with the threshold taken from {@value #THRESHOLD_PROPERTY} (32 ms by default)
+     * writing to {@code data/logs/fx-stalls.log}.
+     */
+    public FxStallWatchdog() {
+        this(Long.getLong(THRESHOLD_PROPERTY, 32), Paths.get("data/logs/fx-stalls.log"));
+    }
+
+    /**
+     * Creates a watchdog.
+     *
+     * @param thresholdMillis the frame length in milliseconds above which a frame is reported as a stall.
+     * @param logFile the file the aggregated reports are appended to.
+     */
+    public FxStallWatchdog(long thresholdMillis, Path logFile) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.logFile = logFile;
+        this.pulseTimer = new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                onPulse();
+            }
+        };
+    }
+
+    /**
+     * Starts measuring. Must be called on the JavaFX Application Thread.
+     */
+    public void start() {
+        if (sampler != null) {
+            return;
+        }
+        fxThread = Thread.currentThread();
+        lastPulse = System.nanoTime();
+        pulseTimer.start();
+        sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fx-stall-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sampler.scheduleAtFixedRate(this::sample, SAMPLE_INTERVAL_MILLIS, SAMPLE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        sampler.scheduleAtFixedRate(this::writeReport, REPORT_INTERVAL_SECONDS, REPORT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops measuring and writes the last report. Must be called on the JavaFX Application Thread.
+     */
+    public void stop() {
+        if (sampler == null) {
+            return;
+        }
+        pulseTimer.stop();
+        sampler.shutdownNow();
+        sampler = null;
+        writeReport();
+    }
+
+    /**
+     * Called on every pulse, records the gap since the previous one.
+     */
+    private void onPulse() {
+        long now = System.nanoTime();
+        long gap = now - lastPulse;
+        lastPulse = now;
+        gaps.record(gap);
+        if (gap > thresholdNanos) {
+            stalls.increment();
+        }
+    }
+
+    /**
+     * Called by the sampler thread, captures the JavaFX thread stack while the current frame is too long.
+     */
+    private void sample() {
+        Thread thread = fxThread;
+        if (thread == null || System.nanoTime() - lastPulse <= thresholdNanos) {
+            return;
+        }
+        StackTraceElement[] stack = thread.getStackTrace();
+        if (stack.length == 0) {
+            return;
+        }
+        samples.increment();
+        topFrames.computeIfAbsent(stack[0].toString(), key -> new LongAdder()).increment();
+        for (StackTraceElement frame : stack) {
+            if (frame.getClassName().startsWith("project.")) {
+                applicationFrames.computeIfAbsent(frame.toString(), key -> new LongAdder()).increment();
+                break;
+            }
+        }
+    }
+
+    /**
+     * Appends the aggregated report to the log file and starts a new aggregation period.
+     * Nothing is written when no stall was seen in the period.
+     */
+    private synchronized void writeReport() {
+        if (stalls.sum() == 0 && samples.sum() == 0) {
+            return;
+        }
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("%s stalls=%d samples=%d threshold=%dms",
+                LocalDateTime.now(), stalls.sum(), samples.sum(), TimeUnit.NANOSECONDS.toMillis(thresholdNanos)));
+        lines.add("  frame gaps " + gaps);
+        lines.add("  top frames:");
+        appendFrames(lines, topFrames);
+        lines.add("  top application frames:");
+        appendFrames(lines, applicationFrames);
+        try {
+            Files.createDirectories(logFile.toAbsolutePath().getParent());
+            Files.write(logFile, lines, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            System.err.println("Stall report could not be written: " + e.getMessage());
+        }
+        stalls.reset();
+        samples.reset();
+        gaps.reset();
+        topFrames.clear();
+        applicationFrames.clear();
+    }
+
+    /**
+     * Appends the most frequently sampled frames to the report.
+     *
+     * @param lines the report lines.
+     * @param frames the sample count of each frame.
+     */
+    private void appendFrames(List<String> lines, Map<String, LongAdder> frames) {
+        frames.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue().sum(), a.getValue().sum()))
+                .limit(REPORTED_FRAMES)
+                .forEach(e -> lines.add(String.format("    %6d  %s", e.getValue().sum(), e.getKey())));
+    }
+
+    /**
+     * Returns whether the watchdog was requested on the command line.
+     *
+     * @return true when {@value #PROPERTY} is set to true.
+     */
+    public static boolean isRequested() {
+        return Boolean.getBoolean(PROPERTY);
+    }
+
+    /**
+     * Starts a watchdog when it was requested on the command line.
+     *
+     * @return the running watchdog, or null when it was not requested.
+     */
+    public static FxStallWatchdog startIfRequested() {
+        if (!isRequested()) {
+            return null;
+        }
+        FxStallWatchdog watchdog = new FxStallWatchdog();
+        if (Platform.isFxApplicationThread()) {
+            watchdog.start();
+        } else {
+            Platform.runLater(watchdog::start);
+        }
+        return watchdog;
+    }
+}
@@ -1,11 +1,16 @@
 package project.gui;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import javafx.application.Platform;
 import javafx.scene.layout.ColumnConstraints;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.RowConstraints;
 import project.common.GameNode;
 
 import project.game.Game;
+import project.game.HintService;
 
 /**
  * The {@link GameBoardPreviewView} class represents a graphical preview of the game board.
@@ -14,10 +19,15 @@ import project.game.Game;
  * displaying each {@link GameNode} on the board in a grid layout. This class is used 
  * to generate a preview of the game board's current state, allowing users to view 
  * the layout of the game at any given point.
+ * <p>
+ * With a {@link HintService}, the turns left are refreshed whenever the service publishes a new solution.
  */
 public class GameBoardPreviewView extends GridPane{
     private final Game game;
     private final int tileSize = 50;
+    private final HintService hints;
+    private final List<GameNodePreviewView> nodeViews = new ArrayList<>();
+    private final Runnable hintListener = () -> Platform.runLater(this::refresh);
 
     /**
      * Creates a new {@link GameBoardPreviewView} for the given game.
@@ -25,7 +35,21 @@ public class GameBoardPreviewView extends GridPane{
      * @param game The {@link Game} whose board will be displayed.
      */
     public GameBoardPreviewView(Game game) {
+        this(game, null);
+    }
+
+    /**
+     * Creates a new {@link GameBoardPreviewView} for the given game showing the turns left from a hint service.
+     * 
+     * @param game The {@link Game} whose board will be displayed.
+     * @param hints The hint service of the game, or null to count towards the authored orientation.
+     */
+    public GameBoardPreviewView(Game game, HintService hints) {
         this.game = game;
+        this.hints = hints;
+        if (hints != null) {
+            hints.addUpdateListener(hintListener);
+        }
         this.setMinSize(tileSize * game.cols(), tileSize * game.rows());
         this.setMaxSize(tileSize * game.cols(), tileSize * game.rows());
         this.setPrefSize(tileSize * game.cols(), tileSize * game.rows());
@@ -58,7 +82,8 @@ public class GameBoardPreviewView extends GridPane{
         for (int r = 1; r <= game.rows(); r++) {
             for (int c = 1; c <= game.cols(); c++) {
                 GameNode node = grid[r][c];
-                GameNodePreviewView nodeView = new GameNodePreviewView(node);
+                GameNodePreviewView nodeView = new GameNodePreviewView(node, hints);
+                nodeViews.add(nodeView);
                 nodeView.setId("node");
                 nodeView.setMinSize(tileSize, tileSize);
                 nodeView.setMaxSize(tileSize, tileSize);
@@ -66,4 +91,22 @@ public class GameBoardPreviewView extends GridPane{
             }
         }
     }
+
+    /**
+     * Refreshes the turns left of all nodes.
+     */
+    private void refresh() {
+        for (GameNodePreviewView nodeView : nodeViews) {
+            nodeView.refresh();
+        }
+    }
+
+    /**
+     * Stops following the hint service, called when the preview is closed.
+     */
+    public void dispose() {
+        if (hints != null) {
+            hints.removeUpdateListener(hintListener);
+        }
+    }
 }
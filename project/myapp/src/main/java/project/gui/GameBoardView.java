@@ -1,12 +1,9 @@
 package project.gui;
 
-import java.io.BufferedWriter;
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
-
+import javafx.animation.PauseTransition;
 import javafx.scene.control.Button;
 import javafx.scene.layout.*;
+import javafx.util.Duration;
 import project.common.GameNode;
 import project.common.NodeType;
 import project.game.*;
@@ -22,10 +19,13 @@ import project.game.*;
 public class GameBoardView extends GridPane {
     private final Game game;
     private final int tileSize = 50;
-    private final CommandManager commandManager = new CommandManager();
+    private final CommandManager commandManager;
     private final Button undoButton;
     private final Button redoButton;
     private int noOfTurns = 0;
+    private ClickLatencyTracker latencyTracker;
+    private Checkpointer checkpointer;
+    private GameNodeView[][] nodeViews;
 
     /**
      * Creates a new {@link GameBoardView} for the given game with undo and redo buttons.
@@ -36,6 +36,7 @@ public class GameBoardView extends GridPane {
      */
     public GameBoardView(Game game, Button undoButton, Button redoButton) {
         this.game = game;
+        this.commandManager = new CommandManager(game);
         this.undoButton = undoButton;
         this.redoButton = redoButton;
         this.setMinSize(tileSize * game.cols(), tileSize * game.rows());
@@ -53,6 +54,7 @@ public class GameBoardView extends GridPane {
      */
     private void drawGameBoard() {
         GameNode[][] grid = game.getGame();
+        nodeViews = new GameNodeView[game.rows() + 1][game.cols() + 1];
 
         this.getColumnConstraints().clear();
         this.getRowConstraints().clear();
@@ -72,17 +74,22 @@ public class GameBoardView extends GridPane {
             for (int c = 1; c <= game.cols(); c++) {
                 GameNode node = grid[r][c];
                 GameNodeView nodeView = new GameNodeView(node);
+                nodeViews[r][c] = nodeView;
                 nodeView.setId("node");
                 nodeView.setMinSize(tileSize, tileSize);
                 nodeView.setMaxSize(tileSize, tileSize);
                 if (node.getType() != NodeType.EMPTY && node.getNumberOfSides() != 4) {
                     nodeView.setOnMouseClicked(event -> {
+                        long inputTime = System.nanoTime();
                         undoButton.setVisible(false);
                         redoButton.setVisible(false);
-                        TurnCommand cmd = new TurnCommand(node);
-                        commandManager.executeCommand(cmd);
+                        commandManager.executeTurn(node);
+                        long commandTime = System.nanoTime();
                         saveSteps(node);
                         this.noOfTurns++;
+                        if (latencyTracker != null) {
+                            latencyTracker.clicked(nodeView.getScene(), node, game, inputTime, commandTime, System.nanoTime());
+                        }
                     });
                 }
                 this.add(nodeView, c - 1, r - 1);
@@ -99,6 +106,39 @@ public class GameBoardView extends GridPane {
         return commandManager;
     }
 
+    /**
+     * Sets the tracker that measures the latency of clicks on the board.
+     *
+     * @param latencyTracker The tracker, or null to stop measuring.
+     */
+    public void setLatencyTracker(ClickLatencyTracker latencyTracker) {
+        this.latencyTracker = latencyTracker;
+    }
+
+    /**
+     * Highlights the tile of a hint for a moment.
+     *
+     * @param hint The hint to show.
+     */
+    public void showHint(HintService.Hint hint) {
+        GameNodeView nodeView = nodeViews[hint.row()][hint.col()];
+        if (!nodeView.getStyleClass().contains("hint-node")) {
+            nodeView.getStyleClass().add("hint-node");
+        }
+        PauseTransition delay = new PauseTransition(Duration.seconds(1.5));
+        delay.setOnFinished(e -> nodeView.getStyleClass().remove("hint-node"));
+        delay.play();
+    }
+
+    /**
+     * Sets the checkpointer that periodically saves the board while the steps are journaled.
+     *
+     * @param checkpointer The checkpointer, or null while the level is not saved yet.
+     */
+    public void setCheckpointer(Checkpointer checkpointer) {
+        this.checkpointer = checkpointer;
+    }
+
      /**
      * Returns the number of turns taken so far.
      * 
@@ -109,22 +149,32 @@ public class GameBoardView extends GridPane {
     }
 
     /**
-     * Saves the current step to a file for future reference.
+     * Saves the current step to a file for future reference. The line is appended by the {@link SaveWriter}
+     * on its background thread, followed by a checkpoint of the board when one is due.
      * 
      * @param node The {@link GameNode} whose state is being saved.
      */
     public void saveSteps(GameNode node) {
-        try {
-            File file = new File("data/currentLevel/steps.txt");
-            BufferedWriter writer = new BufferedWriter(new FileWriter(file, true));
-
-            // Zápis do súboru
-            writer.write(node.toString() + "\n");
-            // Ukončenie zápisu
-            writer.close();
-
-        } catch (IOException e) {
-            e.printStackTrace();
+        String line = node.toString() + "\n";
+        int row = node.getPosition().getRow();
+        int col = node.getPosition().getCol();
+        SaveWriter.shared().append(SavedGame.STEPS, writer -> {
+            SaveEvent event = new SaveEvent();
+            event.begin();
+            writer.write(line);
+            if (event.shouldCommit()) {
+                event.path = SavedGame.STEPS.toString();
+                event.kind = "steps";
+                event.rows = game.rows();
+                event.cols = game.cols();
+                event.row = row;
+                event.col = col;
+                event.nodes = 1;
+                event.commit();
+            }
+        });
+        if (checkpointer != null) {
+            checkpointer.stepSaved(game);
         }
     }
 }
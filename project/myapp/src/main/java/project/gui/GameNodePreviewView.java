@@ -5,6 +5,7 @@ import javafx.scene.shape.Rectangle;
 import javafx.scene.text.Text;
 import javafx.scene.text.TextBoundsType;
 import project.common.*;
+import project.game.HintService;
 
 /**
  * The {@link GameNodePreviewView} class represents a visual preview of a {@link GameNode}.
@@ -13,9 +14,14 @@ import project.common.*;
  * uses a rectangle to represent the node and text to display the number of turns remaining
  * before the node becomes "good". The view updates its style dynamically based on the node's state.
  * It also implements the {@link Observer} interface to respond to changes in the {@link GameNode}.
+ * <p>
+ * When a {@link HintService} is given, the turns left are counted towards its solution of the board, which
+ * is right also for levels with several solutions; until it has one, they are counted towards the authored
+ * orientation.
  */
 public class GameNodePreviewView extends Pane implements Observer {
     private GameNode node;
+    private final HintService hints;
     private Rectangle rectangle;
     private Text nodeText;
     private int turnsToBeGood;
@@ -29,8 +35,19 @@ public class GameNodePreviewView extends Pane implements Observer {
      * @param node The {@link GameNode} to be displayed.
      */
     public GameNodePreviewView(GameNode node) {
+        this(node, null);
+    }
+
+    /**
+     * Creates a new preview view for the given {@link GameNode} showing the turns left from a hint service.
+     * 
+     * @param node The {@link GameNode} to be displayed.
+     * @param hints The hint service of the game, or null to count towards the authored orientation.
+     */
+    public GameNodePreviewView(GameNode node, HintService hints) {
         this.node = node;
-        turnsToBeGood = this.node.getNumberOfTurns();
+        this.hints = hints;
+        turnsToBeGood = turnsLeft();
         
         if (node instanceof Observable observable) {
             observable.addObserver(this);
@@ -56,7 +73,7 @@ public class GameNodePreviewView extends Pane implements Observer {
         
         // Only apply styles to non-empty nodes
         if (node.getType() != NodeType.EMPTY) {
-            if (node.getNumberOfTurns() == 0) {
+            if (turnsToBeGood == 0) {
                 this.getStyleClass().add(POWERED_CLASS);
             } else {
                 this.getStyleClass().add(UNPOWERED_CLASS);
@@ -129,10 +146,35 @@ public class GameNodePreviewView extends Pane implements Observer {
         if (observable instanceof GameNode gameNode) {
             // Update the text regardless of node type (as long as it's not empty)
             if (gameNode.getType() != NodeType.EMPTY && gameNode.getSides().length < 4) {
-                turnsToBeGood = gameNode.getNumberOfTurns();
-                nodeText.setText(String.valueOf(turnsToBeGood));
-                updateNodeStyle();
+                refresh();
+            }
+        }
+    }
+
+    /**
+     * Recomputes the turns left, e.g. after the hint service found a new solution.
+     */
+    public void refresh() {
+        if (node.getType() == NodeType.EMPTY || node.getSides().length == 4) {
+            return;
+        }
+        turnsToBeGood = turnsLeft();
+        nodeText.setText(String.valueOf(turnsToBeGood));
+        updateNodeStyle();
+    }
+
+    /**
+     * Returns the number of turns left, from the hint service when it knows a solution.
+     *
+     * @return the number of turns left.
+     */
+    private int turnsLeft() {
+        if (hints != null) {
+            int turns = hints.turnsLeft(node.getPosition().getRow(), node.getPosition().getCol());
+            if (turns >= 0) {
+                return turns;
             }
         }
+        return node.getNumberOfTurns();
     }
 }
\ No newline at end of file
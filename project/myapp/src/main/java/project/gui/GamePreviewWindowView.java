@@ -31,9 +31,21 @@ public class GamePreviewWindowView extends Stage {
      * @param game The game whose board will be previewed.
      */
     public GamePreviewWindowView(Game game) {
+        this(game, null);
+    }
+
+    /**
+     * Constructs the {@link GamePreviewWindowView} for the given {@link Game}, with the turns left counted
+     * towards the solution of a {@link HintService}.
+     *
+     * @param game The game whose board will be previewed.
+     * @param hints The hint service of the game, or null to count towards the authored orientation.
+     */
+    public GamePreviewWindowView(Game game, HintService hints) {
         this.setTitle("Game Preview");
         
-        GameBoardPreviewView previewBoard = new GameBoardPreviewView(game);
+        GameBoardPreviewView previewBoard = new GameBoardPreviewView(game, hints);
+        this.setOnHidden(event -> previewBoard.dispose());
         
         BorderPane mainLayout = new BorderPane();
         mainLayout.setCenter(previewBoard);
@@ -0,0 +1,131 @@
+package project.gui;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import project.game.Game;
+import project.game.LevelTemplate;
+import project.game.LevelTemplateCache;
+
+/**
+ * The {@link LevelPreloader} class prepares the next level on a background thread while the current one
+ * is being played.
+ * <p>
+ * The level is parsed through the {@link LevelTemplateCache}, its {@link Game} is created and powered, and
+ * the {@link GameBoardView} is built before it is needed. Scene graph nodes may be created off the JavaFX
+ * Application Thread as long as they are not attached to a showing window, so pressing Next Level only swaps
+ * the prepared view in. Only one level is preloaded at a time; asking for any other level cancels it.
+ * All methods must be called on the JavaFX Application Thread.
+ */
+public class LevelPreloader {
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "level-preloader");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private final Function<Game, GameBoardView> viewFactory;
+    private Future<PreloadedLevel> pending;
+    private String pendingPath;
+
+    /**
+     * A level prepared in the background.
+     *
+     * @param path the path of the level file.
+     * @param game the powered game of the level.
+     * @param view the board view of the game, not yet attached to the scene.
+     */
+    public record PreloadedLevel(String path, Game game, GameBoardView view) {
+    }
+
+    /**
+     * Creates a preloader.
+     *
+     * @param viewFactory creates the board view of a preloaded game.
+     */
+    public LevelPreloader(Function<Game, GameBoardView> viewFactory) {
+        this.viewFactory = viewFactory;
+    }
+
+    /**
+     * Starts preparing a level in the background, cancelling any other preloaded level.
+     *
+     * @param path the path of the level file.
+     */
+    public void preload(String path) {
+        if (path.equals(pendingPath)) {
+            return;
+        }
+        cancel();
+        pendingPath = path;
+        pending = executor.submit(() -> prepare(path));
+    }
+
+    /**
+     * Takes the preloaded level if it is the requested one. When it is still being prepared, waits for it,
+     * because that is never slower than starting over. Any other preloaded level is cancelled.
+     *
+     * @param path the path of the requested level file.
+     * @return the prepared level, or null when the level has to be loaded directly.
+     */
+    public PreloadedLevel take(String path) {
+        if (pending == null || !path.equals(pendingPath)) {
+            cancel();
+            return null;
+        }
+        Future<PreloadedLevel> future = pending;
+        pending = null;
+        pendingPath = null;
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | CancellationException e) {
+            System.err.println("Preloading of " + path + " failed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Cancels the level being preloaded, if any.
+     */
+    public void cancel() {
+        if (pending != null) {
+            pending.cancel(true);
+        }
+        pending = null;
+        pendingPath = null;
+    }
+
+    /**
+     * Stops the background thread.
+     */
+    public void shutdown() {
+        cancel();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Prepares a level on the background thread, checking for cancellation between the steps.
+     *
+     * @param path the path of the level file.
+     * @return the prepared level, or null when it was cancelled.
+     */
+    private PreloadedLevel prepare(String path) {
+        LevelTemplate template = LevelTemplateCache.shared().get(path);
+        if (Thread.currentThread().isInterrupted()) {
+            return null;
+        }
+        Game game = Game.create(template);
+        game.init();
+        if (Thread.currentThread().isInterrupted()) {
+            return null;
+        }
+        return new PreloadedLevel(path, game, viewFactory.apply(game));
+    }
+}
@@ -0,0 +1,375 @@
+package project.gui;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import javafx.scene.image.Image;
+import project.common.NodeType;
+import project.common.Side;
+import project.game.BoardState;
+import project.game.GameLoader;
+import project.game.LevelCatalog;
+import project.game.LevelTemplate;
+import project.game.RandomizeGame;
+
+/**
+ * The {@link LevelThumbnails} class provides small preview images of levels for the level picker.
+ * <p>
+ * A thumbnail is rendered in software into a pixel array, without any {@link project.game.Game} or scene graph
+ * node, from the scramble of the level with a fixed seed, so it shows the shape of the level without giving its
+ * solution away. The colours follow gamenode.css. Thumbnails are stored as PNG files in a disk cache keyed by a
+ * hash of the level content and the rendering parameters, so renamed or copied levels share their thumbnail
+ * and changed levels get a new one. Requests are served by a pool of background threads, newest first, so the
+ * rows that were just scrolled into view are rendered before the ones that were scrolled past, and the last
+ * images are kept in memory. Running the class renders the thumbnails of a whole directory in parallel
+ * ({@code LevelThumbnails <directory> [tileSize]}).
+ */
+public class LevelThumbnails {
+    /** Default directory of the cached thumbnails. */
+    public static final Path CACHE = Paths.get("data", "thumbnails");
+    /** Default size of one tile in pixels. */
+    public static final int DEFAULT_TILE_SIZE = 8;
+
+    /** Changes whenever the drawing changes, so that old cached files are not used any more. */
+    private static final int RENDER_VERSION = 1;
+    private static final long SCRAMBLE_SEED = 0;
+    private static final int MEMORY_CAPACITY = 512;
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+
+    private static final int EMPTY = 0xa9a9a9;
+    private static final int NODE = 0xd3d3d3;
+    private static final int SOURCE = 0xf0f8ff;
+    private static final int OUTLINE = 0x000000;
+    private static final int WIRE = 0x3137fd;
+    private static final int POWERED_WIRE = 0xffff00;
+    private static final int BULB = 0xdddddd;
+    private static final int POWERED_BULB = 0xffff00;
+
+    private final Path cache;
+    private final int tileSize;
+    private final ExecutorService executor;
+    private final Map<String, CompletableFuture<Image>> images = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CompletableFuture<Image>> eldest) {
+            return size() > MEMORY_CAPACITY;
+        }
+    };
+
+    /**
+     * Creates the thumbnails of the default cache directory.
+     */
+    public LevelThumbnails() {
+        this(CACHE, DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * Creates the thumbnails of a cache directory.
+     *
+     * @param cache the directory of the cached PNG files, created when needed.
+     * @param tileSize the size of one tile in pixels, at least 4.
+     */
+    public LevelThumbnails(Path cache, int tileSize) {
+        if (tileSize < 4) {
+            throw new IllegalArgumentException("tile size must be at least 4: " + tileSize);
+        }
+        this.cache = cache;
+        this.tileSize = tileSize;
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        // a deque used as a stack: the newest request is taken first
+        LinkedBlockingDeque<Runnable> queue = new LinkedBlockingDeque<>() {
+            @Override
+            public boolean offer(Runnable runnable) {
+                return offerFirst(runnable);
+            }
+        };
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, queue, runnable -> {
+            Thread thread = new Thread(runnable, "level-thumbnails");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns the thumbnail of a level, rendering it in the background when it is not cached. Must be called
+     * on the JavaFX Application Thread.
+     *
+     * @param level the level.
+     * @return the future image, completed with null when the level cannot be read.
+     */
+    public CompletableFuture<Image> image(LevelCatalog.Entry level) {
+        String key = level.path() + '\t' + level.modified() + '\t' + level.size();
+        CompletableFuture<Image> image = images.get(key);
+        if (image == null) {
+            image = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return new Image(new ByteArrayInputStream(Files.readAllBytes(file(level.path()))));
+                } catch (IOException | IllegalArgumentException e) {
+                    e.printStackTrace();
+                    return null;
+                }
+            }, executor);
+            images.put(key, image);
+        }
+        return image;
+    }
+
+    /**
+     * Returns the cached PNG file of a level, rendering and storing it first when it is missing.
+     *
+     * @param path the path of the level file.
+     * @return the PNG file.
+     * @throws IOException If the thumbnail cannot be stored.
+     * @throws IllegalArgumentException if the level cannot be read.
+     */
+    public Path file(String path) throws IOException {
+        BoardState board = RandomizeGame.scramble(new GameLoader(path).toTemplate(), SCRAMBLE_SEED);
+        Path file = cache.resolve(key(board.topology()) + ".png");
+        if (Files.isRegularFile(file)) {
+            return file;
+        }
+        byte[] png = encodePng(render(board, tileSize), board.cols() * tileSize, board.rows() * tileSize);
+        Files.createDirectories(cache);
+        Path temp = Files.createTempFile(cache, file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, png);
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return file;
+    }
+
+    /**
+     * Stops the background threads; pending thumbnails are dropped.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @param level a level.
+     * @return the hexadecimal cache key of the level and the rendering parameters.
+     */
+    private String key(LevelTemplate level) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((RENDER_VERSION + "/" + SCRAMBLE_SEED + "/" + level.rows() + "x" + level.cols())
+                    .getBytes(StandardCharsets.US_ASCII));
+            digest.update(level.cells());
+            return HexFormat.of().formatHex(digest.digest(), 0, 16) + "-" + tileSize;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Renders a board.
+     *
+     * @param board the board.
+     * @param tileSize the size of one tile in pixels.
+     * @return the RGB pixels, row by row.
+     */
+    static int[] render(BoardState board, int tileSize) {
+        int width = board.cols() * tileSize;
+        int[] pixels = new int[width * board.rows() * tileSize];
+        int wire = Math.max(2, tileSize / 4);
+        int center = tileSize / 2;
+        for (int i = 0; i < board.size(); i++) {
+            int x0 = (i % board.cols()) * tileSize;
+            int y0 = (i / board.cols()) * tileSize;
+            NodeType type = board.type(i);
+            boolean powered = type != NodeType.EMPTY && board.isPowered(i);
+            fill(pixels, width, x0, y0, tileSize, tileSize,
+                    type == NodeType.EMPTY ? EMPTY : type == NodeType.SOURCE ? SOURCE : NODE);
+            int color = powered ? POWERED_WIRE : WIRE;
+            int from = center - wire / 2;
+            int to = center + wire / 2;
+            for (Side side : Side.fromMask(board.mask(i))) {
+                switch (side) {
+                    case NORTH -> fill(pixels, width, x0 + from, y0, wire, to, color);
+                    case SOUTH -> fill(pixels, width, x0 + from, y0 + from, wire, tileSize - from, color);
+                    case WEST -> fill(pixels, width, x0, y0 + from, to, wire, color);
+                    case EAST -> fill(pixels, width, x0 + from, y0 + from, tileSize - from, wire, color);
+                }
+            }
+            if (type == NodeType.BULB || type == NodeType.SOURCE) {
+                int fillColor = type == NodeType.SOURCE ? SOURCE : powered ? POWERED_BULB : BULB;
+                disc(pixels, width, x0 + center, y0 + center, tileSize * 3 / 8, fillColor);
+            }
+            // the grid: the top and left edge of every tile
+            fill(pixels, width, x0, y0, tileSize, 1, OUTLINE);
+            fill(pixels, width, x0, y0, 1, tileSize, OUTLINE);
+        }
+        return pixels;
+    }
+
+    /**
+     * Fills a rectangle.
+     *
+     * @param pixels the pixels.
+     * @param width the width of the image.
+     * @param x the left edge.
+     * @param y the top edge.
+     * @param w the width of the rectangle.
+     * @param h the height of the rectangle.
+     * @param rgb the colour.
+     */
+    private static void fill(int[] pixels, int width, int x, int y, int w, int h, int rgb) {
+        for (int row = y; row < y + h; row++) {
+            Arrays.fill(pixels, row * width + x, row * width + x + w, rgb);
+        }
+    }
+
+    /**
+     * Draws a filled disc with a black outline.
+     *
+     * @param pixels the pixels.
+     * @param width the width of the image.
+     * @param cx the x of the centre.
+     * @param cy the y of the centre.
+     * @param radius the radius.
+     * @param rgb the fill colour.
+     */
+    private static void disc(int[] pixels, int width, int cx, int cy, int radius, int rgb) {
+        int outer = radius * radius;
+        int inner = (radius - 1) * (radius - 1);
+        for (int dy = -radius; dy < radius; dy++) {
+            for (int dx = -radius; dx < radius; dx++) {
+                // distance from the centre of the pixel, doubled to stay in integers
+                int ddx = 2 * dx + 1;
+                int ddy = 2 * dy + 1;
+                int distance = ddx * ddx + ddy * ddy;
+                if (distance <= 4 * outer) {
+                    pixels[(cy + dy) * width + cx + dx] = distance > 4 * inner ? OUTLINE : rgb;
+                }
+            }
+        }
+    }
+
+    /**
+     * Encodes pixels as an 8 bit RGB PNG image. Every row uses the Sub filter, which turns the flat areas of a
+     * thumbnail into runs of zeros.
+     *
+     * @param pixels the RGB pixels, row by row.
+     * @param width the width of the image.
+     * @param height the height of the image.
+     * @return the PNG file content.
+     */
+    static byte[] encodePng(int[] pixels, int width, int height) {
+        try {
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            try (DeflaterOutputStream out = new DeflaterOutputStream(data, deflater)) {
+                byte[] row = new byte[1 + width * 3];
+                row[0] = 1;
+                for (int y = 0; y < height; y++) {
+                    int previous = 0;
+                    for (int x = 0; x < width; x++) {
+                        int rgb = pixels[y * width + x];
+                        row[1 + x * 3] = (byte) ((rgb >>> 16) - (previous >>> 16));
+                        row[2 + x * 3] = (byte) ((rgb >>> 8) - (previous >>> 8));
+                        row[3 + x * 3] = (byte) (rgb - previous);
+                        previous = rgb;
+                    }
+                    out.write(row);
+                }
+            } finally {
+                deflater.end();
+            }
+            ByteArrayOutputStream png = new ByteArrayOutputStream(data.size() + 64);
+            DataOutputStream out = new DataOutputStream(png);
+            out.write(PNG_SIGNATURE);
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            DataOutputStream headerOut = new DataOutputStream(header);
+            headerOut.writeInt(width);
+            headerOut.writeInt(height);
+            // bit depth 8, colour type RGB, deflate, adaptive filtering, no interlace
+            headerOut.write(new byte[] {8, 2, 0, 0, 0});
+            writeChunk(out, "IHDR", header.toByteArray());
+            writeChunk(out, "IDAT", data.toByteArray());
+            writeChunk(out, "IEND", new byte[0]);
+            return png.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes a PNG chunk.
+     *
+     * @param out the stream.
+     * @param type the chunk type.
+     * @param data the chunk data.
+     * @throws IOException If writing fails.
+     */
+    private static void writeChunk(DataOutputStream out, String type, byte[] data) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+        out.writeInt(data.length);
+        out.write(typeBytes);
+        out.write(data);
+        out.writeInt((int) crc.getValue());
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("usage: LevelThumbnails <directory> [tileSize]");
+            System.exit(2);
+        }
+        LevelThumbnails thumbnails = new LevelThumbnails(CACHE,
+                args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_TILE_SIZE);
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(Paths.get(args[0]))) {
+            files = listing.filter(Files::isRegularFile).toList();
+        } catch (IOException e) {
+            e.printStackTrace();
+            System.exit(1);
+            return;
+        }
+        long start = System.nanoTime();
+        long rendered = files.parallelStream().filter(file -> {
+            try {
+                thumbnails.file(file.toString());
+                return true;
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println(file + ": " + e.getMessage());
+                return false;
+            }
+        }).count();
+        System.out.printf("%d of %d thumbnails ready in %s in %.1f s%n", rendered, files.size(), CACHE,
+                (System.nanoTime() - start) / 1e9);
+        thumbnails.shutdown();
+    }
+}
@@ -1,16 +1,32 @@
 package project.gui;
 
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+
 import javafx.animation.PauseTransition;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.Tooltip;
 import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Pane;
+import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
 import javafx.scene.text.Text;
 import javafx.stage.Stage;
@@ -56,6 +72,24 @@ public class MainWindow extends Application {
     private Pane intro;
     private Button undoButton;
     private Button redoButton;
+    private FxStallWatchdog watchdog;
+    private ClickLatencyTracker latencyTracker;
+    private LevelPreloader preloader;
+    private final LevelThumbnails thumbnails = new LevelThumbnails();
+    /** Directory of the generated levels that were played, so that they can be saved and restored. */
+    private static final Path GENERATED = Paths.get("data", "generated");
+    /** The level file being played, or null when the game was not created from one. */
+    private Path playingLevel;
+    private static final double[] RANDOM_BAND = LevelAnalyzer.band("medium");
+    /** Medium 8x8 levels for the New Random Level button, generated on half of the cores. */
+    private final LevelGeneratorPool randomLevels = new LevelGeneratorPool(8, 8, 0, RANDOM_BAND[0], RANDOM_BAND[1],
+            4, Math.max(1, Runtime.getRuntime().availableProcessors() / 2), ThreadLocalRandom.current().nextLong());
+    private Button randomButton;
+    private LiveStateFile liveState;
+    private HintService hints;
+    private CompletableFuture<Integer> par;
+    private LevelCatalog catalog;
+    private ListView<LevelCatalog.Entry> levelList;
 
     /**
      * The entry point for the Electrician game application. Initializes the game and the primary stage.
@@ -66,13 +100,17 @@ public class MainWindow extends Application {
     @Override
     public void start(Stage primaryStage) {
         game = Game.create(cols, rows);
+        if (ClickLatencyTracker.isRequested()) {
+            latencyTracker = new ClickLatencyTracker();
+        }
         mainLayout = new BorderPane();
+        preloader = new LevelPreloader(this::createGameBoardView);
         VBox leftPanel = createLeftPanel();
         leftPanel.setId("leftPanel");
         mainLayout.setLeft(leftPanel);
 
 
-        gameBoardView = new GameBoardView(game, undoButton, redoButton);
+        gameBoardView = createGameBoardView(game);
         intro = createIntro();
         mainLayout.setCenter(intro);
 
@@ -96,6 +134,49 @@ public class MainWindow extends Application {
                 gamePreview.close();
             }
         });
+        watchdog = FxStallWatchdog.startIfRequested();
+        loadCatalog();
+        randomLevels.start();
+    }
+
+    /**
+     * Opens the {@link LevelCatalog} on a background thread, so that startup does not wait for new levels to be
+     * analyzed, and fills the level list once it is ready.
+     */
+    private void loadCatalog() {
+        Thread thread = new Thread(() -> {
+            try {
+                LevelCatalog loaded = LevelCatalog.open();
+                Platform.runLater(() -> {
+                    catalog = loaded;
+                    levelList.setPlaceholder(new Label("No levels found"));
+                    levelList.getItems().setAll(loaded.levels());
+                });
+            } catch (IOException e) {
+                e.printStackTrace();
+                Platform.runLater(() -> levelList.setPlaceholder(new Label("Levels cannot be read")));
+            }
+        }, "level-catalog");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Called when the application exits. Stops the diagnostics and writes their last report.
+     */
+    @Override
+    public void stop() {
+        preloader.shutdown();
+        thumbnails.shutdown();
+        randomLevels.shutdown();
+        if (hints != null) {
+            hints.shutdown();
+        }
+        SaveWriter.shared().flush();
+        closeLiveState();
+        if (watchdog != null) {
+            watchdog.stop();
+        }
     }
 
     /**
@@ -111,56 +192,53 @@ public class MainWindow extends Application {
         Text headline = new Text("MENU");
         headline.getStyleClass().add("headline");
 
-        Button levelButton = createButton("Level 1", "levelButton");
-        levelButton.setOnAction(event -> {
-            undoButton.setVisible(false);
-            redoButton.setVisible(false);
-            LoadGame(1);
-        });
-
-        Button levelButton2 = createButton("Level 2", "levelButton");
-        levelButton2.setOnAction(event -> {
-            undoButton.setVisible(false);
-            redoButton.setVisible(false);
-            LoadGame(2);
-        });
-
-        Button levelButton3 = createButton("Level 3", "levelButton");
-        levelButton3.setOnAction(event -> {
-            undoButton.setVisible(false);
-            redoButton.setVisible(false);
-            LoadGame(3);
-        });
+        levelList = createLevelList();
 
-        Button levelButton4 = createButton("Level 4", "levelButton");
-        levelButton4.setOnAction(event -> {
+        randomButton = createButton("New Random Level", "levelButton");
+        randomButton.setOnAction(event -> {
             undoButton.setVisible(false);
             redoButton.setVisible(false);
-            LoadGame(4);
+            loadRandomLevel();
         });
 
         Button loadButton = createButton("Load Last Game", "loadButton");
         loadButton.setOnAction(event -> {
+            Game restored = restoreLiveState();
+            SavedGame.Restored saved = restored == null ? SavedGame.restore() : null;
+            if (restored == null && saved == null) {
+                // nothing to load, the current game goes on
+                return;
+            }
             this.game.setWin(false);
             undoButton.setVisible(true);
             redoButton.setVisible(true);
-            GameLoader loader = new GameLoader("data/currentLevel/levelData.txt");
-            game = Game.create(loader.x, loader.y);
-            loader.SetUpGame(game);
+            preloader.cancel();
+            cancelPar();
+            game = restored != null ? restored : saved.game();
+            String lastPath = restored != null ? liveState.levelPath() : saved.levelPath();
+            playingLevel = lastPath == null ? null : Paths.get(lastPath);
             //lambda implmentation of onGameWin(boolean isWin)
             game.addGameWinListener(isWin -> {
                 if (isWin) {
-                    int currentLevel = 1; 
-                    // after load next level ist first
-                    Pane winPane = createWinMessage(currentLevel);
+                    // the level following the restored one, or the first one when it is not in the catalog
+                    LevelCatalog.Entry next = catalog == null ? null
+                            : catalog.find(lastPath) != null ? catalog.after(lastPath) : catalog.first();
+                    Pane winPane = createWinMessage(next == null ? null : () -> LoadGame(next));
                     mainLayout.setCenter(winPane);
                 }
             });
             game.init();
 
-            gameBoardView = new GameBoardView(game, undoButton, redoButton);
+            gameBoardView = createGameBoardView(game);
             mainLayout.setCenter(gameBoardView);
-            gameBoardView.getCommandManager().loadCommandsFromFile("data/currentLevel/steps.txt", game);
+            trackHints(game);
+            if (saved != null) {
+                // only the steps after the restored checkpoint are replayed
+                gameBoardView.getCommandManager().loadCommandsFromFile(SavedGame.STEPS.toString(), game, saved.step());
+                if (saved.levelPath() != null) {
+                    gameBoardView.setCheckpointer(new Checkpointer(saved.levelPath(), saved.journalEnd()));
+                }
+            }
         });
 
         Button previewButton = createButton("Preview Game", "previewButton");
@@ -170,7 +248,7 @@ public class MainWindow extends Application {
                 gamePreview.toFront(); 
                 return; 
             }
-            gamePreview = new GamePreviewWindowView(game);           
+            gamePreview = new GamePreviewWindowView(game, hints);           
             gamePreview.show();
         });
 
@@ -181,13 +259,119 @@ public class MainWindow extends Application {
 
         undoButton.setVisible(false);
         redoButton.setVisible(false);
+
+        Button hintButton = createButton("Hint", "control");
+        hintButton.setOnAction(event -> {
+            HintService.Hint hint = hints != null ? hints.hint() : null;
+            if (hint != null) {
+                gameBoardView.showHint(hint);
+            }
+        });
       
 
-        leftPanel.getChildren().addAll(headline, levelButton, levelButton2, levelButton3, levelButton4,undoButton,redoButton, loadButton, previewButton);
+        leftPanel.getChildren().addAll(headline, levelList, randomButton, undoButton,redoButton, loadButton, previewButton, hintButton);
+        if (latencyTracker != null) {
+            leftPanel.getChildren().addAll(createLatencyOverlay());
+        }
         leftPanel.setMinWidth(leftPanelWidth);
         return leftPanel;
     }
 
+    /**
+     * Creates the list of levels. The list is virtualized, only the visible rows have cells, so it stays fast
+     * with thousands of levels. Each row shows the {@link LevelThumbnails} image of its level once it is ready.
+     * Clicking a level starts it.
+     *
+     * @return The list, filled once the {@link LevelCatalog} is loaded.
+     */
+    private ListView<LevelCatalog.Entry> createLevelList() {
+        ListView<LevelCatalog.Entry> list = new ListView<>();
+        list.setId("levelList");
+        list.setPlaceholder(new Label("Loading levels..."));
+        list.setPrefHeight(300);
+        VBox.setVgrow(list, Priority.ALWAYS);
+        list.setCellFactory(view -> {
+            ListCell<LevelCatalog.Entry> cell = new ListCell<>() {
+                private final ImageView thumbnail = new ImageView();
+
+                {
+                    // large levels are scaled down to the size of a usual one
+                    thumbnail.setFitWidth(64);
+                    thumbnail.setFitHeight(64);
+                    thumbnail.setPreserveRatio(true);
+                }
+
+                @Override
+                protected void updateItem(LevelCatalog.Entry level, boolean empty) {
+                    super.updateItem(level, empty);
+                    thumbnail.setImage(null);
+                    if (empty || level == null) {
+                        setText(null);
+                        setGraphic(null);
+                        return;
+                    }
+                    setText(level.name() + "  " + level.rows() + "x" + level.cols() + "  " + level.rating());
+                    setGraphic(thumbnail);
+                    CompletableFuture<Image> image = thumbnails.image(level);
+                    if (image.isDone()) {
+                        thumbnail.setImage(image.getNow(null));
+                    } else {
+                        // the cell may show another level by the time the image is ready
+                        image.thenAccept(ready -> Platform.runLater(() -> {
+                            if (level.equals(getItem())) {
+                                thumbnail.setImage(ready);
+                            }
+                        }));
+                    }
+                }
+            };
+            cell.setOnMouseClicked(event -> {
+                if (!cell.isEmpty()) {
+                    undoButton.setVisible(false);
+                    redoButton.setVisible(false);
+                    LoadGame(cell.getItem());
+                }
+            });
+            return cell;
+        });
+        return list;
+    }
+
+    /**
+     * Creates the click latency overlay: a label with the current percentiles and a button
+     * that dumps the measured clicks to a file, whose tooltip then names the file.
+     *
+     * @return the nodes of the overlay.
+     */
+    private Node[] createLatencyOverlay() {
+        Label latencyLabel = new Label();
+        latencyLabel.getStyleClass().add("node-label");
+        latencyLabel.textProperty().bind(latencyTracker.summaryProperty());
+
+        Button dumpButton = createButton("Dump Latency", "control");
+        dumpButton.setOnAction(event -> {
+            try {
+                dumpButton.setTooltip(new Tooltip("Click latency written to " + latencyTracker.dump()));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+        return new Node[] {latencyLabel, dumpButton};
+    }
+
+    /**
+     * Creates the view of a game with the undo and redo buttons and the click latency tracker attached.
+     * Also used by the {@link LevelPreloader} on its background thread.
+     *
+     * @param game The game to display.
+     * @return A new {@link GameBoardView} of the game.
+     */
+    private GameBoardView createGameBoardView(Game game) {
+        GameBoardView view = new GameBoardView(game, undoButton, redoButton);
+        view.setLatencyTracker(latencyTracker);
+        return view;
+    }
+
     public static void main(String[] args) {
         launch(args);
     }
@@ -301,41 +485,218 @@ public class MainWindow extends Application {
     }
 
 
+    /**
+     * Launches a level of the {@link LevelCatalog} and selects it in the level list. Afterwards the following
+     * level starts preloading, so that Next Level is instant.
+     *
+     * @param level The level to load.
+     */
+    private void LoadGame(LevelCatalog.Entry level){
+        LevelCatalog.Entry next = catalog.after(level.path());
+        levelList.getSelectionModel().select(level);
+        LoadGame(level.path(), next == null ? null : () -> LoadGame(next));
+        if (next != null) {
+            preloader.preload(next.path());
+        }
+    }
+
+    /**
+     * Launches a freshly generated level from the {@link LevelGeneratorPool}. The level is written into the
+     * generated directory first, because saving and restoring the game refer to the level file. The levels
+     * written before are deleted, except the one being played and those the saved game refers to, so the
+     * directory does not grow in an endless session. When no level is ready yet, the button stays disabled
+     * until one is.
+     */
+    private void loadRandomLevel() {
+        randomButton.setDisable(true);
+        Path playing = playingLevel;
+        Thread thread = new Thread(() -> {
+            try {
+                LevelGeneratorPool.Generated level = randomLevels.take();
+                pruneGenerated(playing);
+                Path file = level.write(GENERATED);
+                Platform.runLater(() -> {
+                    randomButton.setDisable(false);
+                    levelList.getSelectionModel().clearSelection();
+                    LoadGame(file.toString(), this::loadRandomLevel);
+                });
+            } catch (IOException e) {
+                e.printStackTrace();
+                Platform.runLater(() -> randomButton.setDisable(false));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "random-level");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Deletes the generated levels that are neither being played nor referred to by the saved game.
+     *
+     * @param playing the level file being played, or null.
+     */
+    private static void pruneGenerated(Path playing) {
+        if (!Files.isDirectory(GENERATED)) {
+            return;
+        }
+        Set<Path> keep = new HashSet<>();
+        if (playing != null) {
+            keep.add(playing.toAbsolutePath().normalize());
+        }
+        for (Path saved : SavedGame.levelPaths()) {
+            keep.add(saved.toAbsolutePath().normalize());
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(GENERATED, "random-*.txt")) {
+            for (Path file : files) {
+                if (!keep.contains(file.toAbsolutePath().normalize())) {
+                    Files.deleteIfExists(file);
+                    LevelTemplateCache.shared().invalidate(file.toString());
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Stops computing the par of the previous level, so the par of the next one does not wait behind it.
+     */
+    private void cancelPar() {
+        if (par != null) {
+            par.cancel(false);
+            par = null;
+        }
+    }
+
     /**
      * Launches the game with the specified level. Loads the level's data, initializes the game state, and displays 
      * the game board view. It also handles the undo/redo buttons' visibility and updates the view accordingly.
+     * <p>
+     * When the level was preloaded in the background, its prepared game and view are swapped in. The par of the
+     * scramble is computed by the {@link ParOptimizer} meanwhile and shown on the win screen.
      * 
-     * @param level The level to load.
+     * @param path The path of the level file.
+     * @param next Launches the next level from the win screen, or null when the level was the last one.
      */
-    private void LoadGame(int level){
-        GameLoader loader = new GameLoader("data/levels/level" + level + ".txt");
-            game = Game.create(loader.x, loader.y);
-            loader.SetUpGame(game);
-            game.setWin(false);
-            //lambda implmentation of onGameWin(boolean isWin)
-            game.addGameWinListener(isWin -> {
-                if (isWin) {
-                    Pane winPane = createWinMessage(level);
-                    mainLayout.setCenter(winPane);
-                }
-            });
+    private void LoadGame(String path, Runnable next){
+        playingLevel = Paths.get(path);
+        LevelPreloader.PreloadedLevel preloaded = preloader.take(path);
+        if (preloaded != null) {
+            game = preloaded.game();
+            gameBoardView = preloaded.view();
+        } else {
+            game = Game.create(LevelTemplateCache.shared().get(path));
             game.init();
+            gameBoardView = createGameBoardView(game);
+        }
+        game.setWin(false);
+        //lambda implmentation of onGameWin(boolean isWin)
+        game.addGameWinListener(isWin -> {
+            if (isWin) {
+                Pane winPane = createWinMessage(next);
+                mainLayout.setCenter(winPane);
+            }
+        });
 
-            gameBoardView = new GameBoardView(game, undoButton, redoButton);
-            mainLayout.setCenter(gameBoardView);
-            PauseTransition delay = new PauseTransition(Duration.seconds(2));
-            delay.setOnFinished(e -> new RandomizeGame(game, loader));
-            delay.play();
+        trackLiveState(game, path);
+        trackHints(game);
+        mainLayout.setCenter(gameBoardView);
+        Game loaded = game;
+        GameBoardView view = gameBoardView;
+        long seed = ThreadLocalRandom.current().nextLong();
+        cancelPar();
+        par = ParOptimizer.shared().parOf(game.getTemplate(), seed);
+        PauseTransition delay = new PauseTransition(Duration.seconds(2));
+        delay.setOnFinished(e -> new RandomizeGame(loaded, path, seed, () -> view.setCheckpointer(new Checkpointer(path, 0))));
+        delay.play();
+    }
+
+    /**
+     * Starts solving the board of a new game in the background for the Hint button and the preview,
+     * stopping the hint service of the previous game.
+     *
+     * @param game The new game.
+     */
+    private void trackHints(Game game) {
+        if (hints != null) {
+            hints.shutdown();
+        }
+        hints = new HintService(game, new BacktrackingSolver());
+    }
+
+    /**
+     * Starts keeping the board of a new game in the live state file, when that mode is enabled.
+     *
+     * @param game The new game.
+     * @param levelPath The path of the level file of the game.
+     */
+    private void trackLiveState(Game game, String levelPath) {
+        if (!LiveStateFile.isRequested()) {
+            return;
+        }
+        closeLiveState();
+        try {
+            liveState = LiveStateFile.create(SavedGame.LIVE, levelPath, game.snapshot());
+            game.addGameTurnListener(liveState);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Restores the last game from the live state file, when that mode is enabled. The board in the file already
+     * contains every turn, so the step journal is not replayed afterwards.
+     *
+     * @return The restored game, not initialized yet, or null when there is no usable live state.
+     */
+    private Game restoreLiveState() {
+        if (!LiveStateFile.isRequested()) {
+            return null;
+        }
+        LiveStateFile file = SavedGame.openLive();
+        if (file == null) {
+            return null;
+        }
+        try {
+            Game restored = Game.create(file.board());
+            closeLiveState();
+            liveState = file;
+            restored.addGameTurnListener(liveState);
+            return restored;
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println(SavedGame.LIVE + ": " + e.getMessage());
+            try {
+                file.close();
+            } catch (IOException closeError) {
+                closeError.printStackTrace();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Closes the live state file of the previous game, if any.
+     */
+    private void closeLiveState() {
+        if (liveState != null) {
+            try {
+                liveState.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            liveState = null;
+        }
     }
 
     /**
      * Creates a message that is displayed when the player wins a level, showing the number of turns taken
      * and providing options to go to the next level or return to the main menu.
      * 
-     * @param currentLevel The current level number to determine if the player can move to the next level.
+     * @param next Launches the next level, or null when the won level was the last one.
      * @return A {@link Pane} containing the win message.
      */
-    private Pane createWinMessage(int currentLevel) {
+    private Pane createWinMessage(Runnable next) {
         VBox winPane = new VBox(20);
         winPane.setAlignment(Pos.CENTER);
         winPane.setPadding(new Insets(40));
@@ -348,12 +709,20 @@ public class MainWindow extends Application {
 
         Text nOOfTurns = new Text("Turns made: " + String.valueOf(gameBoardView.getTurns()));
         nOOfTurns.getStyleClass().add("subtitle");
+
+        Text parText = new Text();
+        parText.getStyleClass().add("subtitle");
+        if (par != null) {
+            // the par of the scramble is computed in the background since the level was loaded
+            parText.setText("Par: computing...");
+            par.thenAccept(clicks -> Platform.runLater(() -> parText.setText(clicks >= 0 ? "Par: " + clicks : "Par: unknown")));
+        }
         
         Button nextLevelButton = new Button("Next Level");
         nextLevelButton.setId("levelButton");
         nextLevelButton.setOnAction(e -> {
-            if (currentLevel < 4) {
-                LoadGame(currentLevel + 1);
+            if (next != null) {
+                next.run();
             } else {
                 Text message = new Text("You completed all levels!");
                 winPane.getChildren().add(message);
@@ -373,7 +742,7 @@ public class MainWindow extends Application {
         buttonBox.setAlignment(Pos.CENTER);
         buttonBox.getChildren().addAll(nextLevelButton, menuButton);
         
-        winPane.getChildren().addAll(congrats, winText, nOOfTurns, buttonBox);
+        winPane.getChildren().addAll(congrats, winText, nOOfTurns, parText, buttonBox);
         
         return winPane;
     }
@@ -0,0 +1,72 @@
+package project.game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that forks and snapshots of a {@link BoardState} do not see each other's writes, on a board of
+ * several pages.
+ */
+class BoardStateTest {
+    private static final LevelTemplate LEVEL = new LevelGenerator(100, 90, 0).generate(3);
+
+    @Test
+    void forkIsIsolatedBothWays() {
+        BoardState board = RandomizeGame.scramble(LEVEL, 1);
+        BoardState copy = board.fork();
+        assertTrue(copy.rotationsEqual(board));
+
+        int last = board.size() - 1;
+        int rotation = board.rotation(0);
+        copy.turn(0);
+        board.turn(last);
+        assertEquals(rotation, board.rotation(0));
+        assertEquals((rotation + 1) & 3, copy.rotation(0));
+        assertEquals((board.rotation(last) + 3) & 3, copy.rotation(last));
+        assertFalse(copy.rotationsEqual(board));
+        assertFalse(copy.isReadOnly());
+    }
+
+    @Test
+    void snapshotKeepsItsRotations() {
+        BoardState board = RandomizeGame.scramble(LEVEL, 2);
+        BoardState snapshot = board.snapshot();
+        BoardState before = board.fork();
+        for (int i = 0; i < board.size(); i += BoardState.PAGE_SIZE / 2) {
+            board.turn(i);
+        }
+        assertTrue(snapshot.rotationsEqual(before));
+        assertFalse(snapshot.rotationsEqual(board));
+        assertEquals(before.hash(), snapshot.hash());
+        assertEquals(before.isWin(), snapshot.isWin());
+    }
+
+    @Test
+    void snapshotIsReadOnly() {
+        BoardState snapshot = RandomizeGame.scramble(LEVEL, 3).snapshot();
+        assertTrue(snapshot.isReadOnly());
+        assertSame(snapshot, snapshot.snapshot());
+        assertThrows(IllegalStateException.class, () -> snapshot.setRotation(0, 1));
+
+        BoardState fork = snapshot.fork();
+        fork.turn(0);
+        assertEquals((snapshot.rotation(0) + 1) & 3, fork.rotation(0));
+    }
+
+    @Test
+    void hashFollowsRotations() {
+        BoardState board = new BoardState(LEVEL);
+        long solved = board.hash();
+        assertTrue(board.isWin());
+        BoardState fork = board.fork();
+        fork.turn(5);
+        fork.turnReverse(5);
+        assertEquals(solved, fork.hash());
+        assertTrue(fork.isWin());
+    }
+}
@@ -0,0 +1,107 @@
+package project.game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+import project.common.NodeType;
+
+/**
+ * Checks the {@link BacktrackingSolver}, the {@link SatLevelSolver} and the par of the {@link ParOptimizer}
+ * against an exhaustive enumeration of all rotations of small boards.
+ */
+class LevelSolverTest {
+    private static final LevelSolver[] SOLVERS = {new BacktrackingSolver(), new SatLevelSolver()};
+
+    @Test
+    void generatedBoardsMatchEnumeration() {
+        int[][] sizes = {{1, 2}, {2, 2}, {2, 3}, {3, 2}, {3, 3}};
+        for (int[] size : sizes) {
+            for (double loops : new double[] {0, 0.5, 1}) {
+                LevelGenerator generator = new LevelGenerator(size[0], size[1], loops);
+                for (long seed = 0; seed < 10; seed++) {
+                    check(RandomizeGame.scramble(generator.generate(seed), seed));
+                }
+            }
+        }
+    }
+
+    @Test
+    void randomBoardsMatchEnumeration() {
+        SplittableRandom random = new SplittableRandom(1);
+        NodeType[] types = {NodeType.EMPTY, NodeType.WIRE, NodeType.WIRE, NodeType.BULB};
+        int unsolvable = 0;
+        for (int n = 0; n < 300; n++) {
+            int rows = 1 + random.nextInt(3);
+            int cols = 2 + random.nextInt(2);
+            byte[] cells = new byte[rows * cols];
+            int source = random.nextInt(cells.length);
+            for (int i = 0; i < cells.length; i++) {
+                NodeType type = i == source ? NodeType.SOURCE : types[random.nextInt(types.length)];
+                cells[i] = type == NodeType.EMPTY ? 0 : LevelTemplate.encode(type, 1 + random.nextInt(15));
+            }
+            BoardState board = new BoardState(LevelTemplate.of(rows, cols, cells));
+            for (int i = 0; i < board.size(); i++) {
+                board.setRotation(i, random.nextInt(4));
+            }
+            if (check(board) < 0) {
+                unsolvable++;
+            }
+        }
+        assertTrue(unsolvable > 0 && unsolvable < 300, "both outcomes are covered: " + unsolvable);
+    }
+
+    /**
+     * Compares the solvers and the par of a board with the enumeration.
+     *
+     * @param board the board.
+     * @return the fewest clicks solving the board, or -1 when it has no solution.
+     */
+    private static int check(BoardState board) {
+        int minimal = minimalClicks(board.fork(), board, 0);
+        for (LevelSolver solver : SOLVERS) {
+            String name = solver.getClass().getSimpleName();
+            byte[] rotations = solver.solve(board, () -> false);
+            assertEquals(minimal >= 0, rotations != null, name + " disagrees on solvability");
+            if (rotations != null) {
+                BoardState solved = board.fork();
+                for (int i = 0; i < rotations.length; i++) {
+                    solved.setRotation(i, rotations[i]);
+                }
+                assertTrue(solved.isWin(), name + " returned a board that is not solved");
+            }
+        }
+        assertEquals(minimal, ParOptimizer.par(board, () -> false), "par");
+        return minimal;
+    }
+
+    /**
+     * Enumerates the rotations of the tiles from the given one on.
+     *
+     * @param candidate the board being enumerated, the tiles before {@code index} are set.
+     * @param board the scrambled board the clicks are counted from.
+     * @param index the first tile to enumerate.
+     * @return the fewest clicks of a solution, or -1 when there is none.
+     */
+    private static int minimalClicks(BoardState candidate, BoardState board, int index) {
+        if (index == board.size()) {
+            return candidate.isWin() ? 0 : -1;
+        }
+        if (board.type(index) == NodeType.EMPTY) {
+            return minimalClicks(candidate, board, index + 1);
+        }
+        int best = -1;
+        for (int clicks = 0; clicks < 4; clicks++) {
+            candidate.setRotation(index, board.rotation(index) + clicks);
+            int rest = minimalClicks(candidate, board, index + 1);
+            if (rest >= 0 && (best < 0 || clicks + rest < best)) {
+                best = clicks + rest;
+            }
+        }
+        candidate.setRotation(index, board.rotation(index));
+        return best;
+    }
+}
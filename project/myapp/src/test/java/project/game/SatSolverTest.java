@@ -0,0 +1,128 @@
+package project.game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.IntPredicate;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the {@link SatSolver} against the truth tables of small random formulas.
+ */
+class SatSolverTest {
+
+    @Test
+    void randomFormulasMatchTruthTable() {
+        SplittableRandom random = new SplittableRandom(7);
+        int unsatisfiable = 0;
+        for (int n = 0; n < 500; n++) {
+            int vars = 1 + random.nextInt(10);
+            List<int[]> clauses = new ArrayList<>();
+            for (int c = 4 * vars + random.nextInt(3) - 1; c > 0; c--) {
+                int[] clause = new int[1 + random.nextInt(3)];
+                for (int l = 0; l < clause.length; l++) {
+                    clause[l] = SatSolver.literal(random.nextInt(vars), random.nextBoolean());
+                }
+                clauses.add(clause);
+            }
+            SatSolver solver = solver(vars, clauses);
+            int result = solver.solve(() -> false);
+            boolean satisfiable = satisfiable(vars, clauses);
+            assertEquals(satisfiable ? SatSolver.SATISFIABLE : SatSolver.UNSATISFIABLE, result, "formula " + n);
+            if (satisfiable) {
+                assertTrue(satisfies(clauses, solver::value), "the model of formula " + n);
+            } else {
+                unsatisfiable++;
+            }
+        }
+        assertTrue(unsatisfiable > 0 && unsatisfiable < 500, "both outcomes are covered: " + unsatisfiable);
+    }
+
+    @Test
+    void pigeonholeIsUnsatisfiable() {
+        // five pigeons in four holes, variable p * 4 + h: pigeon p sits in hole h
+        List<int[]> clauses = new ArrayList<>();
+        for (int p = 0; p < 5; p++) {
+            int[] somewhere = new int[4];
+            for (int h = 0; h < 4; h++) {
+                somewhere[h] = SatSolver.literal(p * 4 + h, true);
+            }
+            clauses.add(somewhere);
+        }
+        for (int h = 0; h < 4; h++) {
+            for (int p = 0; p < 5; p++) {
+                for (int q = p + 1; q < 5; q++) {
+                    clauses.add(new int[] {SatSolver.literal(p * 4 + h, false), SatSolver.literal(q * 4 + h, false)});
+                }
+            }
+        }
+        assertEquals(SatSolver.UNSATISFIABLE, solver(20, clauses).solve(() -> false));
+    }
+
+    @Test
+    void clausesAddedAfterSolvingAreRespected() {
+        SatSolver solver = new SatSolver();
+        int a = solver.newVar();
+        int b = solver.newVar();
+        solver.addClause(SatSolver.literal(a, true), SatSolver.literal(b, true));
+        assertEquals(SatSolver.SATISFIABLE, solver.solve(() -> false));
+        solver.addClause(SatSolver.literal(a, false));
+        assertEquals(SatSolver.SATISFIABLE, solver.solve(() -> false));
+        assertTrue(!solver.value(a) && solver.value(b));
+        solver.addClause(SatSolver.literal(b, false));
+        assertEquals(SatSolver.UNSATISFIABLE, solver.solve(() -> false));
+    }
+
+    /**
+     * @param vars the number of variables.
+     * @param clauses the clauses.
+     * @return a solver with the formula.
+     */
+    private static SatSolver solver(int vars, List<int[]> clauses) {
+        SatSolver solver = new SatSolver();
+        for (int v = 0; v < vars; v++) {
+            solver.newVar();
+        }
+        for (int[] clause : clauses) {
+            solver.addClause(clause.clone());
+        }
+        return solver;
+    }
+
+    /**
+     * @param vars the number of variables.
+     * @param clauses the clauses.
+     * @return true when some assignment satisfies all clauses.
+     */
+    private static boolean satisfiable(int vars, List<int[]> clauses) {
+        for (int bits = 0; bits < 1 << vars; bits++) {
+            int assignment = bits;
+            if (satisfies(clauses, v -> (assignment >> v & 1) != 0)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param clauses the clauses.
+     * @param value the value of every variable.
+     * @return true when every clause has a true literal.
+     */
+    private static boolean satisfies(List<int[]> clauses, IntPredicate value) {
+        for (int[] clause : clauses) {
+            boolean satisfied = false;
+            for (int lit : clause) {
+                satisfied |= value.test(lit >> 1) == ((lit & 1) == 0);
+            }
+            if (!satisfied) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,194 @@
+package project.game;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Round-trips boards through the delta save (ELD1), the live state file (ELS1) and the checkpoint (ELC1), and
+ * checks that damaged files and changed levels are rejected.
+ */
+class SaveFormatTest {
+    private static final LevelTemplate LEVEL = new LevelGenerator(7, 9, 0.2).generate(11);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void deltaSaveRoundTrips() throws IOException {
+        String level = writeLevel("delta.txt", LEVEL);
+        BoardState board = RandomizeGame.scramble(LEVEL, 4);
+        ByteBuffer save = DeltaSaveFormat.encode(level, board);
+        assertEquals(level, DeltaSaveFormat.levelPath(save));
+        assertTrue(DeltaSaveFormat.decode(save).rotationsEqual(board));
+    }
+
+    @Test
+    void deltaSaveRejectsDamage() throws IOException {
+        String level = writeLevel("damaged.txt", LEVEL);
+        ByteBuffer save = DeltaSaveFormat.encode(level, RandomizeGame.scramble(LEVEL, 5));
+
+        ByteBuffer magic = copy(save);
+        magic.put(3, (byte) '2');
+        assertThrows(IOException.class, () -> DeltaSaveFormat.decode(magic));
+        assertThrows(IOException.class, () -> DeltaSaveFormat.decode(copy(save).limit(save.limit() - 1)));
+        assertThrows(IOException.class, () -> DeltaSaveFormat.decode(copy(save).limit(30)));
+        ByteBuffer count = copy(save);
+        count.putInt(12, LEVEL.nodeCount() - 4);
+        assertThrows(IOException.class, () -> DeltaSaveFormat.decode(count));
+    }
+
+    @Test
+    void deltaSaveRejectsChangedLevel() throws IOException {
+        String level = writeLevel("changed.txt", LEVEL);
+        ByteBuffer save = DeltaSaveFormat.encode(level, RandomizeGame.scramble(LEVEL, 6));
+        writeLevel("changed.txt", new LevelGenerator(7, 9, 0.2).generate(12));
+        IOException e = assertThrows(IOException.class, () -> DeltaSaveFormat.decode(save));
+        assertTrue(e.getMessage().contains("changed"), e.getMessage());
+    }
+
+    @Test
+    void liveStateRoundTrips() throws IOException {
+        String level = writeLevel("live.txt", LEVEL);
+        Path file = dir.resolve("live.els");
+        BoardState board = RandomizeGame.scramble(LEVEL, 7);
+        try (LiveStateFile live = LiveStateFile.create(file, level, board)) {
+            board.turn(3);
+            live.setRotation(3, board.rotation(3));
+            board.turn(LEVEL.size() - 1);
+            live.setRotation(LEVEL.size() - 1, board.rotation(LEVEL.size() - 1));
+        }
+        try (LiveStateFile live = LiveStateFile.open(file)) {
+            live.verify();
+            assertEquals(level, live.levelPath());
+            assertEquals(2, live.generation());
+            assertTrue(live.board().rotationsEqual(board));
+        }
+    }
+
+    @Test
+    void liveStateCompletesInterruptedTurn() throws IOException {
+        String level = writeLevel("interrupted.txt", LEVEL);
+        Path file = dir.resolve("interrupted.els");
+        BoardState board = RandomizeGame.scramble(LEVEL, 8);
+        LiveStateFile.create(file, level, board).close();
+        // a crash after the intent was recorded, before the rotation byte was written
+        int tile = 10;
+        int rotation = (board.rotation(tile) + 1) & 3;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(8).putInt(tile).putInt(rotation).flip(), 32);
+        }
+        board.setRotation(tile, rotation);
+        try (LiveStateFile live = LiveStateFile.open(file)) {
+            assertTrue(live.board().rotationsEqual(board));
+        }
+        try (LiveStateFile live = LiveStateFile.open(file)) {
+            live.verify();
+        }
+    }
+
+    @Test
+    void liveStateRejectsDamage() throws IOException {
+        String level = writeLevel("corrupt.txt", LEVEL);
+        Path file = dir.resolve("corrupt.els");
+        LiveStateFile.create(file, level, RandomizeGame.scramble(LEVEL, 9)).close();
+        byte[] content = Files.readAllBytes(file);
+
+        byte[] rotation = content.clone();
+        rotation[rotation.length - 1] ^= 1;
+        Files.write(file, rotation);
+        try (LiveStateFile live = LiveStateFile.open(file)) {
+            // opening only checks the header, the checksum is compared on request
+            assertThrows(IOException.class, live::verify);
+        }
+
+        byte[] intent = content.clone();
+        intent[32] = 0x7F;
+        Files.write(file, intent);
+        assertThrows(IOException.class, () -> LiveStateFile.open(file));
+
+        byte[] magic = content.clone();
+        magic[0] = 'X';
+        Files.write(file, magic);
+        assertThrows(IOException.class, () -> LiveStateFile.open(file));
+
+        Files.write(file, Arrays.copyOf(content, content.length - 1));
+        assertThrows(IOException.class, () -> LiveStateFile.open(file));
+    }
+
+    @Test
+    void liveStateRejectsChangedLevel() throws IOException {
+        String level = writeLevel("live-changed.txt", LEVEL);
+        Path file = dir.resolve("live-changed.els");
+        LiveStateFile.create(file, level, RandomizeGame.scramble(LEVEL, 10)).close();
+        writeLevel("live-changed.txt", new LevelGenerator(7, 9, 0.2).generate(13));
+        try (LiveStateFile live = LiveStateFile.open(file)) {
+            assertThrows(IOException.class, live::board);
+        }
+    }
+
+    @Test
+    void checkpointRoundTrips() throws IOException {
+        String level = writeLevel("checkpoint.txt", LEVEL);
+        BoardState board = RandomizeGame.scramble(LEVEL, 11);
+        SavedGame.Checkpoint checkpoint = SavedGame.decodeCheckpoint(SavedGame.encodeCheckpoint(level, board, 42));
+        assertEquals(42, checkpoint.step());
+        assertEquals(level, checkpoint.levelPath());
+        assertTrue(checkpoint.board().rotationsEqual(board));
+    }
+
+    @Test
+    void checkpointRejectsDamage() throws IOException {
+        String level = writeLevel("checkpoint-damaged.txt", LEVEL);
+        ByteBuffer checkpoint = SavedGame.encodeCheckpoint(level, RandomizeGame.scramble(LEVEL, 12), 3);
+
+        ByteBuffer magic = copy(checkpoint);
+        magic.put(0, (byte) 'X');
+        assertThrows(IOException.class, () -> SavedGame.decodeCheckpoint(magic));
+        assertThrows(IOException.class, () -> SavedGame.decodeCheckpoint(copy(checkpoint).limit(8)));
+        assertThrows(IOException.class, () -> SavedGame.decodeCheckpoint(copy(checkpoint).limit(40)));
+        ByteBuffer delta = copy(checkpoint);
+        delta.put(12, (byte) 'X');
+        assertThrows(IOException.class, () -> SavedGame.decodeCheckpoint(delta));
+    }
+
+    /**
+     * Writes a level in the text format and drops it from the shared cache.
+     *
+     * @param name the file name in the temporary directory.
+     * @param level the level.
+     * @return the path of the file.
+     * @throws IOException If writing fails.
+     */
+    private String writeLevel(String name, LevelTemplate level) throws IOException {
+        Path file = dir.resolve(name);
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            level.writeText(writer);
+        }
+        LevelTemplateCache.shared().invalidate(file.toString());
+        return file.toString();
+    }
+
+    /**
+     * @param buffer a buffer.
+     * @return a writable copy of its content.
+     */
+    private static ByteBuffer copy(ByteBuffer buffer) {
+        ByteBuffer copy = ByteBuffer.allocate(buffer.remaining());
+        copy.put(buffer.duplicate()).flip();
+        return copy;
+    }
+}